@@ -7,6 +7,7 @@ import diagram.ResolveIntegration;
 import diagram.XADDBuild;
 import diagram.XADDiagram;
 import time.Stopwatch;
+import xadd.ExprLib;
 import xadd.XADD;
 
 import java.util.ArrayList;
@@ -18,6 +19,8 @@ import java.util.function.BiFunction;
 import java.util.function.Function;
 
 import static java.util.Collections.singletonList;
+import static xadd.ExprLib.CompOperation.GT_EQ;
+import static xadd.ExprLib.CompOperation.LT_EQ;
 
 /**
  * Created by samuelkolb on 26/04/16.
@@ -29,8 +32,9 @@ public class XORTest {
 	private static XADDBuild.Builder builder;
 
 	public static XADDiagram buildXorSymbolic(int n) {
-		return buildXor(n, i -> builder.test("x <= c" + i),
-				(i, bounds) -> bounds.and(builder.test("c" + i + " <= 10")).and(builder.test("c" + i + " >= 0")));
+		return buildXor(n, i -> builder.test(new ExprLib.VarExpr("x"), LT_EQ, new ExprLib.VarExpr("c" + i)),
+				(i, bounds) -> bounds.and(builder.test(new ExprLib.VarExpr("c" + i), LT_EQ, new ExprLib.DoubleExpr(10)))
+						.and(builder.test(new ExprLib.VarExpr("c" + i), GT_EQ, new ExprLib.DoubleExpr(0))));
 
 	}
 
@@ -38,7 +42,9 @@ public class XORTest {
 		long seed = System.currentTimeMillis();
 		System.out.println("Seed: " + seed);
 		Random random = new Random(seed);
-		return buildXor(n, i -> builder.test("x <= " + 1 + random.nextInt(9)), (i, bounds) -> bounds);
+		// Constants 10 to 18
+		return buildXor(n, i -> builder.test(new ExprLib.VarExpr("x"), LT_EQ, new ExprLib.DoubleExpr(10 + random.nextInt(9))),
+				(i, bounds) -> bounds);
 	}
 
 	private static XADDiagram buildXor(int n, Function<Integer, BoolXADD> testProducer,
@@ -0,0 +1,248 @@
+package diagram;
+
+import xadd.XADD;
+
+import java.util.function.IntBinaryOperator;
+
+import static java.lang.String.format;
+
+/**
+ * Memory-bounded cache for the results of apply and reduce operations on an XADD pool / context.
+ * Entries are keyed on (operation, id1, id2), packed into a primitive long, and stored in a set-associative table
+ * that evicts entries using the second-chance (CLOCK) policy. The (unbounded) internal apply cache of the context
+ * is flushed whenever it exceeds a configurable limit.
+ *
+ * @author Samuel Kolb
+ */
+public class ApplyCache {
+
+	static final int DEFAULT_CAPACITY = 1 << 16;
+	static final int DEFAULT_CONTEXT_LIMIT = 1 << 20;
+
+	private static final int ID_BITS = 28;
+	private static final long ID_MASK = (1L << ID_BITS) - 1;
+	private static final int REDUCE = 126;
+	private static final int REDUCE_LP = 127;
+
+	static class Table extends LongIntTable {
+		private int contextLimit = DEFAULT_CONTEXT_LIMIT;
+		private long contextFlushes = 0;
+		private long reductions = 0;
+
+		Table() {
+			super(DEFAULT_CAPACITY);
+		}
+	}
+
+	private final XADD context;
+	private final Table table;
+
+	private ApplyCache(XADD context, Table table) {
+		this.context = context;
+		this.table = table;
+	}
+
+	/**
+	 * Returns the apply cache of the given context
+	 * @param context	The XADD pool / context
+	 * @return	The apply cache
+	 */
+	public static ApplyCache of(XADD context) {
+		return new ApplyCache(context, ContextData.of(context).applyCache);
+	}
+
+	//region Public methods
+
+	/**
+	 * Applies the given operation to the given diagrams, using the cached result if available
+	 * @param id1		The id of the root of the first diagram
+	 * @param id2		The id of the root of the second diagram
+	 * @param operation	The operation (e.g. XADD.PROD)
+	 * @return	The id of the resulting diagram
+	 */
+	public int apply(int id1, int id2, int operation) {
+		if(isCommutative(operation) && id2 < id1) {
+			int temp = id1;
+			id1 = id2;
+			id2 = temp;
+		}
+		int result = compute(operation, id1, id2, (a, b) -> context.apply(a, b, operation));
+		boundContext();
+		return result;
+	}
+
+	/**
+	 * Reduces the given diagram, using the cached result if available
+	 * @param id	The id of the root of the diagram
+	 * @return	The id of the reduced diagram
+	 */
+	public int reduce(int id) {
+		return compute(REDUCE, id, 0, (a, b) -> context.reduce(a));
+	}
+
+	/**
+	 * Reduces the given diagram (removing infeasible paths, see FeasibilityReduction), using the cached result if
+	 * available
+	 * @param id	The id of the root of the diagram
+	 * @return	The id of the reduced diagram
+	 */
+	public int reduceLP(int id) {
+		int result = compute(REDUCE_LP, id, 0, (a, b) -> {
+			synchronized(table) {
+				table.reductions++;
+			}
+			return FeasibilityReduction.reduce(context, a);
+		});
+		long reducedKey = getKey(REDUCE_LP, result, 0);
+		if(result != id && reducedKey != LongIntTable.EMPTY) {
+			// Reduced diagrams are fixed points, such that reducing them again does not require solving LPs
+			table.put(reducedKey, result);
+		}
+		boundContext();
+		return result;
+	}
+
+	/**
+	 * Returns the cached result of the given operation, or computes (and caches) it if unavailable
+	 * @param operation		The operation code (not necessarily an XADD operation)
+	 * @param id1			The id of the root of the first diagram
+	 * @param id2			The id of the root of the second diagram
+	 * @param computation	The computation of the result given both ids
+	 * @return	The id of the resulting diagram
+	 */
+	int compute(int operation, int id1, int id2, IntBinaryOperator computation) {
+		long key = getKey(operation, id1, id2);
+		int result = key == LongIntTable.EMPTY ? LongIntTable.MISSING : table.get(key);
+		if(result < 0) {
+			result = computation.applyAsInt(id1, id2);
+			if(key != LongIntTable.EMPTY) {
+				table.put(key, result);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @return	The maximal number of cached results
+	 */
+	public int getCapacity() {
+		synchronized(table) {
+			return table.keys.length;
+		}
+	}
+
+	/**
+	 * Sets the maximal number of cached results (rounded up to a power of two), clearing the cache
+	 * @param capacity	The capacity
+	 */
+	public void setCapacity(int capacity) {
+		if(capacity < 1) {
+			throw new IllegalArgumentException(format("Capacity must be positive, was %d", capacity));
+		}
+		synchronized(table) {
+			table.allocate(capacity);
+		}
+	}
+
+	/**
+	 * @return	The maximal size of the internal apply cache of the context before it is flushed
+	 */
+	public int getContextLimit() {
+		synchronized(table) {
+			return table.contextLimit;
+		}
+	}
+
+	/**
+	 * Sets the maximal size of the internal apply cache of the context before it is flushed
+	 * @param contextLimit	The limit (Integer.MAX_VALUE to never flush)
+	 */
+	public void setContextLimit(int contextLimit) {
+		if(contextLimit < 0) {
+			throw new IllegalArgumentException(format("Limit must be non-negative, was %d", contextLimit));
+		}
+		synchronized(table) {
+			table.contextLimit = contextLimit;
+		}
+	}
+
+	/**
+	 * @return	The number of lookups that found a cached result
+	 */
+	public long getHits() {
+		synchronized(table) {
+			return table.hits;
+		}
+	}
+
+	/**
+	 * @return	The number of lookups that did not find a cached result
+	 */
+	public long getMisses() {
+		synchronized(table) {
+			return table.misses;
+		}
+	}
+
+	/**
+	 * @return	The number of cached results that were evicted to make room for new results
+	 */
+	public long getEvictions() {
+		synchronized(table) {
+			return table.evictions;
+		}
+	}
+
+	/**
+	 * @return	The number of times the internal apply cache of the context was flushed
+	 */
+	public long getContextFlushes() {
+		synchronized(table) {
+			return table.contextFlushes;
+		}
+	}
+
+	/**
+	 * @return	The number of LP-based reductions that were computed (i.e. not found in the cache)
+	 */
+	public long getReductions() {
+		synchronized(table) {
+			return table.reductions;
+		}
+	}
+
+	/**
+	 * Removes all cached results (counters are kept)
+	 */
+	public void clear() {
+		table.clear();
+	}
+
+	@Override
+	public String toString() {
+		return format("ApplyCache[capacity=%d, hits=%d, misses=%d, evictions=%d, context flushes=%d, reductions=%d]",
+				getCapacity(), getHits(), getMisses(), getEvictions(), getContextFlushes(), getReductions());
+	}
+
+	//endregion
+
+	private void boundContext() {
+		synchronized(table) {
+			if(context._hmApplyCache.size() > table.contextLimit) {
+				context._hmApplyCache.clear();
+				table.contextFlushes++;
+			}
+		}
+	}
+
+	private static boolean isCommutative(int operation) {
+		return operation == XADD.SUM || operation == XADD.PROD || operation == XADD.MIN || operation == XADD.MAX;
+	}
+
+	private static long getKey(int operation, int id1, int id2) {
+		if(id1 < 0 || id2 < 0 || id1 > ID_MASK || id2 > ID_MASK) {
+			return LongIntTable.EMPTY;
+		}
+		return ((long) operation << (2 * ID_BITS)) | ((long) id1 << ID_BITS) | id2;
+	}
+}
@@ -4,11 +4,8 @@ import xadd.XADD;
 
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.Map;
 
-import static diagram.XADDBuild.builder;
-import static function.Architect.*;
 import static function.Functional.fold;
 
 /**
@@ -32,7 +29,7 @@ public class BoolXADD extends XADDiagram {
 	 * @return The resulting diagram
 	 */
 	public BoolXADD and(BoolXADD diagram) {
-		return convert(times(diagram), false);
+		return boolXadd(new BooleanApply(xadd).apply(BooleanApply.AND, number, diagram.number));
 	}
 
 	/**
@@ -41,7 +38,25 @@ public class BoolXADD extends XADDiagram {
 	 * @return The resulting diagram
 	 */
 	public BoolXADD or(BoolXADD diagram) {
-		return convert(plus(diagram).min(builder(xadd).val(1)), false);
+		return boolXadd(new BooleanApply(xadd).apply(BooleanApply.OR, number, diagram.number));
+	}
+
+	/**
+	 * Performs logical XOR on this diagram and the given diagram.
+	 * @param diagram	The given diagram
+	 * @return The resulting diagram
+	 */
+	public BoolXADD xor(BoolXADD diagram) {
+		return boolXadd(new BooleanApply(xadd).apply(BooleanApply.XOR, number, diagram.number));
+	}
+
+	/**
+	 * Performs logical implication (this diagram implies the given diagram).
+	 * @param diagram	The given diagram
+	 * @return The resulting diagram
+	 */
+	public BoolXADD implies(BoolXADD diagram) {
+		return boolXadd(new BooleanApply(xadd).apply(BooleanApply.IMPLIES, number, diagram.number));
 	}
 
 	/**
@@ -49,7 +64,7 @@ public class BoolXADD extends XADDiagram {
 	 * @return	The resulting diagram
 	 */
 	public BoolXADD not() {
-		return convert(plus(builder(xadd).val(-1)).times(builder(xadd).val(-1)), false);
+		return boolXadd(new BooleanApply(xadd).not(number));
 	}
 
 	/**
@@ -59,7 +74,7 @@ public class BoolXADD extends XADDiagram {
 	 * @return	The combined XADD
 	 */
 	public XADDiagram assignWeights(XADDiagram weightTrue, XADDiagram weightFalse) {
-		return builder(xadd).cases(map(this, this.not()).to(weightTrue, weightFalse));
+		return xadd(new BooleanApply(xadd).ite(number, weightTrue.number, weightFalse.number));
 	}
 
 	/**
@@ -109,15 +124,6 @@ public class BoolXADD extends XADDiagram {
 	}
 
 	private static boolean isBool(XADD context, int nodeId) {
-		XADD.XADDNode node = context.getNode(nodeId);
-		if(node instanceof XADD.XADDTNode) {
-			double value = context.evaluate(nodeId, new HashMap<>(), new HashMap<>());
-			return value == 1 || value == 0;
-		} else if(node instanceof XADD.XADDINode) {
-			XADD.XADDINode iNode = (XADD.XADDINode) node;
-			return isBool(context, iNode._high) && isBool(context, iNode._low);
-		} else {
-			throw new IllegalStateException("Unexpected structural error");
-		}
+		return BooleanIndex.of(context).isBool(nodeId);
 	}
 }
@@ -0,0 +1,250 @@
+package diagram;
+
+import xadd.ExprLib;
+import xadd.XADD;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+import static java.lang.String.format;
+
+/**
+ * Logical operations on diagrams with boolean (0 or 1) leaves.
+ * Operations are applied in a single traversal that short-circuits as soon as one of the operands is a 0 or 1 leaf.
+ * Results are memoized in the apply cache of the context.
+ *
+ * @author Samuel Kolb
+ */
+class BooleanApply {
+
+	// Operation codes (outside the range of the XADD operations) used as keys in the apply cache
+	static final int AND = 120;
+	static final int OR = 121;
+	static final int XOR = 122;
+	static final int IMPLIES = 123;
+	static final int NOT = 124;
+
+	private static final int FALSE = 0;
+	private static final int TRUE = 1;
+	private static final int OTHER = -1;
+
+	private static class IteKey {
+		final int guard, ifTrue, ifFalse;
+
+		IteKey(int guard, int ifTrue, int ifFalse) {
+			this.guard = guard;
+			this.ifTrue = ifTrue;
+			this.ifFalse = ifFalse;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if(this == o) return true;
+			if(o == null || getClass() != o.getClass()) return false;
+
+			IteKey that = (IteKey) o;
+			return guard == that.guard && ifTrue == that.ifTrue && ifFalse == that.ifFalse;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(guard, ifTrue, ifFalse);
+		}
+	}
+
+	private final XADD context;
+	private final ApplyCache cache;
+	private final BooleanIndex booleans;
+	private final int zero;
+	private final int one;
+
+	/**
+	 * @param context	The XADD pool / context
+	 */
+	BooleanApply(XADD context) {
+		this.context = context;
+		this.cache = ApplyCache.of(context);
+		this.booleans = BooleanIndex.of(context);
+		this.zero = context.getTermNode(ExprLib.ZERO);
+		this.one = context.getTermNode(ExprLib.ONE);
+	}
+
+	/**
+	 * Applies the given logical operation
+	 * @param operation	The operation (AND, OR, XOR or IMPLIES)
+	 * @param id1		The id of the root of the first diagram
+	 * @param id2		The id of the root of the second diagram
+	 * @return	The id of the resulting diagram
+	 */
+	int apply(int operation, int id1, int id2) {
+		int shortcut = shortcut(operation, id1, id2);
+		if(shortcut >= 0) {
+			return shortcut;
+		}
+		if(operation != IMPLIES && id2 < id1) {
+			int temp = id1;
+			id1 = id2;
+			id2 = temp;
+		}
+		return booleans.markBool(cache.compute(operation, id1, id2, (a, b) -> {
+			XADD.XADDNode node1 = context.getNode(a);
+			XADD.XADDNode node2 = context.getNode(b);
+			int var = getTopVariable(node1, node2);
+			int low = apply(operation, getLow(node1, var, a), getLow(node2, var, b));
+			int high = apply(operation, getHigh(node1, var, a), getHigh(node2, var, b));
+			return getNode(var, low, high);
+		}));
+	}
+
+	/**
+	 * Negates the given diagram
+	 * @param id	The id of the root of the diagram
+	 * @return	The id of the resulting diagram
+	 */
+	int not(int id) {
+		switch(getValue(id)) {
+			case FALSE: return one;
+			case TRUE: return zero;
+		}
+		return booleans.markBool(cache.compute(NOT, id, 0, (a, b) -> {
+			XADD.XADDINode node = (XADD.XADDINode) context.getNode(a);
+			return getNode(node._var, not(node._low), not(node._high));
+		}));
+	}
+
+	/**
+	 * Builds the diagram that equals the first value diagram if the guard is true and the second otherwise.
+	 * The diagrams are expanded simultaneously on their top decision, such that the value diagrams are spliced under
+	 * the leaves of the guard without arithmetic applies.
+	 * @param guard		The id of the root of the guard diagram (with boolean leaves)
+	 * @param ifTrue	The id of the root of the diagram to use where the guard is true
+	 * @param ifFalse	The id of the root of the diagram to use where the guard is false
+	 * @return	The id of the resulting diagram
+	 */
+	int ite(int guard, int ifTrue, int ifFalse) {
+		return ite(guard, ifTrue, ifFalse, new HashMap<>());
+	}
+
+	private int ite(int guard, int ifTrue, int ifFalse, Map<IteKey, Integer> memo) {
+		switch(getValue(guard)) {
+			case FALSE: return ifFalse;
+			case TRUE: return ifTrue;
+		}
+		if(ifTrue == ifFalse) {
+			return ifTrue;
+		}
+		IteKey key = new IteKey(guard, ifTrue, ifFalse);
+		Integer cached = memo.get(key);
+		if(cached != null) {
+			return cached;
+		}
+		XADD.XADDNode guardNode = context.getNode(guard);
+		XADD.XADDNode trueNode = context.getNode(ifTrue);
+		XADD.XADDNode falseNode = context.getNode(ifFalse);
+		int var = getTopVariable(getTopVariable(guardNode, trueNode), falseNode);
+		int low = ite(getLow(guardNode, var, guard), getLow(trueNode, var, ifTrue), getLow(falseNode, var, ifFalse), memo);
+		int high = ite(getHigh(guardNode, var, guard), getHigh(trueNode, var, ifTrue), getHigh(falseNode, var, ifFalse), memo);
+		int result = getNode(var, low, high);
+		memo.put(key, result);
+		return result;
+	}
+
+	private int shortcut(int operation, int id1, int id2) {
+		int value1 = getValue(id1);
+		int value2 = getValue(id2);
+		switch(operation) {
+			case AND:
+				if(value1 == FALSE || value2 == FALSE) return zero;
+				if(value1 == TRUE || id1 == id2) return id2;
+				if(value2 == TRUE) return id1;
+				break;
+			case OR:
+				if(value1 == TRUE || value2 == TRUE) return one;
+				if(value1 == FALSE || id1 == id2) return id2;
+				if(value2 == FALSE) return id1;
+				break;
+			case XOR:
+				if(id1 == id2) return zero;
+				if(value1 == FALSE) return id2;
+				if(value2 == FALSE) return id1;
+				if(value1 == TRUE) return not(id2);
+				if(value2 == TRUE) return not(id1);
+				break;
+			case IMPLIES:
+				if(value1 == FALSE || value2 == TRUE || id1 == id2) return one;
+				if(value1 == TRUE) return id2;
+				if(value2 == FALSE) return not(id1);
+				break;
+			default:
+				throw new IllegalArgumentException(format("Unknown logical operation %d", operation));
+		}
+		return -1;
+	}
+
+	private int getValue(int id) {
+		XADD.XADDNode node = context.getNode(id);
+		if(node instanceof XADD.XADDINode) {
+			return OTHER;
+		}
+		ExprLib.ArithExpr expr = ((XADD.XADDTNode) node)._expr;
+		if(expr instanceof ExprLib.DoubleExpr) {
+			double value = ((ExprLib.DoubleExpr) expr)._dConstVal;
+			if(value == 0) {
+				return FALSE;
+			} else if(value == 1) {
+				return TRUE;
+			}
+		}
+		throw new IllegalArgumentException(format("Leaf %s is not boolean (1 or 0)", expr));
+	}
+
+	private int getTopVariable(int var, XADD.XADDNode node) {
+		if(!(node instanceof XADD.XADDINode)) {
+			return var;
+		}
+		int nodeVar = ((XADD.XADDINode) node)._var;
+		return var < 0 || context.localOrderCompareGE(var, nodeVar) ? nodeVar : var;
+	}
+
+	private int getTopVariable(XADD.XADDNode node1, XADD.XADDNode node2) {
+		if(!(node1 instanceof XADD.XADDINode) && !(node2 instanceof XADD.XADDINode)) {
+			return -1;
+		}
+		if(!(node1 instanceof XADD.XADDINode)) {
+			return ((XADD.XADDINode) node2)._var;
+		} else if(!(node2 instanceof XADD.XADDINode)) {
+			return ((XADD.XADDINode) node1)._var;
+		}
+		int var1 = ((XADD.XADDINode) node1)._var;
+		int var2 = ((XADD.XADDINode) node2)._var;
+		return context.localOrderCompareGE(var2, var1) ? var1 : var2;
+	}
+
+	private static int getLow(XADD.XADDNode node, int var, int id) {
+		return node instanceof XADD.XADDINode && ((XADD.XADDINode) node)._var == var ? ((XADD.XADDINode) node)._low : id;
+	}
+
+	private static int getHigh(XADD.XADDNode node, int var, int id) {
+		return node instanceof XADD.XADDINode && ((XADD.XADDINode) node)._var == var ? ((XADD.XADDINode) node)._high : id;
+	}
+
+	private int getNode(int var, int low, int high) {
+		if(low == high) {
+			return low;
+		}
+		if(isBelow(low, var) && isBelow(high, var)) {
+			return context.getINode(var, low, high);
+		}
+		return context.getINodeCanon(var, low, high);
+	}
+
+	private boolean isBelow(int id, int var) {
+		XADD.XADDNode node = context.getNode(id);
+		if(node instanceof XADD.XADDINode) {
+			int childVar = ((XADD.XADDINode) node)._var;
+			return childVar != var && context.localOrderCompareGE(childVar, var);
+		}
+		return true;
+	}
+}
@@ -0,0 +1,88 @@
+package diagram;
+
+import xadd.ExprLib;
+import xadd.XADD;
+
+import java.util.BitSet;
+import java.util.Set;
+
+/**
+ * Tracks which nodes of an XADD pool / context have only boolean (0 or 1) leaves.
+ * Flags are computed once per node (or recorded when a node is constructed by a logical operation), such that
+ * repeated checks are constant time.
+ *
+ * @author Samuel Kolb
+ */
+class BooleanIndex {
+
+	static class Table {
+		private final BitSet known = new BitSet();
+		private final BitSet bool = new BitSet();
+
+		synchronized void retainNodes(Set<Integer> nodeIds) {
+			for(int id = known.nextSetBit(0); id >= 0; id = known.nextSetBit(id + 1)) {
+				if(!nodeIds.contains(id)) {
+					known.clear(id);
+					bool.clear(id);
+				}
+			}
+		}
+	}
+
+	private final XADD context;
+	private final Table table;
+
+	private BooleanIndex(XADD context, Table table) {
+		this.context = context;
+		this.table = table;
+	}
+
+	/**
+	 * Returns the boolean index of the given context
+	 * @param context	The XADD pool / context
+	 * @return	The boolean index
+	 */
+	static BooleanIndex of(XADD context) {
+		return new BooleanIndex(context, ContextData.of(context).booleans);
+	}
+
+	/**
+	 * Checks if the diagram rooted at the given node only has boolean (0 or 1) leaves
+	 * @param nodeId	The id of the root node
+	 * @return	True iff all leaves are 0 or 1
+	 */
+	boolean isBool(int nodeId) {
+		synchronized(table) {
+			if(!table.known.get(nodeId)) {
+				for(int id : DiagramWalker.postOrder(context, nodeId, table.known::get)) {
+					XADD.XADDNode node = context.getNode(id);
+					boolean bool;
+					if(node instanceof XADD.XADDTNode) {
+						ExprLib.ArithExpr expr = ((XADD.XADDTNode) node)._expr;
+						double value = expr instanceof ExprLib.DoubleExpr ? ((ExprLib.DoubleExpr) expr)._dConstVal : -1;
+						bool = value == 0 || value == 1;
+					} else {
+						XADD.XADDINode iNode = (XADD.XADDINode) node;
+						bool = table.bool.get(iNode._low) && table.bool.get(iNode._high);
+					}
+					table.known.set(id);
+					table.bool.set(id, bool);
+				}
+			}
+			return table.bool.get(nodeId);
+		}
+	}
+
+	/**
+	 * Records that the diagram rooted at the given node only has boolean leaves (e.g. as result of a logical operation)
+	 * @param nodeId	The id of the root node
+	 * @return	The given node id
+	 */
+	int markBool(int nodeId) {
+		synchronized(table) {
+			table.known.set(nodeId);
+			table.bool.set(nodeId);
+		}
+		return nodeId;
+	}
+}
@@ -0,0 +1,119 @@
+package diagram;
+
+import xadd.ExprLib.ArithExpr;
+import xadd.XADD;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Interns the (canonical) bound expressions used by the resolve integrators of an XADD pool / context, such that
+ * bounds can be compared and hashed as int ids.
+ *
+ * @author Samuel Kolb
+ */
+class BoundIndex {
+
+	/**
+	 * The id of the absent bound
+	 */
+	static final int NONE = 0;
+
+	static class Table {
+		private final Map<ArithExpr, Integer> ids = new HashMap<>();
+		private final List<ArithExpr> bounds = new ArrayList<>();
+		private final Deque<Integer> free = new ArrayDeque<>();
+
+		Table() {
+			bounds.add(null);
+		}
+
+		/**
+		 * Drops all bounds except the given ones, the ids of dropped bounds are reused
+		 * @param kept	The ids of the bounds to keep
+		 */
+		synchronized void retainBounds(BitSet kept) {
+			for(int id = NONE + 1; id < bounds.size(); id++) {
+				ArithExpr bound = bounds.get(id);
+				if(bound != null && !kept.get(id)) {
+					ids.remove(bound);
+					bounds.set(id, null);
+					free.push(id);
+				}
+			}
+		}
+
+		synchronized int size() {
+			return ids.size();
+		}
+	}
+
+	private final Table table;
+
+	private BoundIndex(Table table) {
+		this.table = table;
+	}
+
+	/**
+	 * Returns the bound index of the given context
+	 * @param context	The XADD pool / context
+	 * @return	The bound index
+	 */
+	static BoundIndex of(XADD context) {
+		return new BoundIndex(ContextData.of(context).bounds);
+	}
+
+	/**
+	 * Returns the id of the given bound, interning it if necessary
+	 * @param bound	The (canonical) bound expression
+	 * @return	The id of the bound
+	 */
+	int getId(ArithExpr bound) {
+		synchronized(table) {
+			Integer id = table.ids.get(bound);
+			if(id == null) {
+				if(table.free.isEmpty()) {
+					id = table.bounds.size();
+					table.bounds.add(bound);
+				} else {
+					id = table.free.pop();
+					table.bounds.set(id, bound);
+				}
+				table.ids.put(bound, id);
+			}
+			return id;
+		}
+	}
+
+	/**
+	 * Returns the id of the given optional bound
+	 * @param bound	The optional (canonical) bound expression
+	 * @return	The id of the bound or NONE if the bound is absent
+	 */
+	int getId(Optional<ArithExpr> bound) {
+		return bound.isPresent() ? getId(bound.get()) : NONE;
+	}
+
+	/**
+	 * @param id	The id of a bound
+	 * @return	The bound expression or null if the id is NONE
+	 */
+	ArithExpr getBound(int id) {
+		synchronized(table) {
+			return table.bounds.get(id);
+		}
+	}
+
+	/**
+	 * @return	The number of interned bounds
+	 */
+	int size() {
+		return table.size();
+	}
+}
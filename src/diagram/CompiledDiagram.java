@@ -0,0 +1,575 @@
+package diagram;
+
+import xadd.ExprLib;
+import xadd.XADD;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static java.lang.String.format;
+
+/**
+ * A flattened, read-only version of an XADD that can be evaluated repeatedly without allocating.
+ * Decisions are stored as sparse linear rows over a table of continuous variables, leaves as sums of monomials.
+ * Assignments are given as primitive arrays indexed according to the variable tables of the compiled diagram.
+ *
+ * @author Samuel Kolb
+ */
+public class CompiledDiagram {
+
+	//region Variables
+	private static final int BOOL = 0;
+	private static final int TRUE = 1;
+	private static final int FALSE = 2;
+	private static final int GT = 3;
+	private static final int GT_EQ = 4;
+	private static final int LT = 5;
+	private static final int LT_EQ = 6;
+	private static final int EQ = 7;
+	private static final int NEQ = 8;
+
+	private static final int BLOCK_SIZE = 1024;
+	private static final int PARALLEL_BLOCKS = 8;
+
+	private final List<String> booleanVariables;
+	private final List<String> continuousVariables;
+	private final Map<String, Integer> booleanIndex;
+	private final Map<String, Integer> continuousIndex;
+
+	// Internal nodes are numbered 0..n-1, leaves are encoded as -(leaf + 1)
+	private final int root;
+	private final int[] tests;
+	private final int[] testVariables;
+	private final int[] low;
+	private final int[] high;
+	private final int[] rowStart;
+	private final int[] rowVariables;
+	private final double[] rowCoefficients;
+	private final double[] rowConstants;
+
+	private final int[] leafStart;
+	private final double[] termCoefficients;
+	private final int[] termStart;
+	private final int[] termFactors;
+	//endregion
+
+	//region Construction
+
+	/**
+	 * Compiles the given diagram. Variables that occur in the diagram but are not given are appended to the
+	 * respective variable table.
+	 * @param diagram				The diagram to compile
+	 * @param booleanVariables		The boolean variables that determine the layout of boolean assignments
+	 * @param continuousVariables	The continuous variables that determine the layout of continuous assignments
+	 */
+	public CompiledDiagram(XADDiagram diagram, List<String> booleanVariables, List<String> continuousVariables) {
+		Compiler compiler = new Compiler(diagram.xadd, booleanVariables, continuousVariables);
+		this.root = compiler.compile(diagram.number);
+
+		this.booleanVariables = Collections.unmodifiableList(compiler.booleanVariables);
+		this.continuousVariables = Collections.unmodifiableList(compiler.continuousVariables);
+		this.booleanIndex = compiler.booleanIndex;
+		this.continuousIndex = compiler.continuousIndex;
+
+		this.tests = toIntArray(compiler.tests);
+		this.testVariables = toIntArray(compiler.testVariables);
+		this.low = toIntArray(compiler.low);
+		this.high = toIntArray(compiler.high);
+		this.rowStart = toIntArray(compiler.rowStart);
+		this.rowVariables = toIntArray(compiler.rowVariables);
+		this.rowCoefficients = toDoubleArray(compiler.rowCoefficients);
+		this.rowConstants = toDoubleArray(compiler.rowConstants);
+
+		this.leafStart = toIntArray(compiler.leafStart);
+		this.termCoefficients = toDoubleArray(compiler.termCoefficients);
+		this.termStart = toIntArray(compiler.termStart);
+		this.termFactors = toIntArray(compiler.termFactors);
+	}
+
+	//endregion
+
+	//region Public methods
+
+	public List<String> getBooleanVariables() {
+		return booleanVariables;
+	}
+
+	public List<String> getContinuousVariables() {
+		return continuousVariables;
+	}
+
+	/**
+	 * Returns the position of the given boolean variable in boolean assignment arrays
+	 * @param name	The name of the variable
+	 * @return	The index of the variable or -1 if the diagram does not contain it
+	 */
+	public int getBooleanIndex(String name) {
+		Integer index = booleanIndex.get(name);
+		return index == null ? -1 : index;
+	}
+
+	/**
+	 * Returns the position of the given continuous variable in continuous assignment arrays
+	 * @param name	The name of the variable
+	 * @return	The index of the variable or -1 if the diagram does not contain it
+	 */
+	public int getContinuousIndex(String name) {
+		Integer index = continuousIndex.get(name);
+		return index == null ? -1 : index;
+	}
+
+	/**
+	 * Evaluates this diagram for the given assignment, this method does not allocate any memory
+	 * @param continuous	The values of the continuous variables (indexed according to getContinuousIndex)
+	 * @param booleans		The values of the boolean variables (indexed according to getBooleanIndex)
+	 * @return	The result of the evaluation
+	 */
+	public double evaluate(double[] continuous, boolean[] booleans) {
+		int node = root;
+		while(node >= 0) {
+			node = test(node, continuous, booleans) ? high[node] : low[node];
+		}
+		return leaf(-node - 1, continuous);
+	}
+
+	/**
+	 * Evaluates this diagram for the given assignment
+	 * @param assignment	The assignment, it has to assign all variables occurring in this diagram
+	 * @return	The result of the evaluation
+	 */
+	public double evaluate(Assignment assignment) {
+		double[] continuous = new double[continuousVariables.size()];
+		for(int i = 0; i < continuous.length; i++) {
+			Double value = assignment.getDouble(continuousVariables.get(i));
+			if(value == null) {
+				throw new IllegalArgumentException("Missing assignment for variable " + continuousVariables.get(i));
+			}
+			continuous[i] = value;
+		}
+		boolean[] booleans = new boolean[booleanVariables.size()];
+		for(int i = 0; i < booleans.length; i++) {
+			Boolean value = assignment.getBool(booleanVariables.get(i));
+			if(value == null) {
+				throw new IllegalArgumentException("Missing assignment for variable " + booleanVariables.get(i));
+			}
+			booleans[i] = value;
+		}
+		return evaluate(continuous, booleans);
+	}
+
+	/**
+	 * Evaluates this diagram for many assignments at once. Rows are processed in blocks, decisions are evaluated for
+	 * all rows of a block that reach a node at once and large batches are split across multiple threads.
+	 * @param continuous	The values of the continuous variables, one column per variable (see getContinuousIndex)
+	 * @param booleans		The values of the boolean variables, one column per variable (see getBooleanIndex)
+	 * @param result		The array to store the results in, its length determines the number of rows
+	 */
+	public void evaluate(double[][] continuous, boolean[][] booleans, double[] result) {
+		if(continuous.length < continuousVariables.size() || booleans.length < booleanVariables.size()) {
+			throw new IllegalArgumentException(format("Expected %d continuous and %d boolean columns, got %d and %d",
+					continuousVariables.size(), booleanVariables.size(), continuous.length, booleans.length));
+		}
+		int rows = result.length;
+		int blocks = (rows + BLOCK_SIZE - 1) / BLOCK_SIZE;
+		IntStream stream = IntStream.range(0, blocks);
+		if(blocks >= PARALLEL_BLOCKS) {
+			stream = stream.parallel();
+		}
+		stream.forEach(block -> evaluateBlock(continuous, booleans, result, block * BLOCK_SIZE,
+				Math.min(rows, (block + 1) * BLOCK_SIZE)));
+	}
+
+	//endregion
+
+	//region Batch evaluation
+
+	private void evaluateBlock(double[][] continuous, boolean[][] booleans, double[] result, int first, int last) {
+		int size = last - first;
+		int[] rows = new int[size];
+		int[] scratch = new int[size];
+		double[] values = new double[size];
+		for(int i = 0; i < size; i++) {
+			rows[i] = first + i;
+		}
+
+		// Stack of (node, from, to) segments of the rows array that still have to be processed
+		int[] stack = new int[3 * (tests.length + 2)];
+		int top = 0;
+		stack[top++] = root;
+		stack[top++] = 0;
+		stack[top++] = size;
+		while(top > 0) {
+			int to = stack[--top];
+			int from = stack[--top];
+			int node = stack[--top];
+			if(node < 0) {
+				leaves(-node - 1, continuous, result, rows, values, from, to);
+			} else {
+				int split = split(node, continuous, booleans, rows, scratch, values, from, to);
+				if(split > from) {
+					stack[top++] = high[node];
+					stack[top++] = from;
+					stack[top++] = split;
+				}
+				if(split < to) {
+					stack[top++] = low[node];
+					stack[top++] = split;
+					stack[top++] = to;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Partitions the given segment of rows such that rows for which the test of the given node is true come first
+	 * @return	The index of the first row for which the test is false
+	 */
+	private int split(int node, double[][] continuous, boolean[][] booleans, int[] rows, int[] scratch,
+					  double[] values, int from, int to) {
+		int test = tests[node];
+		if(test == TRUE) {
+			return to;
+		} else if(test == FALSE) {
+			return from;
+		}
+
+		if(test == BOOL) {
+			boolean[] column = booleans[testVariables[node]];
+			for(int i = from; i < to; i++) {
+				values[i] = column[rows[i]] ? 1 : 0;
+			}
+			test = GT;
+		} else {
+			double constant = rowConstants[node];
+			for(int i = from; i < to; i++) {
+				values[i] = constant;
+			}
+			for(int j = rowStart[node]; j < rowStart[node + 1]; j++) {
+				double coefficient = rowCoefficients[j];
+				double[] column = continuous[rowVariables[j]];
+				for(int i = from; i < to; i++) {
+					values[i] += coefficient * column[rows[i]];
+				}
+			}
+		}
+
+		int trueCount = from;
+		int falseCount = to;
+		for(int i = from; i < to; i++) {
+			if(compare(test, values[i])) {
+				scratch[trueCount++] = rows[i];
+			} else {
+				scratch[--falseCount] = rows[i];
+			}
+		}
+		System.arraycopy(scratch, from, rows, from, to - from);
+		return trueCount;
+	}
+
+	private static boolean compare(int test, double value) {
+		switch(test) {
+			case GT: return value > 0;
+			case GT_EQ: return value >= 0;
+			case LT: return value < 0;
+			case LT_EQ: return value <= 0;
+			case EQ: return value == 0;
+			default: return value != 0;
+		}
+	}
+
+	private void leaves(int leaf, double[][] continuous, double[] result, int[] rows, double[] values,
+						int from, int to) {
+		for(int i = from; i < to; i++) {
+			result[rows[i]] = 0;
+		}
+		for(int term = leafStart[leaf]; term < leafStart[leaf + 1]; term++) {
+			double coefficient = termCoefficients[term];
+			for(int i = from; i < to; i++) {
+				values[i] = coefficient;
+			}
+			for(int j = termStart[term]; j < termStart[term + 1]; j++) {
+				double[] column = continuous[termFactors[j]];
+				for(int i = from; i < to; i++) {
+					values[i] *= column[rows[i]];
+				}
+			}
+			for(int i = from; i < to; i++) {
+				result[rows[i]] += values[i];
+			}
+		}
+	}
+
+	//endregion
+
+	//region Evaluation
+
+	private boolean test(int node, double[] continuous, boolean[] booleans) {
+		int test = tests[node];
+		if(test == BOOL) {
+			return booleans[testVariables[node]];
+		} else if(test == TRUE) {
+			return true;
+		} else if(test == FALSE) {
+			return false;
+		}
+		double value = rowConstants[node];
+		for(int i = rowStart[node]; i < rowStart[node + 1]; i++) {
+			value += rowCoefficients[i] * continuous[rowVariables[i]];
+		}
+		return compare(test, value);
+	}
+
+	private double leaf(int leaf, double[] continuous) {
+		double result = 0;
+		for(int term = leafStart[leaf]; term < leafStart[leaf + 1]; term++) {
+			double value = termCoefficients[term];
+			for(int i = termStart[term]; i < termStart[term + 1]; i++) {
+				value *= continuous[termFactors[i]];
+			}
+			result += value;
+		}
+		return result;
+	}
+
+	//endregion
+
+	//region Compilation
+
+	private static class Compiler {
+		private final XADD context;
+		private final Map<Integer, Integer> compiled = new HashMap<>();
+
+		final List<String> booleanVariables;
+		final List<String> continuousVariables;
+		final Map<String, Integer> booleanIndex = new HashMap<>();
+		final Map<String, Integer> continuousIndex = new HashMap<>();
+
+		final List<Integer> tests = new ArrayList<>();
+		final List<Integer> testVariables = new ArrayList<>();
+		final List<Integer> low = new ArrayList<>();
+		final List<Integer> high = new ArrayList<>();
+		final List<Integer> rowStart = new ArrayList<>(Collections.singletonList(0));
+		final List<Integer> rowVariables = new ArrayList<>();
+		final List<Double> rowCoefficients = new ArrayList<>();
+		final List<Double> rowConstants = new ArrayList<>();
+
+		final List<Integer> leafStart = new ArrayList<>(Collections.singletonList(0));
+		final List<Double> termCoefficients = new ArrayList<>();
+		final List<Integer> termStart = new ArrayList<>(Collections.singletonList(0));
+		final List<Integer> termFactors = new ArrayList<>();
+
+		Compiler(XADD context, List<String> booleanVariables, List<String> continuousVariables) {
+			this.context = context;
+			this.booleanVariables = new ArrayList<>();
+			this.continuousVariables = new ArrayList<>();
+			booleanVariables.forEach(this::booleanIndex);
+			continuousVariables.forEach(this::continuousIndex);
+		}
+
+		private int booleanIndex(String name) {
+			return booleanIndex.computeIfAbsent(name, key -> {
+				booleanVariables.add(key);
+				return booleanVariables.size() - 1;
+			});
+		}
+
+		private int continuousIndex(String name) {
+			return continuousIndex.computeIfAbsent(name, key -> {
+				continuousVariables.add(key);
+				return continuousVariables.size() - 1;
+			});
+		}
+
+		int compile(int rootId) {
+			for(int nodeId : DiagramWalker.postOrder(context, rootId)) {
+				XADD.XADDNode node = context.getNode(nodeId);
+				int result;
+				if(node instanceof XADD.XADDTNode) {
+					result = compileLeaf(((XADD.XADDTNode) node)._expr);
+				} else {
+					XADD.XADDINode iNode = (XADD.XADDINode) node;
+					result = compileDecision(iNode.getDecision(), compiled.get(iNode._low), compiled.get(iNode._high));
+				}
+				compiled.put(nodeId, result);
+			}
+			return compiled.get(rootId);
+		}
+
+		private int compileDecision(XADD.Decision decision, int compiledLow, int compiledHigh) {
+			int index = tests.size();
+			int variable = -1;
+			double constant = 0;
+			if(decision instanceof XADD.BoolDec) {
+				tests.add(BOOL);
+				variable = booleanIndex(((XADD.BoolDec) decision)._sVarName);
+			} else if(decision instanceof XADD.TautDec) {
+				tests.add(((XADD.TautDec) decision)._bTautology ? TRUE : FALSE);
+			} else if(decision instanceof XADD.ExprDec) {
+				ExprLib.CompExpr comparison = ((XADD.ExprDec) decision)._expr;
+				Polynomial difference = Polynomial.of(comparison._lhs, this::continuousIndex)
+						.plus(Polynomial.of(comparison._rhs, this::continuousIndex).times(-1));
+				if(difference.getDegree() > 1) {
+					throw new IllegalArgumentException(format("Decision %s is not linear", decision));
+				}
+				tests.add(getTest(comparison._type));
+				for(Map.Entry<List<Integer>, Double> term : difference.terms.entrySet()) {
+					if(term.getKey().isEmpty()) {
+						constant = term.getValue();
+					} else {
+						rowVariables.add(term.getKey().get(0));
+						rowCoefficients.add(term.getValue());
+					}
+				}
+			} else {
+				throw new IllegalArgumentException(format("Unsupported decision %s", decision));
+			}
+			rowConstants.add(constant);
+			rowStart.add(rowVariables.size());
+			testVariables.add(variable);
+			low.add(compiledLow);
+			high.add(compiledHigh);
+			return index;
+		}
+
+		private int getTest(ExprLib.CompOperation operation) {
+			switch(operation) {
+				case GT: return GT;
+				case GT_EQ: return GT_EQ;
+				case LT: return LT;
+				case LT_EQ: return LT_EQ;
+				case EQ: return EQ;
+				case NEQ: return NEQ;
+				default: throw new IllegalArgumentException(format("Unsupported comparison %s", operation));
+			}
+		}
+
+		private int compileLeaf(ExprLib.ArithExpr expression) {
+			Polynomial polynomial = Polynomial.of(expression, this::continuousIndex);
+			for(Map.Entry<List<Integer>, Double> term : polynomial.terms.entrySet()) {
+				termCoefficients.add(term.getValue());
+				termFactors.addAll(term.getKey());
+				termStart.add(termFactors.size());
+			}
+			leafStart.add(termCoefficients.size());
+			return -leafStart.size() + 1;
+		}
+	}
+
+	/**
+	 * Polynomial over indexed variables, represented as a mapping from monomials (sorted variable indices) to
+	 * coefficients.
+	 */
+	private static class Polynomial {
+
+		interface VariableIndex {
+			int get(String name);
+		}
+
+		final Map<List<Integer>, Double> terms;
+
+		private Polynomial(Map<List<Integer>, Double> terms) {
+			this.terms = terms;
+		}
+
+		static Polynomial constant(double value) {
+			Map<List<Integer>, Double> terms = new HashMap<>();
+			if(value != 0) {
+				terms.put(Collections.emptyList(), value);
+			}
+			return new Polynomial(terms);
+		}
+
+		static Polynomial of(ExprLib.ArithExpr expression, VariableIndex index) {
+			if(expression instanceof ExprLib.DoubleExpr) {
+				return constant(((ExprLib.DoubleExpr) expression)._dConstVal);
+			} else if(expression instanceof ExprLib.VarExpr) {
+				Map<List<Integer>, Double> terms = new HashMap<>();
+				terms.put(Collections.singletonList(index.get(((ExprLib.VarExpr) expression)._sVarName)), 1.0);
+				return new Polynomial(terms);
+			} else if(expression instanceof ExprLib.OperExpr) {
+				ExprLib.OperExpr operation = (ExprLib.OperExpr) expression;
+				Polynomial result = of(operation._terms.get(0), index);
+				for(int i = 1; i < operation._terms.size(); i++) {
+					Polynomial term = of(operation._terms.get(i), index);
+					switch(operation._type) {
+						case SUM: result = result.plus(term); break;
+						case MINUS: result = result.plus(term.times(-1)); break;
+						case PROD: result = result.times(term); break;
+						case DIV:
+							if(term.getDegree() > 0 || term.terms.isEmpty()) {
+								throw new IllegalArgumentException(format("Cannot compile division in %s", expression));
+							}
+							result = result.times(1 / term.terms.get(Collections.<Integer>emptyList()));
+							break;
+						default:
+							throw new IllegalArgumentException(format("Cannot compile operation in %s", expression));
+					}
+				}
+				return result;
+			}
+			throw new IllegalArgumentException(format("Cannot compile expression %s", expression));
+		}
+
+		int getDegree() {
+			int degree = 0;
+			for(List<Integer> monomial : terms.keySet()) {
+				degree = Math.max(degree, monomial.size());
+			}
+			return degree;
+		}
+
+		Polynomial plus(Polynomial polynomial) {
+			Map<List<Integer>, Double> sum = new HashMap<>(terms);
+			polynomial.terms.forEach((monomial, coefficient) -> sum.merge(monomial, coefficient, Double::sum));
+			sum.values().removeIf(coefficient -> coefficient == 0);
+			return new Polynomial(sum);
+		}
+
+		Polynomial times(double factor) {
+			return times(constant(factor));
+		}
+
+		Polynomial times(Polynomial polynomial) {
+			Map<List<Integer>, Double> product = new HashMap<>();
+			for(Map.Entry<List<Integer>, Double> term1 : terms.entrySet()) {
+				for(Map.Entry<List<Integer>, Double> term2 : polynomial.terms.entrySet()) {
+					Integer[] monomial = new Integer[term1.getKey().size() + term2.getKey().size()];
+					int i = 0;
+					for(Integer variable : term1.getKey()) {
+						monomial[i++] = variable;
+					}
+					for(Integer variable : term2.getKey()) {
+						monomial[i++] = variable;
+					}
+					Arrays.sort(monomial);
+					product.merge(Arrays.asList(monomial), term1.getValue() * term2.getValue(), Double::sum);
+				}
+			}
+			product.values().removeIf(coefficient -> coefficient == 0);
+			return new Polynomial(product);
+		}
+	}
+
+	private static int[] toIntArray(List<Integer> list) {
+		int[] array = new int[list.size()];
+		for(int i = 0; i < array.length; i++) {
+			array[i] = list.get(i);
+		}
+		return array;
+	}
+
+	private static double[] toDoubleArray(List<Double> list) {
+		double[] array = new double[list.size()];
+		for(int i = 0; i < array.length; i++) {
+			array[i] = list.get(i);
+		}
+		return array;
+	}
+
+	//endregion
+}
@@ -0,0 +1,55 @@
+package diagram;
+
+import xadd.XADD;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * Auxiliary data (indices and caches) that is kept alongside an XADD pool / context.
+ * The data is dropped together with its context, it does therefore not hold on to the context itself.
+ *
+ * @author Samuel Kolb
+ */
+class ContextData {
+
+	private static final Map<XADD, ContextData> contexts = new WeakHashMap<>();
+
+	final SupportIndex.Table supports = new SupportIndex.Table();
+	final RootRegistry.Table roots = new RootRegistry.Table();
+	final ApplyCache.Table applyCache = new ApplyCache.Table();
+	final Map<String, Integer> tests = new HashMap<>();
+	final BooleanIndex.Table booleans = new BooleanIndex.Table();
+	final ResolveCache.Table resolveCache = new ResolveCache.Table();
+	final BoundIndex.Table bounds = new BoundIndex.Table();
+	final FeasibilityOracle.Table feasibility = new FeasibilityOracle.Table();
+	final LongIntTable sizes = new LongIntTable(1 << 16);
+
+	/**
+	 * Returns the data associated with the given context
+	 * @param context	The XADD pool / context
+	 * @return	The (possibly new) data of the context
+	 */
+	static ContextData of(XADD context) {
+		synchronized(contexts) {
+			return contexts.computeIfAbsent(context, key -> new ContextData());
+		}
+	}
+
+	/**
+	 * Drops the data kept for nodes that no longer exist
+	 * @param nodeIds	The ids of the nodes that still exist
+	 */
+	void retainNodes(Set<Integer> nodeIds) {
+		supports.retainNodes(nodeIds);
+		applyCache.clear();
+		booleans.retainNodes(nodeIds);
+		resolveCache.retainNodes(nodeIds, bounds);
+		sizes.retain((key, value) -> nodeIds.contains((int) key));
+		synchronized(tests) {
+			tests.values().retainAll(nodeIds);
+		}
+	}
+}
@@ -0,0 +1,149 @@
+package diagram;
+
+import xadd.XADD;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static java.lang.String.format;
+
+/**
+ * A pool of XADD contexts for serving independent requests concurrently.
+ * XADD contexts are not thread-safe, the pool therefore confines every context to a single thread at a time: a context
+ * is leased to one thread and only becomes available to others once the lease is closed.
+ * Diagrams built in a leased context should not escape the lease.
+ *
+ * @author Samuel Kolb
+ */
+public class ContextPool {
+
+	/**
+	 * Exclusive access to a context of the pool, closing the lease returns the context to the pool
+	 */
+	public class Lease implements AutoCloseable {
+		private XADD context;
+
+		private Lease(XADD context) {
+			this.context = context;
+		}
+
+		/**
+		 * @return	The leased context
+		 */
+		public XADD getContext() {
+			if(context == null) {
+				throw new IllegalStateException("Lease has already been closed");
+			}
+			return context;
+		}
+
+		/**
+		 * @return	A builder for the leased context
+		 */
+		public XADDBuild.Builder getBuilder() {
+			return XADDBuild.builder(getContext());
+		}
+
+		@Override
+		public void close() {
+			if(context != null) {
+				release(context);
+				context = null;
+			}
+		}
+	}
+
+	//region Variables
+	private final int size;
+	private final Supplier<XADD> factory;
+	private final BlockingQueue<XADD> available = new LinkedBlockingQueue<>();
+	private int created = 0;
+	//endregion
+
+	//region Construction
+
+	/**
+	 * Creates a pool with one context per available processor
+	 */
+	public ContextPool() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * @param size	The maximal number of contexts
+	 */
+	public ContextPool(int size) {
+		this(size, XADD::new);
+	}
+
+	/**
+	 * @param size		The maximal number of contexts
+	 * @param factory	The factory used to (lazily) create contexts
+	 */
+	public ContextPool(int size, Supplier<XADD> factory) {
+		if(size < 1) {
+			throw new IllegalArgumentException(format("Pool size must be positive, was %d", size));
+		}
+		this.size = size;
+		this.factory = factory;
+	}
+
+	//endregion
+
+	//region Public methods
+
+	/**
+	 * @return	The maximal number of contexts
+	 */
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * Leases a context, waiting for one to become available if all contexts are in use
+	 * @return	The lease (to be closed after use)
+	 */
+	public Lease acquire() {
+		XADD context = available.poll();
+		if(context == null) {
+			context = create();
+		}
+		if(context == null) {
+			try {
+				context = available.take();
+			} catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while waiting for a context", e);
+			}
+		}
+		return new Lease(context);
+	}
+
+	/**
+	 * Executes the given task with exclusive access to a context of the pool
+	 * @param task	The task, its result should not refer to the context
+	 * @param <T>	The type of result
+	 * @return	The result of the task
+	 */
+	public <T> T execute(Function<XADD, T> task) {
+		try(Lease lease = acquire()) {
+			return task.apply(lease.getContext());
+		}
+	}
+
+	//endregion
+
+	private synchronized XADD create() {
+		if(created >= size) {
+			return null;
+		}
+		created++;
+		return factory.get();
+	}
+
+	private void release(XADD context) {
+		available.add(context);
+	}
+}
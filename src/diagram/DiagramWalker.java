@@ -0,0 +1,293 @@
+package diagram;
+
+import pair.TypePair;
+import xadd.XADD;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.IntPredicate;
+
+/**
+ * Traversal core shared by the diagram walkers. All traversals use an explicit stack instead of the Java call stack,
+ * such that the depth of a diagram is not limited by the thread stack size.
+ *
+ * @author Samuel Kolb
+ */
+class DiagramWalker {
+
+	static final int PARALLEL_DEPTH = 8;
+	static final int PARALLEL_SIZE = 64;
+
+	/**
+	 * Determines how results of sub-diagrams are shared between paths
+	 */
+	enum Memoization {
+		/** Every path is walked separately (tree semantics) */
+		NONE,
+		/** Results are memoized per node */
+		NODE,
+		/** Results are memoized per node and state */
+		NODE_STATE
+	}
+
+	private static class WalkKey<S> {
+		final int nodeId;
+		final S state;
+
+		WalkKey(int nodeId, S state) {
+			this.nodeId = nodeId;
+			this.state = state;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if(this == o) return true;
+			if(o == null || getClass() != o.getClass()) return false;
+
+			WalkKey<?> that = (WalkKey<?>) o;
+
+			if(nodeId != that.nodeId) return false;
+			return state != null ? state.equals(that.state) : that.state == null;
+		}
+
+		@Override
+		public int hashCode() {
+			int result = nodeId;
+			result = 31 * result + (state != null ? state.hashCode() : 0);
+			return result;
+		}
+	}
+
+	private static class Frame<S, R> {
+		final Object key;
+		final TypePair<S> states;
+		final int high;
+		boolean lowDone = false;
+		R low;
+
+		Frame(Object key, TypePair<S> states, int high) {
+			this.key = key;
+			this.states = states;
+			this.high = high;
+		}
+	}
+
+	/**
+	 * Walks the diagram rooted at the given node with the given observer
+	 * @param xadd			The XADD pool / context
+	 * @param rootId		The id of the root node
+	 * @param observer		The observer
+	 * @param initial		The state at the root node
+	 * @param memoization	The kind of memoization to use
+	 * @return	The result as aggregated by the observer
+	 */
+	static <S, R> R walk(XADD xadd, int rootId, XADDiagram.NodeWalkerObserver<S, R> observer, S initial,
+						 Memoization memoization) {
+		Map<Object, R> cache = memoization == Memoization.NONE ? null : new HashMap<>();
+		ArrayDeque<Frame<S, R>> stack = new ArrayDeque<>();
+		int nodeId = rootId;
+		S state = initial;
+		while(true) {
+			// Descend until a result is available
+			R result;
+			Object key = getKey(memoization, nodeId, state);
+			if(cache != null && cache.containsKey(key)) {
+				result = cache.get(key);
+			} else {
+				XADD.XADDNode node = xadd.getNode(nodeId);
+				if(node instanceof XADD.XADDTNode) {
+					result = observer.calculate(nodeId, (XADD.XADDTNode) node, state);
+					if(cache != null) {
+						cache.put(key, result);
+					}
+				} else if(node instanceof XADD.XADDINode) {
+					XADD.XADDINode iNode = (XADD.XADDINode) node;
+					Frame<S, R> frame = new Frame<>(key, observer.update(nodeId, iNode, state), iNode._high);
+					stack.push(frame);
+					nodeId = iNode._low;
+					state = frame.states.one();
+					continue;
+				} else {
+					throw new IllegalStateException("Unexpected structural error");
+				}
+			}
+
+			// Ascend while both children of the parent have been computed
+			while(true) {
+				Frame<S, R> frame = stack.peek();
+				if(frame == null) {
+					return result;
+				}
+				if(!frame.lowDone) {
+					frame.low = result;
+					frame.lowDone = true;
+					nodeId = frame.high;
+					state = frame.states.two();
+					break;
+				}
+				result = observer.combine(frame.low, result);
+				stack.pop();
+				if(cache != null) {
+					cache.put(frame.key, result);
+				}
+			}
+		}
+	}
+
+	@SuppressWarnings("serial")
+	private static class ParallelWalk<S, R> extends RecursiveTask<R> {
+		private final XADD xadd;
+		private final int nodeId;
+		private final XADDiagram.ParallelObserver<S, R> observer;
+		private final S state;
+		private final int depth;
+
+		ParallelWalk(XADD xadd, int nodeId, XADDiagram.ParallelObserver<S, R> observer, S state, int depth) {
+			this.xadd = xadd;
+			this.nodeId = nodeId;
+			this.observer = observer;
+			this.state = state;
+			this.depth = depth;
+		}
+
+		@Override
+		protected R compute() {
+			if(depth <= 0) {
+				return walk(xadd, nodeId, observer, state, Memoization.NONE);
+			}
+			XADD.XADDNode node = xadd.getNode(nodeId);
+			if(node instanceof XADD.XADDTNode) {
+				return observer.calculate(nodeId, (XADD.XADDTNode) node, state);
+			} else if(node instanceof XADD.XADDINode) {
+				XADD.XADDINode iNode = (XADD.XADDINode) node;
+				TypePair<S> pair = observer.update(nodeId, iNode, state);
+				ParallelWalk<S, R> low = new ParallelWalk<>(xadd, iNode._low, observer, pair.one(), depth - 1);
+				ParallelWalk<S, R> high = new ParallelWalk<>(xadd, iNode._high, observer, pair.two(), depth - 1);
+				low.fork();
+				R highResult = high.compute();
+				return observer.combine(low.join(), highResult);
+			} else {
+				throw new IllegalStateException("Unexpected structural error");
+			}
+		}
+	}
+
+	/**
+	 * Walks the diagram rooted at the given node with the given observer (with tree semantics), forking the low and
+	 * high branches of nodes in the top levels of the diagram
+	 * @param xadd		The XADD pool / context
+	 * @param rootId	The id of the root node
+	 * @param observer	The (thread-safe) observer
+	 * @param initial	The state at the root node
+	 * @param depth		The number of levels in which branches are forked, below that branches are walked sequentially
+	 * @param pool		The pool to execute the walk in
+	 * @return	The result as aggregated by the observer
+	 */
+	static <S, R> R walkParallel(XADD xadd, int rootId, XADDiagram.ParallelObserver<S, R> observer, S initial,
+								 int depth, ForkJoinPool pool) {
+		return pool.invoke(new ParallelWalk<>(xadd, rootId, observer, initial, depth));
+	}
+
+	private static Object getKey(Memoization memoization, int nodeId, Object state) {
+		switch(memoization) {
+			case NODE: return nodeId;
+			case NODE_STATE: return new WalkKey<>(nodeId, state);
+			default: return null;
+		}
+	}
+
+	/**
+	 * Lists the distinct nodes of the diagram rooted at the given node, such that children precede their parents
+	 * @param xadd		The XADD pool / context
+	 * @param rootId	The id of the root node
+	 * @return	The node ids in post-order
+	 */
+	static int[] postOrder(XADD xadd, int rootId) {
+		return postOrder(xadd, rootId, nodeId -> false);
+	}
+
+	/**
+	 * Lists the distinct nodes of the diagram rooted at the given node, such that children precede their parents.
+	 * Nodes that are already known (e.g. cached) are neither listed nor expanded.
+	 * @param xadd		The XADD pool / context
+	 * @param rootId	The id of the root node
+	 * @param known		Predicate on node ids that are to be skipped
+	 * @return	The node ids in post-order
+	 */
+	static int[] postOrder(XADD xadd, int rootId, IntPredicate known) {
+		List<Integer> order = new ArrayList<>();
+		Set<Integer> done = new HashSet<>();
+		Set<Integer> expanded = new HashSet<>();
+		ArrayDeque<Integer> stack = new ArrayDeque<>();
+		stack.push(rootId);
+		while(!stack.isEmpty()) {
+			int nodeId = stack.peek();
+			if(done.contains(nodeId)) {
+				stack.pop();
+				continue;
+			}
+			if(known.test(nodeId)) {
+				stack.pop();
+				done.add(nodeId);
+				continue;
+			}
+			XADD.XADDNode node = xadd.getNode(nodeId);
+			if(node instanceof XADD.XADDINode && expanded.add(nodeId)) {
+				XADD.XADDINode iNode = (XADD.XADDINode) node;
+				if(!done.contains(iNode._high)) {
+					stack.push(iNode._high);
+				}
+				if(!done.contains(iNode._low)) {
+					stack.push(iNode._low);
+				}
+			} else if(node instanceof XADD.XADDINode || node instanceof XADD.XADDTNode) {
+				stack.pop();
+				done.add(nodeId);
+				order.add(nodeId);
+			} else {
+				throw new IllegalStateException("Unexpected structural error");
+			}
+		}
+		int[] result = new int[order.size()];
+		for(int i = 0; i < result.length; i++) {
+			result[i] = order.get(i);
+		}
+		return result;
+	}
+
+	/**
+	 * Counts the distinct nodes of the diagram rooted at the given node, stopping once the count exceeds the limit
+	 * @param xadd		The XADD pool / context
+	 * @param rootId	The id of the root node
+	 * @param limit		The limit
+	 * @return	The number of nodes, or limit + 1 if the diagram has more than limit nodes
+	 */
+	static int countNodes(XADD xadd, int rootId, int limit) {
+		Set<Integer> visited = new HashSet<>();
+		ArrayDeque<Integer> stack = new ArrayDeque<>();
+		stack.push(rootId);
+		visited.add(rootId);
+		while(!stack.isEmpty() && visited.size() <= limit) {
+			XADD.XADDNode node = xadd.getNode(stack.pop());
+			if(node instanceof XADD.XADDINode) {
+				XADD.XADDINode iNode = (XADD.XADDINode) node;
+				if(visited.add(iNode._low)) {
+					stack.push(iNode._low);
+				}
+				if(visited.add(iNode._high)) {
+					stack.push(iNode._high);
+				}
+			} else if(!(node instanceof XADD.XADDTNode)) {
+				throw new IllegalStateException("Unexpected structural error");
+			}
+		}
+		return Math.min(visited.size(), limit + 1);
+	}
+}
@@ -6,16 +6,24 @@ import xadd.XADD
 import java.util.*
 
 /**
+ * Implements integration by collecting the bounds on the variable along every path and enumerating, at the leaves,
+ * which pair of bounds is the tightest. Constant bounds are collapsed numerically, such that only symbolic bounds need
+ * to be compared by decisions.
+ *
  * Created by samuelkolb on 21/06/2017.
  * @author Samuel Kolb
  */
 
-class EnumerationIntegration(val xadd: XADD) {
+class EnumerationIntegration(val xadd: XADD, val verbose: Boolean = false) : SingleVariableIntegrator {
 
-    private class Bounds(val upper: Boolean, val numericBound: Double, val arithmeticBounds: List<ArithExpr>) {
+    private data class Bounds(val upper: Boolean, val numericBound: Double, val arithmeticBounds: List<ArithExpr>) {
         constructor(upper: Boolean) :
             this(upper, if(upper) Double.POSITIVE_INFINITY else Double.NEGATIVE_INFINITY, ArrayList<ArithExpr>())
 
+        fun addBound(bound: ArithExpr): Bounds {
+            return if(bound is ExprLib.DoubleExpr) addNumericBound(bound._dConstVal) else addArithmeticBound(bound)
+        }
+
         fun addNumericBound(bound: Double): Bounds {
             val tighter: (Double, Double) -> Boolean = if(upper) { d1, d2 -> d1 < d2 } else { d1, d2 -> d1 > d2 }
             if(tighter(bound, numericBound)) {
@@ -26,30 +34,197 @@ class EnumerationIntegration(val xadd: XADD) {
         }
 
         fun addArithmeticBound(bound: ArithExpr): Bounds {
+            if(bound in arithmeticBounds) {
+                return this
+            }
             val copy = ArrayList<ArithExpr>(arithmeticBounds.size + 1)
             copy.addAll(arithmeticBounds)
             copy.add(bound)
             return Bounds(upper, numericBound, copy)
         }
+
+        /**
+         * The candidates for the tightest bound, the numeric bound is only a candidate if it is finite or if there are
+         * no symbolic bounds
+         */
+        val candidates: List<ArithExpr>
+            get() = if(arithmeticBounds.isNotEmpty() && numericBound.isInfinite()) arithmeticBounds
+                    else arithmeticBounds + ExprLib.DoubleExpr(numericBound)
+    }
+
+    private data class ResolveKey(val rootId: Int, val ubs: Bounds, val lbs: Bounds)
+
+    private val supports = SupportIndex.of(xadd)
+
+    override fun integrate(diagram: XADDiagram, variable: Variable): XADDiagram {
+        return diagram.xadd(integrate(diagram.number, variable))
     }
 
     fun integrate(rootId: Int, variable: String, type: String): Int {
-        return resolve(rootId, variable, type, Bounds(true), Bounds(false))
+        return integrate(rootId, if(type.toLowerCase().startsWith("bool")) Variable.bool(variable) else Variable.real(variable))
+    }
+
+    private fun integrate(rootId: Int, variable: Variable): Int {
+        return resolve(rootId, variable, Bounds(true), Bounds(false), HashMap())
     }
 
-    private fun resolve(rootId: Int, variable: String, type: String, ubs: Bounds, lbs: Bounds): Int {
-        throw NotImplementedError()
-        /*val node = xadd.getNode(rootId)
-        if(node is XADD.XADDINode) {
-            /*for(ub in ubs) {
-                for(lb in lbs) {
+    private fun resolve(rootId: Int, variable: Variable, ubs: Bounds, lbs: Bounds,
+                        cache: MutableMap<ResolveKey, Int>): Int {
+        if(rootId == xadd.ZERO) {
+            return xadd.ZERO
+        }
+        val key = ResolveKey(rootId, ubs, lbs)
+        cache[key]?.let { return it }
+
+        val node = xadd.getNode(rootId)
+        val result = when(node) {
+            is XADD.XADDINode -> {
+                if(!supports.decisionMentions(node._var, variable.name)) {
+                    val low = resolve(node._low, variable, ubs, lbs, cache)
+                    val high = resolve(node._high, variable, ubs, lbs, cache)
+                    xadd.getINodeCanon(node._var, low, high)
+                } else if(variable.isBool) {
+                    xadd.apply(node._low, node._high, XADD.SUM)
+                } else {
+                    val decision = node.decision as? XADD.ExprDec
+                            ?: throw IllegalStateException("Decision ${node.decision} mentions $variable")
+                    val pair = decision._expr._lhs.removeVarFromExpr(variable.name)
+                    val coefficient = pair._coef
+                    val scaling = ExprLib.DoubleExpr(1 / Math.abs(coefficient))
+                    val normalized = ExprLib.OperExpr(ExprLib.ArithOperation.PROD, pair._expr, scaling)
+                            .makeCanonical() as ArithExpr
+                    when {
+                        coefficient < 0 -> {
+                            // High branch: variable <= bound
+                            val high = resolve(node._high, variable, ubs.addBound(normalized), lbs, cache)
+                            val low = resolve(node._low, variable, ubs, lbs.addBound(normalized), cache)
+                            xadd.apply(high, low, XADD.SUM)
+                        }
+                        coefficient > 0 -> {
+                            // Low branch: variable <= bound
+                            val bound = ExprLib.OperExpr(ExprLib.ArithOperation.MINUS, ExprLib.ZERO, normalized)
+                                    .makeCanonical() as ArithExpr
+                            val low = resolve(node._low, variable, ubs.addBound(bound), lbs, cache)
+                            val high = resolve(node._high, variable, ubs, lbs.addBound(bound), cache)
+                            xadd.apply(low, high, XADD.SUM)
+                        }
+                        else -> throw IllegalStateException("Coefficient $coefficient from $decision was zero")
+                    }
+                }
+            }
+            is XADD.XADDTNode -> integrateLeaf(node._expr, variable, ubs, lbs)
+            else -> throw IllegalArgumentException("Unexpected node $node")
+        }
+        log("resolve($rootId, $variable, ${ubs.candidates}, ${lbs.candidates}) -> $result")
+        cache[key] = result
+        return result
+    }
+
+    private fun integrateLeaf(expression: ArithExpr, variable: Variable, ubs: Bounds, lbs: Bounds): Int {
+        if(expression == ExprLib.ZERO) {
+            return xadd.ZERO
+        }
+        if(variable.isBool) {
+            val result = ArithExpr.op(expression, 2.0, ExprLib.ArithOperation.PROD)
+            return xadd.getTermNode(result.makeCanonical() as ArithExpr)
+        }
+
+        // Numeric fast path: the tightest bounds are known without creating any decisions
+        if(ubs.arithmeticBounds.isEmpty() && lbs.arithmeticBounds.isEmpty()) {
+            if(ubs.numericBound <= lbs.numericBound) {
+                return xadd.ZERO
+            }
+            return integral(expression, variable, ExprLib.DoubleExpr(ubs.numericBound),
+                    ExprLib.DoubleExpr(lbs.numericBound))
+        }
+
+        // Enumerate the pairs of candidates, ties are broken by position to avoid counting regions twice
+        val upper = ubs.candidates
+        val lower = lbs.candidates
+        var result = xadd.ZERO
+        for(i in upper.indices) {
+            for(j in lower.indices) {
+                val conditions = ArrayList<Triple<ArithExpr, ExprLib.CompOperation, ArithExpr>>()
+                upper.forEachIndexed { k, other ->
+                    if(k != i) {
+                        val op = if(k < i) ExprLib.CompOperation.LT else ExprLib.CompOperation.LT_EQ
+                        conditions.add(Triple(upper[i], op, other))
+                    }
+                }
+                lower.forEachIndexed { k, other ->
+                    if(k != j) {
+                        val op = if(k < j) ExprLib.CompOperation.GT else ExprLib.CompOperation.GT_EQ
+                        conditions.add(Triple(lower[j], op, other))
+                    }
+                }
+                conditions.add(Triple(lower[j], ExprLib.CompOperation.LT, upper[i]))
+                val guarded = guard(conditions) { integral(expression, variable, upper[i], lower[j]) }
+                result = xadd.apply(result, guarded, XADD.SUM)
+            }
+        }
+        return result
+    }
 
+    private fun guard(conditions: List<Triple<ArithExpr, ExprLib.CompOperation, ArithExpr>>, body: () -> Int): Int {
+        val decisions = ArrayList<XADD.Decision>()
+        for((lhs, op, rhs) in conditions) {
+            if(lhs is ExprLib.DoubleExpr && rhs is ExprLib.DoubleExpr) {
+                // Constant comparisons are decided numerically
+                if(!compare(lhs._dConstVal, op, rhs._dConstVal)) {
+                    return xadd.ZERO
+                }
+                continue
+            }
+            val infinite = (lhs as? ExprLib.DoubleExpr)?._dConstVal?.isInfinite() == true
+                    || (rhs as? ExprLib.DoubleExpr)?._dConstVal?.isInfinite() == true
+            if(infinite) {
+                // Symbolic expressions are finite, comparisons with infinite bounds are decided by the infinity
+                val d1 = (lhs as? ExprLib.DoubleExpr)?._dConstVal ?: 0.0
+                val d2 = (rhs as? ExprLib.DoubleExpr)?._dConstVal ?: 0.0
+                if(!compare(d1, op, d2)) {
+                    return xadd.ZERO
+                }
+                continue
+            }
+            val decision = xadd.ExprDec(ExprLib.CompExpr(op, lhs, rhs)).makeCanonical()
+            if(decision is XADD.TautDec) {
+                if(!decision._bTautology) {
+                    return xadd.ZERO
                 }
-            }*/
-        } else if(node is XADD.XADDTNode) {
+            } else {
+                decisions.add(decision)
+            }
+        }
+        var result = body()
+        for(decision in decisions.asReversed()) {
+            result = xadd.getINodeCanon(xadd.getVarIndex(decision, true), xadd.ZERO, result)
+        }
+        return result
+    }
 
-        } else {
-            throw IllegalArgumentException("Unexpected node $node")
-        }*/
+    private fun compare(d1: Double, op: ExprLib.CompOperation, d2: Double): Boolean {
+        return when(op) {
+            ExprLib.CompOperation.LT -> d1 < d2
+            ExprLib.CompOperation.LT_EQ -> d1 <= d2
+            ExprLib.CompOperation.GT -> d1 > d2
+            ExprLib.CompOperation.GT_EQ -> d1 >= d2
+            else -> throw IllegalArgumentException("Unexpected comparison $op")
+        }
+    }
+
+    private fun integral(expression: ArithExpr, variable: Variable, ub: ArithExpr, lb: ArithExpr): Int {
+        val upper = if(ub is ExprLib.DoubleExpr && ub._dConstVal == Double.POSITIVE_INFINITY) ExprLib.POS_INF else ub
+        val lower = if(lb is ExprLib.DoubleExpr && lb._dConstVal == Double.NEGATIVE_INFINITY) ExprLib.NEG_INF else lb
+        val integrated = expression.integrateExpr(variable.name)
+        val substitutedUpper = integrated.substitute(hashMapOf(Pair(variable.name, upper)))
+        val substitutedLower = integrated.substitute(hashMapOf(Pair(variable.name, lower)))
+        val result = ArithExpr.op(substitutedUpper, substitutedLower, ExprLib.ArithOperation.MINUS)
+        return xadd.getTermNode(result.makeCanonical() as ArithExpr)
+    }
+
+    private fun log(message: String) {
+        if(verbose) {
+            println(message)
+        }
     }
-}
\ No newline at end of file
+}
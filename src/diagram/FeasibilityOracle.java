@@ -0,0 +1,667 @@
+package diagram;
+
+import scpsolver.constraints.LinearSmallerThanEqualsConstraint;
+import scpsolver.lpsolver.SolverFactory;
+import scpsolver.problems.LinearProgram;
+import xadd.ExprLib;
+import xadd.XADD;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.lang.String.format;
+
+/**
+ * Decides the feasibility of the (linear) constraints along a path in the diagrams of an XADD pool / context.
+ * Constraints are pushed and popped incrementally, every path is checked in increasingly expensive steps:
+ * <ol>
+ *     <li>the witness point of the parent path (warm start) satisfies the new constraints</li>
+ *     <li>the constraint set is memoized, or implied by a memoized infeasible subset or feasible superset</li>
+ *     <li>bound propagation over the intervals of the variables decides the constraint set</li>
+ *     <li>an LP is solved</li>
+ * </ol>
+ * Decisions that are not linear are ignored (i.e. assumed to be satisfiable), hence infeasibility is never wrongly
+ * concluded. Memoized results are kept alongside the context and shared between oracles.
+ *
+ * @author Samuel Kolb
+ */
+public class FeasibilityOracle {
+
+	static final int DEFAULT_CAPACITY = 1 << 14;
+	static final int INFERENCE_WINDOW = 256;
+	private static final double TOLERANCE = 1e-9;
+	private static final double[] INFEASIBLE = new double[0];
+
+	/**
+	 * Linear constraint of the form: coefficients * variables <= bound
+	 */
+	private static class Constraint {
+		final int[] variables;
+		final double[] coefficients;
+		final double bound;
+
+		Constraint(int[] variables, double[] coefficients, double bound) {
+			this.variables = variables;
+			this.coefficients = coefficients;
+			this.bound = bound;
+		}
+
+		Constraint negate() {
+			double[] negated = new double[coefficients.length];
+			for(int i = 0; i < coefficients.length; i++) {
+				negated[i] = -coefficients[i];
+			}
+			return new Constraint(variables, negated, -bound);
+		}
+
+		boolean isSatisfiedBy(double[] point, double tolerance) {
+			double value = 0;
+			for(int i = 0; i < variables.length; i++) {
+				value += coefficients[i] * (variables[i] < point.length ? point[variables[i]] : 0);
+			}
+			return value <= bound + tolerance * Math.max(1, Math.abs(bound));
+		}
+	}
+
+	private static class SetKey {
+		final int[] literals;
+		final int hash;
+
+		SetKey(int[] literals) {
+			this.literals = literals;
+			this.hash = Arrays.hashCode(literals);
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if(this == o) return true;
+			if(o == null || getClass() != o.getClass()) return false;
+			return Arrays.equals(literals, ((SetKey) o).literals);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+	}
+
+	/**
+	 * Linear expression of the form: coefficients * variables + constant
+	 */
+	private static class LinearForm {
+		final Map<String, Double> coefficients;
+		final double constant;
+
+		LinearForm(Map<String, Double> coefficients, double constant) {
+			this.coefficients = coefficients;
+			this.constant = constant;
+		}
+
+		/**
+		 * Reads the linear form of the given expression from its structure
+		 * @param expr	The arithmetic expression
+		 * @return	The linear form or null if the expression is not linear (or contains non-finite constants)
+		 */
+		static LinearForm of(ExprLib.ArithExpr expr) {
+			if(expr instanceof ExprLib.DoubleExpr) {
+				double value = ((ExprLib.DoubleExpr) expr)._dConstVal;
+				return Double.isNaN(value) || Double.isInfinite(value) ? null : new LinearForm(new HashMap<>(), value);
+			} else if(expr instanceof ExprLib.VarExpr) {
+				Map<String, Double> coefficients = new HashMap<>();
+				coefficients.put(((ExprLib.VarExpr) expr)._sVarName, 1.0);
+				return new LinearForm(coefficients, 0);
+			} else if(!(expr instanceof ExprLib.OperExpr) || ((ExprLib.OperExpr) expr)._terms.isEmpty()) {
+				return null;
+			}
+			ExprLib.OperExpr operExpr = (ExprLib.OperExpr) expr;
+			LinearForm result = of(operExpr._terms.get(0));
+			for(int i = 1; i < operExpr._terms.size() && result != null; i++) {
+				LinearForm term = of(operExpr._terms.get(i));
+				if(term == null) {
+					return null;
+				}
+				switch(operExpr._type) {
+					case SUM:
+						result = result.plus(term, 1);
+						break;
+					case MINUS:
+						result = result.plus(term, -1);
+						break;
+					case PROD:
+						// Products of terms containing variables are not linear
+						if(result.isConstant()) {
+							result = term.times(result.constant);
+						} else if(term.isConstant()) {
+							result = result.times(term.constant);
+						} else {
+							return null;
+						}
+						break;
+					case DIV:
+						if(!term.isConstant() || term.constant == 0) {
+							return null;
+						}
+						result = result.times(1 / term.constant);
+						break;
+					default:
+						return null;
+				}
+			}
+			return result;
+		}
+
+		boolean isConstant() {
+			for(double coefficient : coefficients.values()) {
+				if(coefficient != 0) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		LinearForm plus(LinearForm other, double factor) {
+			Map<String, Double> sum = new HashMap<>(coefficients);
+			for(Map.Entry<String, Double> entry : other.coefficients.entrySet()) {
+				sum.merge(entry.getKey(), factor * entry.getValue(), Double::sum);
+			}
+			return new LinearForm(sum, constant + factor * other.constant);
+		}
+
+		LinearForm times(double factor) {
+			Map<String, Double> product = new HashMap<>();
+			for(Map.Entry<String, Double> entry : coefficients.entrySet()) {
+				product.put(entry.getKey(), factor * entry.getValue());
+			}
+			return new LinearForm(product, factor * constant);
+		}
+	}
+
+	static class Table {
+		// Constraints per literal (2 * decision id + 1 for true, 2 * decision id for false)
+		private final Map<Integer, Constraint[]> constraints = new HashMap<>();
+		// Witness point (or INFEASIBLE) per constraint set, least recently used sets are evicted first
+		private final LinkedHashMap<SetKey, double[]> results = new LinkedHashMap<>(16, 0.75f, true);
+		private final ArrayDeque<int[]> infeasibleSets = new ArrayDeque<>();
+		private final ArrayDeque<SetKey> feasibleSets = new ArrayDeque<>();
+		private int capacity = DEFAULT_CAPACITY;
+		private long queries = 0;
+		private long witnessHits = 0;
+		private long memoHits = 0;
+		private long inferred = 0;
+		private long intervalDecided = 0;
+		private long lpSolves = 0;
+
+		private void store(SetKey key, double[] result) {
+			results.put(key, result);
+			Iterator<SetKey> iterator = results.keySet().iterator();
+			while(results.size() > capacity) {
+				iterator.next();
+				iterator.remove();
+			}
+		}
+
+		private void record(SetKey key, double[] result) {
+			store(key, result);
+			if(result == INFEASIBLE) {
+				remember(infeasibleSets, key.literals);
+			} else {
+				remember(feasibleSets, key);
+			}
+		}
+
+		private static <E> void remember(ArrayDeque<E> window, E element) {
+			window.addFirst(element);
+			if(window.size() > INFERENCE_WINDOW) {
+				window.removeLast();
+			}
+		}
+	}
+
+	private static class Frame {
+		final int[] literals;
+		final double[] witness;
+
+		Frame(int[] literals, double[] witness) {
+			this.literals = literals;
+			this.witness = witness;
+		}
+
+		boolean isFeasible() {
+			return witness != INFEASIBLE;
+		}
+	}
+
+	private final XADD context;
+	private final SupportIndex supports;
+	private final Table table;
+	private final ArrayDeque<Frame> stack = new ArrayDeque<>();
+
+	private FeasibilityOracle(XADD context, Table table) {
+		this.context = context;
+		this.supports = SupportIndex.of(context);
+		this.table = table;
+		this.stack.push(new Frame(new int[0], new double[0]));
+	}
+
+	/**
+	 * Creates a new oracle (with an empty path) for the given context, oracles of the same context share memoized
+	 * results but an oracle itself should only be used by one thread at a time
+	 * @param context	The XADD pool / context
+	 * @return	The feasibility oracle
+	 */
+	public static FeasibilityOracle of(XADD context) {
+		return new FeasibilityOracle(context, ContextData.of(context).feasibility);
+	}
+
+	//region Public methods
+
+	/**
+	 * Checks whether the current path remains feasible if the given decision takes the given value
+	 * @param decisionId	The id of the decision (e.g. the variable of an internal node)
+	 * @param value			The value of the decision
+	 * @return	True iff the extended path is feasible
+	 */
+	public boolean isFeasible(int decisionId, boolean value) {
+		return extend(decisionId, value).isFeasible();
+	}
+
+	/**
+	 * Extends the current path with the given decision taking the given value
+	 * @param decisionId	The id of the decision (e.g. the variable of an internal node)
+	 * @param value			The value of the decision
+	 * @return	True iff the extended path is feasible
+	 */
+	public boolean push(int decisionId, boolean value) {
+		Frame frame = extend(decisionId, value);
+		stack.push(frame);
+		return frame.isFeasible();
+	}
+
+	/**
+	 * Removes the last decision from the current path
+	 */
+	public void pop() {
+		if(stack.size() <= 1) {
+			throw new IllegalStateException("Cannot pop from an empty path");
+		}
+		stack.pop();
+	}
+
+	/**
+	 * @return	True iff the current path is feasible
+	 */
+	public boolean isFeasible() {
+		return stack.peek().isFeasible();
+	}
+
+	/**
+	 * @return	The sorted literals (2 * decision id + 1 if true, 2 * decision id if false) of the linear decisions on the
+	 * 			current path
+	 */
+	int[] getConstraintSet() {
+		return stack.peek().literals;
+	}
+
+	/**
+	 * @return	The number of decisions on the current path
+	 */
+	public int getDepth() {
+		return stack.size() - 1;
+	}
+
+	/**
+	 * @return	The number of feasibility checks (of paths with new linear constraints)
+	 */
+	public long getQueries() {
+		synchronized(table) {
+			return table.queries;
+		}
+	}
+
+	/**
+	 * @return	The number of checks decided by the witness point of the parent path
+	 */
+	public long getWitnessHits() {
+		synchronized(table) {
+			return table.witnessHits;
+		}
+	}
+
+	/**
+	 * @return	The number of checks decided by a memoized constraint set
+	 */
+	public long getMemoHits() {
+		synchronized(table) {
+			return table.memoHits;
+		}
+	}
+
+	/**
+	 * @return	The number of checks decided by a memoized infeasible subset or feasible superset
+	 */
+	public long getInferred() {
+		synchronized(table) {
+			return table.inferred;
+		}
+	}
+
+	/**
+	 * @return	The number of checks decided by bound propagation
+	 */
+	public long getIntervalDecided() {
+		synchronized(table) {
+			return table.intervalDecided;
+		}
+	}
+
+	/**
+	 * @return	The number of LPs solved
+	 */
+	public long getLpSolves() {
+		synchronized(table) {
+			return table.lpSolves;
+		}
+	}
+
+	/**
+	 * Sets the maximal number of memoized constraint sets
+	 * @param capacity	The capacity
+	 */
+	public void setCapacity(int capacity) {
+		if(capacity < 1) {
+			throw new IllegalArgumentException(format("Capacity must be positive, was %d", capacity));
+		}
+		synchronized(table) {
+			table.capacity = capacity;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return format("FeasibilityOracle[queries=%d, witness=%d, memo=%d, inferred=%d, interval=%d, lp=%d]",
+				getQueries(), getWitnessHits(), getMemoHits(), getInferred(), getIntervalDecided(), getLpSolves());
+	}
+
+	//endregion
+
+	private Frame extend(int decisionId, boolean value) {
+		Frame parent = stack.peek();
+		if(!parent.isFeasible()) {
+			return parent;
+		}
+		int literal = 2 * decisionId + (value ? 1 : 0);
+		Constraint[] added = getConstraints(literal);
+		if(added.length == 0) {
+			return parent;
+		}
+		int[] literals = insert(parent.literals, literal);
+		if(literals == parent.literals) {
+			return parent;
+		}
+
+		synchronized(table) {
+			table.queries++;
+			if(satisfies(parent.witness, added)) {
+				table.witnessHits++;
+				return new Frame(literals, parent.witness);
+			}
+
+			SetKey key = new SetKey(literals);
+			double[] result = table.results.get(key);
+			if(result != null) {
+				table.memoHits++;
+				return new Frame(literals, result);
+			}
+
+			result = infer(literals);
+			if(result != null) {
+				table.inferred++;
+				table.store(key, result);
+				return new Frame(literals, result);
+			}
+		}
+
+		List<Constraint> all = new ArrayList<>();
+		for(int l : literals) {
+			all.addAll(Arrays.asList(getConstraints(l)));
+		}
+		double[] result = propagate(all);
+		synchronized(table) {
+			if(result != null) {
+				table.intervalDecided++;
+			} else {
+				table.lpSolves++;
+			}
+		}
+		if(result == null) {
+			result = solve(all);
+		}
+		synchronized(table) {
+			table.record(new SetKey(literals), result);
+		}
+		return new Frame(literals, result);
+	}
+
+	private double[] infer(int[] literals) {
+		for(int[] infeasible : table.infeasibleSets) {
+			if(isSubset(infeasible, literals)) {
+				return INFEASIBLE;
+			}
+		}
+		for(SetKey feasible : table.feasibleSets) {
+			if(isSubset(literals, feasible.literals)) {
+				return table.results.get(feasible);
+			}
+		}
+		return null;
+	}
+
+	private static boolean satisfies(double[] point, Constraint[] constraints) {
+		for(Constraint constraint : constraints) {
+			if(!constraint.isSatisfiedBy(point, TOLERANCE)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean isSubset(int[] subset, int[] superset) {
+		if(subset.length > superset.length) {
+			return false;
+		}
+		int j = 0;
+		for(int element : subset) {
+			while(j < superset.length && superset[j] < element) {
+				j++;
+			}
+			if(j == superset.length || superset[j] != element) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static int[] insert(int[] literals, int literal) {
+		int index = Arrays.binarySearch(literals, literal);
+		if(index >= 0) {
+			return literals;
+		}
+		index = -index - 1;
+		int[] result = new int[literals.length + 1];
+		System.arraycopy(literals, 0, result, 0, index);
+		result[index] = literal;
+		System.arraycopy(literals, index, result, index + 1, literals.length - index);
+		return result;
+	}
+
+	private Constraint[] getConstraints(int literal) {
+		synchronized(table) {
+			Constraint[] constraints = table.constraints.get(literal);
+			if(constraints == null) {
+				Constraint[] positive = toConstraints(literal / 2);
+				table.constraints.put(literal | 1, positive);
+				table.constraints.put(literal & ~1, negate(positive));
+				constraints = table.constraints.get(literal);
+			}
+			return constraints;
+		}
+	}
+
+	private static Constraint[] negate(Constraint[] constraints) {
+		// Only single inequalities can be negated (the negation of an equality is not convex)
+		if(constraints.length != 1) {
+			return new Constraint[0];
+		}
+		return new Constraint[]{constraints[0].negate()};
+	}
+
+	private Constraint[] toConstraints(int decisionId) {
+		XADD.Decision decision = context._alOrder.get(decisionId);
+		if(!(decision instanceof XADD.ExprDec)) {
+			return new Constraint[0];
+		}
+		ExprLib.CompExpr comparison = ((XADD.ExprDec) decision)._expr;
+		// lhs - rhs = coefficients * variables + constant
+		LinearForm lhs = LinearForm.of(comparison._lhs);
+		LinearForm rhs = LinearForm.of(comparison._rhs);
+		if(lhs == null || rhs == null) {
+			return new Constraint[0];
+		}
+		LinearForm difference = lhs.plus(rhs, -1);
+		List<String> variables = new ArrayList<>();
+		for(Map.Entry<String, Double> entry : difference.coefficients.entrySet()) {
+			if(entry.getValue() != 0) {
+				variables.add(entry.getKey());
+			}
+		}
+		int[] ids = new int[variables.size()];
+		double[] coefficients = new double[variables.size()];
+		for(int i = 0; i < variables.size(); i++) {
+			ids[i] = supports.getId(variables.get(i));
+			coefficients[i] = difference.coefficients.get(variables.get(i));
+		}
+
+		Constraint lessThan = new Constraint(ids, coefficients, -difference.constant);
+		switch(comparison._type) {
+			case LT:
+			case LT_EQ:
+				return new Constraint[]{lessThan};
+			case GT:
+			case GT_EQ:
+				return new Constraint[]{lessThan.negate()};
+			case EQ:
+				return new Constraint[]{lessThan, lessThan.negate()};
+			default:
+				return new Constraint[0];
+		}
+	}
+
+	/**
+	 * Propagates bounds over the intervals of the variables
+	 * @param constraints	The constraints
+	 * @return	INFEASIBLE if the constraints are infeasible, a witness point if the constraints are feasible or null if
+	 * 			bound propagation cannot decide the constraints
+	 */
+	private double[] propagate(List<Constraint> constraints) {
+		Map<Integer, double[]> intervals = new HashMap<>();
+		boolean decided = true;
+		for(Constraint constraint : constraints) {
+			if(constraint.variables.length == 0) {
+				if(0 > constraint.bound + TOLERANCE) {
+					return INFEASIBLE;
+				}
+			} else if(constraint.variables.length == 1 && constraint.coefficients[0] != 0) {
+				double[] interval = intervals.computeIfAbsent(constraint.variables[0],
+						k -> new double[]{Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY});
+				double limit = constraint.bound / constraint.coefficients[0];
+				if(constraint.coefficients[0] > 0) {
+					interval[1] = Math.min(interval[1], limit);
+				} else {
+					interval[0] = Math.max(interval[0], limit);
+				}
+				if(interval[0] > interval[1] + TOLERANCE) {
+					return INFEASIBLE;
+				}
+			} else {
+				decided = false;
+			}
+		}
+		if(!decided) {
+			for(Constraint constraint : constraints) {
+				double minimum = 0;
+				for(int i = 0; i < constraint.variables.length; i++) {
+					double[] interval = intervals.get(constraint.variables[i]);
+					double c = constraint.coefficients[i];
+					if(c != 0) {
+						minimum += interval == null ? Double.NEGATIVE_INFINITY : c * (c > 0 ? interval[0] : interval[1]);
+					}
+				}
+				if(minimum > constraint.bound + TOLERANCE) {
+					return INFEASIBLE;
+				}
+			}
+			return null;
+		}
+		double[] witness = new double[0];
+		for(Map.Entry<Integer, double[]> entry : intervals.entrySet()) {
+			double[] interval = entry.getValue();
+			double point = !Double.isInfinite(interval[0]) ? interval[0] : !Double.isInfinite(interval[1]) ? interval[1] : 0;
+			witness = ensureSize(witness, entry.getKey() + 1);
+			witness[entry.getKey()] = point;
+		}
+		return witness;
+	}
+
+	private double[] solve(List<Constraint> constraints) {
+		Map<Integer, Integer> indices = new HashMap<>();
+		List<Integer> variables = new ArrayList<>();
+		for(Constraint constraint : constraints) {
+			for(int variable : constraint.variables) {
+				if(!indices.containsKey(variable)) {
+					indices.put(variable, variables.size());
+					variables.add(variable);
+				}
+			}
+		}
+		LinearProgram lp = new LinearProgram(new double[variables.size()]);
+		double[] lowerBounds = new double[variables.size()];
+		double[] upperBounds = new double[variables.size()];
+		Arrays.fill(lowerBounds, Double.NEGATIVE_INFINITY);
+		Arrays.fill(upperBounds, Double.POSITIVE_INFINITY);
+		lp.setLowerbound(lowerBounds);
+		lp.setUpperbound(upperBounds);
+		int counter = 0;
+		for(Constraint constraint : constraints) {
+			double[] coefficients = new double[variables.size()];
+			for(int i = 0; i < constraint.variables.length; i++) {
+				coefficients[indices.get(constraint.variables[i])] += constraint.coefficients[i];
+			}
+			lp.addConstraint(new LinearSmallerThanEqualsConstraint(coefficients, constraint.bound, "c" + (counter++)));
+		}
+		lp.setMinProblem(true);
+		double[] values = SolverFactory.newDefault().solve(lp);
+		// Only the solver reporting infeasibility (no solution) is trusted, a returned point that violates the
+		// constraints (e.g. due to numerical issues) does not prove infeasibility
+		if(values == null) {
+			return INFEASIBLE;
+		}
+		double[] witness = new double[0];
+		if(values.length == variables.size()) {
+			for(int i = 0; i < variables.size(); i++) {
+				witness = ensureSize(witness, variables.get(i) + 1);
+				witness[variables.get(i)] = values[i];
+			}
+		}
+		return witness;
+	}
+
+	private static double[] ensureSize(double[] point, int size) {
+		return point.length >= size ? point : Arrays.copyOf(point, size);
+	}
+}
@@ -0,0 +1,104 @@
+package diagram;
+
+import xadd.XADD;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Removes infeasible paths from diagrams (the counterpart of XADD.reduceLP), deciding the feasibility of paths with a
+ * FeasibilityOracle. Decisions that are implied by the path leading to them are removed.
+ *
+ * @author Samuel Kolb
+ */
+public class FeasibilityReduction {
+
+	private static class ReduceKey {
+		final int nodeId;
+		final int[] path;
+		final int hash;
+
+		ReduceKey(int nodeId, int[] path) {
+			this.nodeId = nodeId;
+			this.path = path;
+			this.hash = 31 * nodeId + Arrays.hashCode(path);
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if(this == o) return true;
+			if(o == null || getClass() != o.getClass()) return false;
+
+			ReduceKey that = (ReduceKey) o;
+
+			return nodeId == that.nodeId && Arrays.equals(path, that.path);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+	}
+
+	private final XADD context;
+	private final FeasibilityOracle oracle;
+	private final Map<ReduceKey, Integer> cache = new HashMap<>();
+
+	private FeasibilityReduction(XADD context) {
+		this.context = context;
+		this.oracle = FeasibilityOracle.of(context);
+	}
+
+	/**
+	 * Removes the infeasible paths from the given diagram
+	 * @param context	The XADD pool / context
+	 * @param rootId	The id of the root of the diagram
+	 * @return	The id of the reduced diagram
+	 */
+	public static int reduce(XADD context, int rootId) {
+		return new FeasibilityReduction(context).reduce(rootId);
+	}
+
+	private int reduce(int nodeId) {
+		XADD.XADDNode node = context.getNode(nodeId);
+		if(node instanceof XADD.XADDTNode) {
+			return nodeId;
+		} else if(!(node instanceof XADD.XADDINode)) {
+			throw new IllegalStateException("Unexpected structural error");
+		}
+
+		// Results depend on the (order independent) linear constraints along the path leading to the node
+		ReduceKey key = new ReduceKey(nodeId, oracle.getConstraintSet());
+		Integer cached = cache.get(key);
+		if(cached != null) {
+			return cached;
+		}
+
+		XADD.XADDINode iNode = (XADD.XADDINode) node;
+		int low = reduceBranch(iNode._var, false, iNode._low);
+		int high = reduceBranch(iNode._var, true, iNode._high);
+		int result;
+		if(low < 0 && high < 0) {
+			// The path itself is infeasible (only possible at the root), nothing can be removed
+			result = nodeId;
+		} else if(low < 0) {
+			result = high;
+		} else if(high < 0) {
+			result = low;
+		} else {
+			result = context.getINode(iNode._var, low, high);
+		}
+		cache.put(key, result);
+		return result;
+	}
+
+	private int reduceBranch(int decisionId, boolean value, int childId) {
+		boolean feasible = oracle.push(decisionId, value);
+		try {
+			return feasible ? reduce(childId) : -1;
+		} finally {
+			oracle.pop();
+		}
+	}
+}
@@ -0,0 +1,105 @@
+package diagram;
+
+import xadd.ExprLib;
+import xadd.XADD;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Integration method that chooses the elimination order itself: before every step the remaining variable that is
+ * estimated to be cheapest to eliminate from the current diagram is selected and eliminated by the given
+ * single-variable integration method.
+ *
+ * @author Samuel Kolb
+ */
+public class GreedyEliminationIntegrator implements Integrator {
+
+    private final SingleVariableIntegrator integrator;
+
+    /**
+     * @param integrator    The integration method used to eliminate single variables
+     */
+    public GreedyEliminationIntegrator(SingleVariableIntegrator integrator) {
+        this.integrator = integrator;
+    }
+
+    @Override
+    public XADDiagram integrate(XADDiagram diagram, List<Variable> variables) {
+        List<Variable> remaining = new ArrayList<>(variables);
+        while(!remaining.isEmpty()) {
+            Variable next = selectNext(diagram, remaining);
+            remaining.remove(next);
+            diagram = integrator.integrate(diagram, next);
+        }
+        return diagram;
+    }
+
+    /**
+     * Selects the variable that is estimated to be cheapest to eliminate (ties are broken by the given order).
+     * Boolean variables cost the number of nodes deciding on them, real variables the number of (upper, lower) bound
+     * pairs that resolution can combine, estimated from the decisions that bound them from above and below.
+     * @param diagram       The diagram to eliminate from
+     * @param candidates    The candidate variables
+     * @return  The selected variable
+     */
+    public static Variable selectNext(XADDiagram diagram, List<Variable> candidates) {
+        long[] costs = estimateCosts(diagram, candidates);
+        int best = 0;
+        for(int i = 1; i < candidates.size(); i++) {
+            if(costs[i] < costs[best]) {
+                best = i;
+            }
+        }
+        return candidates.get(best);
+    }
+
+    /**
+     * Estimates the cost of eliminating each of the given variables from the given diagram (in one pass)
+     * @param diagram       The diagram to eliminate from
+     * @param candidates    The candidate variables
+     * @return  The estimated costs (in the order of the candidates)
+     */
+    public static long[] estimateCosts(XADDiagram diagram, List<Variable> candidates) {
+        XADD context = diagram.xadd;
+        SupportIndex supports = SupportIndex.of(context);
+        int[] ids = new int[candidates.size()];
+        for(int i = 0; i < candidates.size(); i++) {
+            ids[i] = supports.getId(candidates.get(i).getName());
+        }
+
+        long[] upper = new long[candidates.size()];
+        long[] lower = new long[candidates.size()];
+        for(int nodeId : DiagramWalker.postOrder(context, diagram.number)) {
+            XADD.XADDNode node = context.getNode(nodeId);
+            if(!(node instanceof XADD.XADDINode)) {
+                continue;
+            }
+            XADD.XADDINode iNode = (XADD.XADDINode) node;
+            BitSet variables = supports.getDecisionVariables(iNode._var);
+            for(int i = 0; i < ids.length; i++) {
+                if(!variables.get(ids[i])) {
+                    continue;
+                }
+                if(iNode.getDecision() instanceof XADD.ExprDec) {
+                    ExprLib.CompExpr comparison = ((XADD.ExprDec) iNode.getDecision())._expr;
+                    double coefficient = comparison._lhs.removeVarFromExpr(candidates.get(i).getName())._coef;
+                    if(coefficient < 0) {
+                        upper[i]++;
+                    } else {
+                        lower[i]++;
+                    }
+                } else {
+                    upper[i]++;
+                }
+            }
+        }
+
+        long[] costs = new long[candidates.size()];
+        for(int i = 0; i < candidates.size(); i++) {
+            costs[i] = candidates.get(i).isBool() ? upper[i] + lower[i] : (upper[i] + 1) * (lower[i] + 1) - 1;
+        }
+        return costs;
+    }
+}
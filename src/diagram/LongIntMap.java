@@ -0,0 +1,97 @@
+package diagram;
+
+import java.util.Arrays;
+
+/**
+ * Exact map from primitive long keys to int values.
+ * Entries are stored using open addressing (linear probing) and the map grows rather than evicting entries, hence it
+ * is meant for data that is bounded by the lifetime of its owner (e.g. a single integrate call). The map is not
+ * synchronized.
+ *
+ * @author Samuel Kolb
+ */
+class LongIntMap {
+
+	private static final long EMPTY = Long.MIN_VALUE;
+	private static final int MIN_CAPACITY = 16;
+
+	private long[] keys;
+	private int[] values;
+	private int size = 0;
+
+	LongIntMap() {
+		allocate(MIN_CAPACITY);
+	}
+
+	private void allocate(int capacity) {
+		keys = new long[capacity];
+		Arrays.fill(keys, EMPTY);
+		values = new int[capacity];
+		size = 0;
+	}
+
+	private int getSlot(long key) {
+		long hash = key * 0x9E3779B97F4A7C15L;
+		int slot = (int) (hash >>> 32) & (keys.length - 1);
+		while(keys[slot] != EMPTY && keys[slot] != key) {
+			slot = (slot + 1) & (keys.length - 1);
+		}
+		return slot;
+	}
+
+	/**
+	 * @param key	The key (not Long.MIN_VALUE)
+	 * @return	The value of the key or LongIntTable.MISSING if the key is absent
+	 */
+	int get(long key) {
+		int slot = getSlot(key);
+		return keys[slot] == EMPTY ? LongIntTable.MISSING : values[slot];
+	}
+
+	/**
+	 * @param key	The key (not Long.MIN_VALUE)
+	 * @param value	The value
+	 */
+	void put(long key, int value) {
+		int slot = getSlot(key);
+		if(keys[slot] == EMPTY) {
+			if(2 * (size + 1) > keys.length) {
+				rehash(keys.length * 2, null);
+				slot = getSlot(key);
+			}
+			keys[slot] = key;
+			size++;
+		}
+		values[slot] = value;
+	}
+
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Removes all entries that do not pass the given filter
+	 * @param filter	The filter
+	 */
+	void retain(LongIntTable.EntryFilter filter) {
+		rehash(keys.length, filter);
+	}
+
+	void clear() {
+		allocate(MIN_CAPACITY);
+	}
+
+	private void rehash(int capacity, LongIntTable.EntryFilter filter) {
+		long[] oldKeys = keys;
+		int[] oldValues = values;
+		allocate(capacity);
+		for(int i = 0; i < oldKeys.length; i++) {
+			if(oldKeys[i] != EMPTY && (filter == null || filter.test(oldKeys[i], oldValues[i]))) {
+				int slot = getSlot(oldKeys[i]);
+				keys[slot] = oldKeys[i];
+				values[slot] = oldValues[i];
+				size++;
+			}
+		}
+	}
+}
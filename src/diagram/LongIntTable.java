@@ -0,0 +1,125 @@
+package diagram;
+
+import java.util.Arrays;
+
+/**
+ * Memory-bounded map from primitive (non-negative) long keys to int values.
+ * Entries are stored in a set-associative table (open addressing within a set) and evicted using the second-chance
+ * (CLOCK) policy. All access is synchronized on the table.
+ *
+ * @author Samuel Kolb
+ */
+class LongIntTable {
+
+	/**
+	 * Filter on the entries of a table
+	 */
+	interface EntryFilter {
+
+		/**
+		 * @param key	The key of the entry
+		 * @param value	The value of the entry
+		 * @return	True iff the entry is to be kept
+		 */
+		boolean test(long key, int value);
+	}
+
+	static final long EMPTY = -1;
+	static final int MISSING = -1;
+
+	private static final int WAYS = 4;
+
+	long[] keys;
+	private int[] values;
+	private boolean[] referenced;
+	private byte[] hands;
+	long hits = 0;
+	long misses = 0;
+	long evictions = 0;
+
+	LongIntTable(int capacity) {
+		allocate(capacity);
+	}
+
+	/**
+	 * Allocates a new (empty) table of at least the given capacity, rounded up to a power of two
+	 * @param capacity	The capacity
+	 */
+	synchronized void allocate(int capacity) {
+		int sets = Integer.highestOneBit(Math.max(1, (capacity + WAYS - 1) / WAYS));
+		if(sets * WAYS < capacity) {
+			sets *= 2;
+		}
+		keys = new long[sets * WAYS];
+		Arrays.fill(keys, EMPTY);
+		values = new int[sets * WAYS];
+		referenced = new boolean[sets * WAYS];
+		hands = new byte[sets];
+	}
+
+	private int getSet(long key) {
+		long hash = key * 0x9E3779B97F4A7C15L;
+		return (int) (hash >>> 32) & (hands.length - 1);
+	}
+
+	synchronized int get(long key) {
+		int start = getSet(key) * WAYS;
+		for(int i = start; i < start + WAYS; i++) {
+			if(keys[i] == key) {
+				referenced[i] = true;
+				hits++;
+				return values[i];
+			}
+		}
+		misses++;
+		return MISSING;
+	}
+
+	synchronized void put(long key, int value) {
+		int set = getSet(key);
+		int start = set * WAYS;
+		for(int i = start; i < start + WAYS; i++) {
+			if(keys[i] == EMPTY || keys[i] == key) {
+				keys[i] = key;
+				values[i] = value;
+				referenced[i] = false;
+				return;
+			}
+		}
+		// Second chance: skip (and clear) referenced entries until an unreferenced victim is found
+		int hand = hands[set];
+		while(referenced[start + hand]) {
+			referenced[start + hand] = false;
+			hand = (hand + 1) % WAYS;
+		}
+		keys[start + hand] = key;
+		values[start + hand] = value;
+		hands[set] = (byte) ((hand + 1) % WAYS);
+		evictions++;
+	}
+
+	synchronized int size() {
+		int size = 0;
+		for(long key : keys) {
+			if(key != EMPTY) {
+				size++;
+			}
+		}
+		return size;
+	}
+
+	synchronized void retain(EntryFilter filter) {
+		for(int i = 0; i < keys.length; i++) {
+			if(keys[i] != EMPTY && !filter.test(keys[i], values[i])) {
+				keys[i] = EMPTY;
+				referenced[i] = false;
+			}
+		}
+	}
+
+	synchronized void clear() {
+		Arrays.fill(keys, EMPTY);
+		Arrays.fill(referenced, false);
+		Arrays.fill(hands, (byte) 0);
+	}
+}
@@ -5,20 +5,24 @@ import build.Factory;
 import pair.TypePair;
 import xadd.XADD;
 
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
 /**
  * Created by samuelkolb on 03/05/16.
  *
  * @author Samuel Kolb
  */
-public class Optimization implements XADDiagram.NodeWalkerObserver<XADDPath, Assignment.Valued<Double>> {
+public class Optimization implements XADDiagram.ParallelObserver<XADDPath, Assignment.Valued<Double>> {
 
 	private final boolean minimize;
-	private final Solver<Assignment.Valued<Double>> solver;
+	private final Factory<Solver<Assignment.Valued<Double>>> factory;
+	// Idle solvers of this walk, such that leaves can be solved in parallel without sharing a solver
+	private final Queue<Solver<Assignment.Valued<Double>>> solvers = new ConcurrentLinkedQueue<>();
 
 	Optimization(boolean minimize, Factory<Solver<Assignment.Valued<Double>>> factory) {
 		this.minimize = minimize;
-		this.solver = factory.create();
-		this.solver.setOpt(minimize ? Solver.Operation.MIN : Solver.Operation.MAX);
+		this.factory = factory;
 	}
 
 	@Override
@@ -28,9 +32,26 @@ public class Optimization implements XADDiagram.NodeWalkerObserver<XADDPath, Ass
 
 	@Override
 	public Assignment.Valued<Double> calculate(int nodeId, XADD.XADDTNode node, XADDPath state) {
-		solver.setPath(state);
-		solver.setObjective(node._expr);
-		return solver.solve();
+		Solver<Assignment.Valued<Double>> solver = solvers.poll();
+		if(solver == null) {
+			solver = factory.create();
+			solver.setOpt(minimize ? Solver.Operation.MIN : Solver.Operation.MAX);
+		}
+		try {
+			solver.setPath(state);
+			solver.setObjective(node._expr);
+			return solver.solve();
+		} finally {
+			solvers.offer(solver);
+		}
+	}
+
+	/**
+	 * @return	The number of idle solvers, after a walk this is the number of solvers that were created (at most one per
+	 * concurrently solved leaf)
+	 */
+	int getSolverCount() {
+		return solvers.size();
 	}
 
 	@Override
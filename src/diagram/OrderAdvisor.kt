@@ -0,0 +1,176 @@
+package diagram
+
+import java.util.*
+import kotlin.collections.ArrayList
+import kotlin.collections.HashMap
+import kotlin.collections.HashSet
+
+/**
+ * Proposes variable orders (for OrderedXADD) and elimination orders (for the resolve integrators) by analysing the
+ * interaction graph of a parsed theory: variables are connected if they co-occur in a decision or a leaf expression.
+ * @author Samuel Kolb
+ */
+class OrderAdvisor(strings: Collection<String>) {
+
+    enum class Heuristic { MIN_DEGREE, MIN_FILL, FORCE }
+
+    private val scopes = ArrayList<Set<String>>()
+    private val neighbors = HashMap<String, MutableSet<String>>()
+    private val firstOccurrence = LinkedHashSet<String>()
+
+    constructor(vararg strings: String) : this(strings.toList())
+
+    init {
+        strings.forEach { collectScopes(NestedParser(operators).parseString(it)) }
+        for(scope in scopes) {
+            scope.forEach { neighbors.getOrPut(it, { HashSet() }).addAll(scope - it) }
+        }
+    }
+
+    /**
+     * Proposes an elimination order: variables eliminated first come first
+     * @param variables The variables to order
+     * @param heuristic The heuristic to use
+     * @return The ordered variables
+     */
+    fun eliminationOrder(variables: Collection<String>, heuristic: Heuristic = Heuristic.MIN_FILL) : List<String> {
+        return when(heuristic) {
+            Heuristic.MIN_DEGREE -> greedyElimination(variables, { graph, v -> graph[v]!!.size })
+            Heuristic.MIN_FILL -> greedyElimination(variables, { graph, v -> countFill(graph, v) })
+            Heuristic.FORCE -> force(variables).reversed()
+        }
+    }
+
+    /**
+     * Proposes a variable order for an ordered context: variables that come first are ordered higher up, hence
+     * variables eliminated first come last
+     * @param variables The variables to order
+     * @param heuristic The heuristic to use
+     * @return The ordered variables
+     */
+    fun variableOrder(variables: Collection<String>, heuristic: Heuristic = Heuristic.MIN_FILL) : List<String> {
+        return eliminationOrder(variables, heuristic).reversed()
+    }
+
+    private fun collectScopes(node: NestedParser.Node) {
+        if(node !is NestedParser.OperatorNode) {
+            return
+        }
+        if(node.name == "var") {
+            firstOccurrence.add(node.childNodes[1].name!!)
+        } else if(node.name in arrayOf("<=", "<") || isArithmetic(node)) {
+            val scope = getVariables(node)
+            if(scope.isNotEmpty()) {
+                scopes.add(scope)
+                firstOccurrence.addAll(scope)
+            }
+        } else {
+            node.childNodes.forEach { collectScopes(it) }
+        }
+    }
+
+    private fun isArithmetic(node: NestedParser.Node) : Boolean {
+        if(node !is NestedParser.OperatorNode) {
+            return false
+        }
+        return when(node.name) {
+            "const", "var" -> node.childNodes[0].name == "real"
+            "*", "+", "^" -> node.childNodes.all { isArithmetic(it) }
+            else -> false
+        }
+    }
+
+    private fun getVariables(node: NestedParser.Node) : Set<String> {
+        val variables = LinkedHashSet<String>()
+        val stack = ArrayDeque<NestedParser.Node>()
+        stack.push(node)
+        while(stack.isNotEmpty()) {
+            val current = stack.pop()
+            if(current is NestedParser.OperatorNode) {
+                if(current.name == "var") {
+                    variables.add(current.childNodes[1].name!!)
+                } else {
+                    current.childNodes.forEach { stack.push(it) }
+                }
+            }
+        }
+        return variables
+    }
+
+    private fun getGraph(variables: Collection<String>) : HashMap<String, MutableSet<String>> {
+        val graph = HashMap<String, MutableSet<String>>()
+        val included = HashSet(variables)
+        for(variable in variables) {
+            graph[variable] = HashSet((neighbors[variable] ?: emptySet<String>()).filter { it in included })
+        }
+        return graph
+    }
+
+    private fun countFill(graph: Map<String, Set<String>>, variable: String) : Int {
+        val adjacent = graph[variable]!!.toList()
+        var fill = 0
+        for(i in adjacent.indices) {
+            for(j in i + 1 until adjacent.size) {
+                if(adjacent[j] !in graph[adjacent[i]]!!) {
+                    fill++
+                }
+            }
+        }
+        return fill
+    }
+
+    private fun greedyElimination(variables: Collection<String>,
+                                  cost: (Map<String, Set<String>>, String) -> Int) : List<String> {
+        val graph = getGraph(variables)
+        val order = ArrayList<String>()
+        // Ties are broken by the order of first occurrence to keep proposals deterministic
+        val rank = HashMap<String, Int>()
+        (firstOccurrence.filter { it in graph } + variables.filter { it !in firstOccurrence })
+                .forEachIndexed { i, v -> rank[v] = i }
+        while(graph.isNotEmpty()) {
+            val variable = graph.keys.minWith(compareBy<String>({ cost(graph, it) }, { rank[it] }))!!
+            val adjacent = graph.remove(variable)!!
+            for(neighbor in adjacent) {
+                val neighborSet = graph[neighbor]!!
+                neighborSet.remove(variable)
+                neighborSet.addAll(adjacent - neighbor)
+            }
+            order.add(variable)
+        }
+        return order
+    }
+
+    private fun force(variables: Collection<String>, iterations: Int = 20) : List<String> {
+        val included = HashSet(variables)
+        val edges = scopes.map { scope -> scope.filter { it in included } }.filter { it.size > 1 }
+        var order = firstOccurrence.filter { it in included } + variables.filter { it !in firstOccurrence }
+        var bestSpan = span(order, edges)
+        for(iteration in 0 until iterations) {
+            val position = HashMap<String, Double>()
+            order.forEachIndexed { i, v -> position[v] = i.toDouble() }
+            val sums = HashMap<String, Double>()
+            val counts = HashMap<String, Int>()
+            for(edge in edges) {
+                val center = edge.sumByDouble { position[it]!! } / edge.size
+                edge.forEach {
+                    sums[it] = (sums[it] ?: 0.0) + center
+                    counts[it] = (counts[it] ?: 0) + 1
+                }
+            }
+            val newOrder = order.sortedBy { if(counts.containsKey(it)) sums[it]!! / counts[it]!! else position[it]!! }
+            val newSpan = span(newOrder, edges)
+            if(newSpan >= bestSpan) {
+                break
+            }
+            order = newOrder
+            bestSpan = newSpan
+        }
+        return order
+    }
+
+    private fun span(order: List<String>, edges: List<List<String>>) : Int {
+        val position = HashMap<String, Int>()
+        order.forEachIndexed { i, v -> position[v] = i }
+        return edges.sumBy { edge -> edge.map { position[it]!! }.max()!! - edge.map { position[it]!! }.min()!! }
+    }
+}
@@ -10,6 +10,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 import static java.lang.String.format;
@@ -21,7 +22,38 @@ import static java.lang.String.format;
  */
 public class OrderedXADD extends XADD {
 
-	private final List<String> variableOrder;
+	/**
+	 * Precomputed data of a decision used to order it with respect to other decisions
+	 */
+	private static class OrderKey {
+		final boolean bool;
+		// Ranks of the variables, sorted such that the prioritized variable comes first
+		final int[] order;
+		// Ranks of the variables in the order in which they are compared
+		final int[] comparisonRanks;
+		// Ranks of the variables in increasing order and the corresponding coefficients
+		final int[] sortedRanks;
+		final double[] coefficients;
+		final double constant;
+
+		OrderKey(boolean bool, int[] order, int[] comparisonRanks, int[] sortedRanks, double[] coefficients,
+				 double constant) {
+			this.bool = bool;
+			this.order = order;
+			this.comparisonRanks = comparisonRanks;
+			this.sortedRanks = sortedRanks;
+			this.coefficients = coefficients;
+			this.constant = constant;
+		}
+
+		double getCoefficient(int rank) {
+			return coefficients[Arrays.binarySearch(sortedRanks, rank)];
+		}
+	}
+
+	private List<String> variableOrder;
+	private final Map<String, Integer> ranks = new HashMap<>();
+	private final List<OrderKey> orderKeys = new ArrayList<>();
 
 	public List<String> getVariableOrder() {
 		return variableOrder;
@@ -29,14 +61,34 @@ public class OrderedXADD extends XADD {
 
 	private final boolean orderOnFirst;
 
+	public boolean isOrderOnFirst() {
+		return orderOnFirst;
+	}
+
 	/**
 	 * Constructs an ordered xadd
 	 * @param variableOrder	The order of the variables used: variables occurring first are ordered higher up
 	 * @param orderOnFirst	If true the ordering prioritizes the first element, otherwise it prioritizes the last
 	 */
 	public OrderedXADD(List<String> variableOrder, boolean orderOnFirst) {
-		this.variableOrder = Collections.unmodifiableList(new ArrayList<>(variableOrder));
 		this.orderOnFirst = orderOnFirst;
+		setVariableOrder(variableOrder);
+	}
+
+	/**
+	 * Changes the variable order. Existing nodes are only consistent with the new order if the relative order of the
+	 * variables they contain is unchanged, therefore this is only used on scratch contexts (see VariableSifting).
+	 * @param variableOrder	The new variable order
+	 */
+	void setVariableOrder(List<String> variableOrder) {
+		this.variableOrder = Collections.unmodifiableList(new ArrayList<>(variableOrder));
+		this.ranks.clear();
+		for(int i = this.variableOrder.size() - 1; i >= 0; i--) {
+			this.ranks.put(this.variableOrder.get(i), i);
+		}
+		this.orderKeys.clear();
+		// Cached results may have been computed under the previous order
+		_hmApplyCache.clear();
 	}
 
 	List<String> getVariables(Decision decision) {
@@ -48,28 +100,63 @@ public class OrderedXADD extends XADD {
 	int[] getOrder(List<String> variables) {
 		int[] order = new int[variables.size()];
 		for(int i = 0; i < variables.size(); i++) {
-			order[i] = getVariableOrder().indexOf(variables.get(i));
+			order[i] = ranks.getOrDefault(variables.get(i), -1);
 		}
 		Arrays.sort(order);
 		return order;
 	}
 
-	@Override
-	public boolean localOrderCompareGE(int var1, int var2) {
-		// test1 >= test2
-		Decision dec1 = _alOrder.get(var1);
-		Decision dec2 = _alOrder.get(var2);
+	private OrderKey getOrderKey(int var) {
+		while(orderKeys.size() <= var) {
+			orderKeys.add(null);
+		}
+		OrderKey key = orderKeys.get(var);
+		if(key == null) {
+			key = computeOrderKey(_alOrder.get(var));
+			orderKeys.set(var, key);
+		}
+		return key;
+	}
 
-		List<String> vars1 = getVariables(dec1);
-		List<String> vars2 = getVariables(dec2);
+	private OrderKey computeOrderKey(Decision decision) {
+		List<String> variables = getVariables(decision);
+		int[] order = getOrder(variables);
+		int[] sortedRanks = order.clone();
+		if(!orderOnFirst) {
+			ArrayUtil.reverse(order);
+		}
 
-		int[] order1 = getOrder(vars1);
-		int[] order2 = getOrder(vars2);
+		int[] comparisonRanks = new int[variables.size()];
+		for(int i = 0; i < variables.size(); i++) {
+			comparisonRanks[i] = ranks.getOrDefault(variables.get(i), -1);
+		}
 
-		if(!orderOnFirst) {
-			ArrayUtil.reverse(order1);
-			ArrayUtil.reverse(order2);
+		double[] coefficients = new double[variables.size()];
+		double constant = 0;
+		if(decision instanceof ExprDec) {
+			HashMap<String, Double> assignment = new HashMap<>();
+			for(String var : variables) {
+				assignment.put(var, 0.0);
+			}
+			constant = ((ExprDec) decision)._expr._lhs.evaluate(assignment);
+			for(String var : variables) {
+				assignment.put(var, 1.0);
+				int index = Arrays.binarySearch(sortedRanks, ranks.getOrDefault(var, -1));
+				coefficients[index] = ((ExprDec) decision)._expr._lhs.evaluate(assignment) - constant;
+				assignment.put(var, 0.0);
+			}
 		}
+		return new OrderKey(decision instanceof BoolDec, order, comparisonRanks, sortedRanks, coefficients, constant);
+	}
+
+	@Override
+	public boolean localOrderCompareGE(int var1, int var2) {
+		// test1 >= test2
+		OrderKey key1 = getOrderKey(var1);
+		OrderKey key2 = getOrderKey(var2);
+
+		int[] order1 = key1.order;
+		int[] order2 = key2.order;
 
 		for(int i = 0; i < Math.max(order1.length, order2.length); i++) {
 			if(i >= order1.length) {
@@ -90,21 +177,16 @@ public class OrderedXADD extends XADD {
 		}
 		// All variables where the same
 		// test1 = test2 for booleans
-		if(dec1 instanceof BoolDec) {
+		if(key1.bool) {
 			return true;
 		}
 		// For arithmetic look at constants
-		if(dec1 instanceof ExprDec) {
-			HashMap<String, Double> assignment = new HashMap<>();
-			for(String var : vars1) {
-				assignment.put(var, 0.0);
-			}
-			double constant1 = ((ExprDec) dec1)._expr._lhs.evaluate(assignment);
-			double constant2 = ((ExprDec) dec2)._expr._lhs.evaluate(assignment);
-			for(String var : vars1) {
-				assignment.put(var, 1.0);
-				double val1 = ((ExprDec) dec1)._expr._lhs.evaluate(assignment) - constant1;
-				double val2 = ((ExprDec) dec2)._expr._lhs.evaluate(assignment) - constant2;
+		if(_alOrder.get(var1) instanceof ExprDec) {
+			double constant1 = key1.constant;
+			double constant2 = key2.constant;
+			for(int rank : key1.comparisonRanks) {
+				double val1 = key1.getCoefficient(rank);
+				double val2 = key2.getCoefficient(rank);
  				if(val1 < 0 && val2 > 0) {
 					return false;
 				} else if(val1 > 0 && val2 < 0) {
@@ -123,7 +205,6 @@ public class OrderedXADD extends XADD {
 						return factor1 < factor2;
 					}
 				}
-				assignment.put(var, 0.0);
 				if(val1 > val2) {
 					return true;
 				} else if(val1 < val2) {
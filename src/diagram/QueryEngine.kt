@@ -21,14 +21,16 @@ class QueryEngine {
         fun integrate(xadd: XADDiagram, variables: List<String>) : XADDiagram
     }
 
-    inner class MassIntegrator : Integrator {
+    inner class MassIntegrator(val advisor: OrderAdvisor? = null) : Integrator {
         private var integrator: ResolveAllIntegration? = null
 
         override fun setup(theoryVars: List<String>, queryVars: List<String>): XADD {
-            // Setting the ordering - TODO find theory good ordering
-            val order = theoryVars + queryVars
+            // Setting the ordering, within the theory and query variables the advisor (if any) proposes the order
+            val order = if(advisor == null) theoryVars + queryVars else
+                advisor.variableOrder(theoryVars, orderHeuristic) + advisor.variableOrder(queryVars, orderHeuristic)
             val orderedXadd = OrderedXADD(order, false)
             this.integrator = ResolveAllIntegration(orderedXadd, order.map { getType(it) })
+            this.integrator!!.reductionPolicy = reductionPolicy
             return orderedXadd
         }
 
@@ -36,6 +38,24 @@ class QueryEngine {
             return XADDiagram(xadd.xadd, this.integrator!!.integrate(xadd.number, HashSet(variables)))
         }
 
+        /**
+         * Reorders the variables of the given diagram if its context holds more than reorderThreshold nodes
+         * @param diagram The diagram to reorder
+         * @return The diagram rebuilt in a context using the new order (subsequent integrations use this context) or
+         * the given diagram if no reordering was necessary
+         */
+        fun reorder(diagram: XADDiagram): XADDiagram {
+            val reordering = VariableSifting().reorderIfAbove(diagram.xadd as OrderedXADD, listOf(diagram.number),
+                    reorderThreshold)
+            if(!reordering.isPresent) {
+                return diagram
+            }
+            val orderedXadd = reordering.get().context
+            this.integrator = ResolveAllIntegration(orderedXadd, orderedXadd.variableOrder.map { getType(it) })
+            this.integrator!!.reductionPolicy = reductionPolicy
+            return reordering.get().getDiagram(diagram)
+        }
+
     }
 
     inner class OriginalIntegrator : Integrator {
@@ -65,6 +85,9 @@ class QueryEngine {
         }
 
         override fun integrate(xadd: XADDiagram, variables: List<String>): XADDiagram {
+            if(greedyElimination) {
+                return xadd.eliminateVarsGreedy(variables, variables.map { getType(it) })
+            }
             return xadd.eliminateVars(variables, variables.map { getType(it) })
         }
     }
@@ -82,6 +105,12 @@ class QueryEngine {
     val variables = ArrayList<String>()
     val types = ArrayList<String>()
     val times: HashMap<String, Double> = HashMap()
+    var orderHeuristic = OrderAdvisor.Heuristic.MIN_FILL
+    var adviseOrder = false
+    var greedyElimination = false
+    var reductionPolicy = ReductionPolicy.ALWAYS
+    var reorderThreshold = 100000
+    var compactThreshold = 100000
 
     fun addRealVar(name: String) : QueryEngine {
         return addVar(name, "real")
@@ -106,7 +135,7 @@ class QueryEngine {
     }
 
     fun getVars(query: XADDiagram) : Set<String> {
-        return query.xadd.collectVars(query.number)
+        return SupportIndex.of(query.xadd).getVariables(query.number)
     }
 
     fun getVarsString(queryString: String) : Set<String> {
@@ -127,6 +156,7 @@ class QueryEngine {
             : List<Double> {
         val orderedXadd = OrderedXADD(variables, false)
         val integrator = ResolveAllIntegration(orderedXadd, orderedXadd.variableOrder.map { getType(it) })
+        integrator.reductionPolicy = reductionPolicy
         val parser = XADDParser(orderedXadd)
         val theoryDiagram = parser.parseXadd(diagramString).reduceLp()
         println("Parsed theory")
@@ -170,17 +200,18 @@ class QueryEngine {
         }
         val queryVars = getVarsStrings(queryStrings).toList() - evidenceVars
         val theoryVars = variables - queryVars - evidenceVars
+        val advisor = if(adviseOrder) OrderAdvisor(diagramString, weightString) else null
         val integrator = when(integratorType) {
             "original" -> OriginalIntegrator()
-            "mass" -> MassIntegrator()
+            "mass" -> MassIntegrator(advisor)
             "resolve" -> ResolveIntegrator()
             "resolve-sym" -> SymbolicResolveIntegrator()
             else -> throw IllegalArgumentException("Unrecognized integrator $integratorType")
         }
 
-        val xadd = integrator.setup(theoryVars, queryVars)
+        var xadd = integrator.setup(theoryVars, queryVars)
         this.variables.filter { getType(it) == "bool" }.forEach { XADDBuild.builder(xadd).bool(it) }
-        val parser = XADDParser(xadd)
+        var parser = XADDParser(xadd)
         val theoryDiagram = parser.parseXadd(diagramString).reduceLp()
         println("Parsed theory")
         // theoryDiagram.show("Theory")
@@ -191,7 +222,13 @@ class QueryEngine {
         // weightDiagram.show("Weights")
         weightDiagram.exportGraph("srn_weight_diagram.dot")
 
-        val fullDiagram = theoryDiagram.times(weightDiagram).reduceLp()
+        var fullDiagram = theoryDiagram.times(weightDiagram).reduceLp()
+        if(integrator is MassIntegrator) {
+            // Queries are built in the context of the (possibly reordered) full diagram
+            fullDiagram = integrator.reorder(fullDiagram)
+            xadd = fullDiagram.xadd
+            parser = XADDParser(xadd)
+        }
         // val fullDiagram = parser.parseXadd("(* $diagramString $weightString)").reduceLp()
 
         // fullDiagram.show("Full diagram")
@@ -206,7 +243,8 @@ class QueryEngine {
 
         val stopWatch = Stopwatch(true)
         // integrator.isVerbose = true
-        var partialDiagram = integrator.integrate(fullDiagram, theoryVars).reduceLp()
+        val eliminationVars = advisor?.eliminationOrder(theoryVars, orderHeuristic) ?: theoryVars
+        var partialDiagram = integrator.integrate(fullDiagram, eliminationVars).reduceLp()
         partialDiagram = partialDiagram.evaluatePartial(evidence[0].booleanVariables, evidence[0].continuousVariables)
         println("Reduced partially")
         // partialDiagram.show("Partial diagram")
@@ -220,26 +258,35 @@ class QueryEngine {
         println(times["Pre-processing"])
         val queryProbabilities = ArrayList<Double>()
 
-        for(queryString in queryStrings) {
-            var query = BoolXADD.convert(parser.parseXadd(queryString))
-            query = query.evaluatePartial(evidence[0].booleanVariables, evidence[0].continuousVariables) // TODO hack with evidedence[0
-
-            // val queryDiagram = partialDiagram.times(query)
-            stopWatch.start()
-            // TODO Reduce?
-            val queryDiagram = partialDiagram.times(query)
-            // queryDiagram.show("Query diagram")
-            // val queryVolume = XADDiagram(xadd, integrator.integrate(queryDiagram.number, HashSet(queryVars))).evaluate(Assignment())
-
-            println(queryVars)
-            val queryVolume = integrator.integrate(queryDiagram, queryVars).evaluate(Assignment())
-
-            // val queryVolume = XADDiagram(xadd, queryDiagram.getIntegratedDiagram()integrator.integrate(queryDiagram.number)).evaluate(Assignment())
-
-            println(queryVolume.toString() + " " + totalVolume.toString())
-            queryProbabilities.add(queryVolume / totalVolume)
-            times.put("Q%d".format(times.size), stopWatch.stop() / 1000.0)
-            println(times["Q%d".format(times.size - 1)])
+        // Only the partial diagram is needed across queries, nodes built for previous queries are removed once the
+        // context holds more than compactThreshold nodes
+        val roots = RootRegistry.of(xadd)
+        val partialRoot = roots.retain(partialDiagram.number)
+        try {
+            for(queryString in queryStrings) {
+                var query = BoolXADD.convert(parser.parseXadd(queryString))
+                query = query.evaluatePartial(evidence[0].booleanVariables, evidence[0].continuousVariables) // TODO hack with evidedence[0
+
+                // val queryDiagram = partialDiagram.times(query)
+                stopWatch.start()
+                // TODO Reduce?
+                val queryDiagram = partialDiagram.times(query)
+                // queryDiagram.show("Query diagram")
+                // val queryVolume = XADDiagram(xadd, integrator.integrate(queryDiagram.number, HashSet(queryVars))).evaluate(Assignment())
+
+                println(queryVars)
+                val queryVolume = integrator.integrate(queryDiagram, queryVars).evaluate(Assignment())
+
+                // val queryVolume = XADDiagram(xadd, queryDiagram.getIntegratedDiagram()integrator.integrate(queryDiagram.number)).evaluate(Assignment())
+
+                println(queryVolume.toString() + " " + totalVolume.toString())
+                queryProbabilities.add(queryVolume / totalVolume)
+                times.put("Q%d".format(times.size), stopWatch.stop() / 1000.0)
+                println(times["Q%d".format(times.size - 1)])
+                roots.compactIfAbove(compactThreshold)
+            }
+        } finally {
+            partialRoot.close()
         }
         return queryProbabilities
     }
@@ -0,0 +1,131 @@
+package diagram;
+
+import xadd.XADD;
+
+import static java.lang.String.format;
+
+/**
+ * Determines when the bound-resolution integrators prune infeasible paths (using LP-based reduction) from their
+ * intermediate results. Reductions are memoized per node (see ApplyCache), as are the diagram sizes used by growth
+ * based policies.
+ *
+ * @author Samuel Kolb
+ */
+public class ReductionPolicy {
+
+	private enum Kind {
+		NEVER, AT_END, LEVELS, GROWTH
+	}
+
+	/** Intermediate and final results are never reduced */
+	public static final ReductionPolicy NEVER = new ReductionPolicy(Kind.NEVER, 0, 0);
+
+	/** Only the final result is reduced */
+	public static final ReductionPolicy AT_END = new ReductionPolicy(Kind.AT_END, 0, 0);
+
+	/** Every intermediate result is reduced */
+	public static final ReductionPolicy ALWAYS = everyLevels(1);
+
+	private final Kind kind;
+	private final int levels;
+	private final double growth;
+
+	private ReductionPolicy(Kind kind, int levels, double growth) {
+		this.kind = kind;
+		this.levels = levels;
+		this.growth = growth;
+	}
+
+	/**
+	 * Creates a policy that reduces the intermediate results at every k-th level of the recursion (starting at the top)
+	 * @param levels	The number of levels k
+	 * @return	The reduction policy
+	 */
+	public static ReductionPolicy everyLevels(int levels) {
+		if(levels < 1) {
+			throw new IllegalArgumentException(format("Number of levels must be positive, was %d", levels));
+		}
+		return new ReductionPolicy(Kind.LEVELS, levels, 0);
+	}
+
+	/**
+	 * Creates a policy that reduces an intermediate result if its size exceeds the size of the diagram it was computed
+	 * from by the given fraction, the final result is always reduced
+	 * @param growth	The fraction of growth (e.g. 0.5 for 50%)
+	 * @return	The reduction policy
+	 */
+	public static ReductionPolicy onGrowth(double growth) {
+		if(growth < 0) {
+			throw new IllegalArgumentException(format("Growth must be non-negative, was %f", growth));
+		}
+		return new ReductionPolicy(Kind.GROWTH, 0, growth);
+	}
+
+	//region Public methods
+
+	/**
+	 * Reduces the given intermediate result if required by this policy
+	 * @param context	The XADD pool / context
+	 * @param level		The level of the recursion (0 at the top)
+	 * @param inputId	The id of the diagram the result was computed from
+	 * @param resultId	The id of the intermediate result
+	 * @return	The id of the (possibly) reduced result
+	 */
+	public int reduce(XADD context, int level, int inputId, int resultId) {
+		boolean reduce;
+		switch(kind) {
+			case LEVELS:
+				reduce = level % levels == 0;
+				break;
+			case GROWTH:
+				int limit = (int) Math.min(Integer.MAX_VALUE - 1, getSize(context, inputId) * (1 + growth));
+				reduce = getSize(context, resultId, limit) > limit;
+				break;
+			default:
+				reduce = false;
+		}
+		return reduce ? ApplyCache.of(context).reduceLP(resultId) : resultId;
+	}
+
+	/**
+	 * Reduces the given final result if required by this policy
+	 * @param context	The XADD pool / context
+	 * @param resultId	The id of the final result
+	 * @return	The id of the (possibly) reduced result
+	 */
+	public int finish(XADD context, int resultId) {
+		boolean reduce = kind == Kind.AT_END || kind == Kind.GROWTH;
+		return reduce ? ApplyCache.of(context).reduceLP(resultId) : resultId;
+	}
+
+	@Override
+	public String toString() {
+		switch(kind) {
+			case LEVELS: return format("ReductionPolicy[every %d levels]", levels);
+			case GROWTH: return format("ReductionPolicy[on %.0f%% growth]", growth * 100);
+			default: return format("ReductionPolicy[%s]", kind);
+		}
+	}
+
+	//endregion
+
+	private static int getSize(XADD context, int nodeId) {
+		return getSize(context, nodeId, Integer.MAX_VALUE - 1);
+	}
+
+	/**
+	 * Returns the (cached) number of nodes of the given diagram, diagrams of over limit nodes are only counted up to
+	 * limit + 1 (and are not cached)
+	 */
+	private static int getSize(XADD context, int nodeId, int limit) {
+		LongIntTable sizes = ContextData.of(context).sizes;
+		int size = sizes.get(nodeId);
+		if(size == LongIntTable.MISSING) {
+			size = DiagramWalker.countNodes(context, nodeId, limit);
+			if(size <= limit) {
+				sizes.put(nodeId, size);
+			}
+		}
+		return size;
+	}
+}
@@ -0,0 +1,69 @@
+package diagram;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.lang.String.format;
+
+/**
+ * The result of rebuilding diagrams of an ordered context under a new variable order
+ *
+ * @author Samuel Kolb
+ */
+public class Reordering {
+
+	private final OrderedXADD context;
+	private final Map<Integer, Integer> roots;
+	private final int size;
+
+	Reordering(OrderedXADD context, Map<Integer, Integer> roots, int size) {
+		this.context = context;
+		this.roots = Collections.unmodifiableMap(new HashMap<>(roots));
+		this.size = size;
+	}
+
+	/**
+	 * @return	The new context (using the new variable order)
+	 */
+	public OrderedXADD getContext() {
+		return context;
+	}
+
+	/**
+	 * @return	The new variable order
+	 */
+	public List<String> getVariableOrder() {
+		return context.getVariableOrder();
+	}
+
+	/**
+	 * @return	The number of distinct nodes of the rebuilt diagrams
+	 */
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * Returns the id of the rebuilt root in the new context
+	 * @param rootId	The id of the root in the original context
+	 * @return	The id of the corresponding root in the new context
+	 */
+	public int getRoot(int rootId) {
+		Integer newRoot = roots.get(rootId);
+		if(newRoot == null) {
+			throw new IllegalArgumentException(format("Root %d was not rebuilt", rootId));
+		}
+		return newRoot;
+	}
+
+	/**
+	 * Returns the rebuilt diagram in the new context
+	 * @param diagram	The diagram in the original context
+	 * @return	The corresponding diagram in the new context
+	 */
+	public XADDiagram getDiagram(XADDiagram diagram) {
+		return new XADDiagram(context, getRoot(diagram.number));
+	}
+}
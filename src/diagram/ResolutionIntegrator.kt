@@ -11,43 +11,25 @@ import xadd.XADD
  */
 class ResolutionIntegrator(val context: XADD, val verbose: Boolean=false) : SingleVariableIntegrator {
 
-    private inner class ResolveKey constructor(val rootId: Int, val variable: String, val ub: Expression,
-                                               val lb: Expression) {
-        override fun equals(other: Any?): Boolean {
-            if (this === other) return true
-            if (javaClass != other?.javaClass) return false
+    private val supports = SupportIndex.of(context)
+    private val resolveCache = ResolveCache.of(context)
+    private val bounds = BoundIndex.of(context)
+    private var memo = resolveCache.newMemo()
 
-            other as ResolveKey
-
-            if (rootId != other.rootId) return false
-            if (variable != other.variable) return false
-            if (ub != other.ub) return false
-            if (lb != other.lb) return false
-
-            return true
-        }
-
-        override fun hashCode(): Int {
-            var result = rootId
-            result = 31 * result + variable.hashCode()
-            result = 31 * result + ub.hashCode()
-            result = 31 * result + lb.hashCode()
-            return result
-        }
+    override fun integrate(diagram: XADDiagram, variable: Variable): XADDiagram {
+        memo = resolveCache.newMemo()
+        val scope = getScope(variable, ExprLib.POS_INF, ExprLib.NEG_INF)
+        return diagram.xadd(integrate(diagram.number, variable, scope, ExprLib.POS_INF, ExprLib.NEG_INF, 1))
     }
 
-    override fun integrate(diagram: XADDiagram, variable: Variable): XADDiagram {
-        return diagram.xadd(integrate(diagram.number, variable, HashMap(), ExprLib.POS_INF, ExprLib.NEG_INF, 1))
+    private fun getScope(variable: Variable, ub: Expression, lb: Expression): Int {
+        val type = if(variable.isBool) 1 else 2
+        val variableId = supports.getId(variable.name)
+        return resolveCache.getScope(ResolveCache.RESOLUTION, variableId, type, bounds.getId(ub), bounds.getId(lb))
     }
 
-    private fun integrate(rootId: Int, variable: Variable, cache: MutableMap<ResolveKey, Int>,
-                          ub: Expression, lb: Expression, prefix: Int): Int {
-
-        fun XADD.Decision.variables(): HashSet<String> {
-            val variables = HashSet<String>()
-            this.collectVars(variables)
-            return variables
-        }
+    private fun integrate(rootId: Int, variable: Variable, scope: Int, ub: Expression, lb: Expression,
+                          prefix: Int): Int {
 
         fun XADD.Decision.getBound(variable: String): Pair<Double, ExprLib.ArithExpr> {
             this as XADD.ExprDec
@@ -98,14 +80,14 @@ class ResolutionIntegrator(val context: XADD, val verbose: Boolean=false) : Sing
             return rootId
         }
 
-        val key = ResolveKey(rootId, variable.name, ub, lb)
-        if(cache.containsKey(key)) {
+        val cached = memo.get(scope, rootId)
+        if(cached >= 0) {
             log(prefix, "integrate($rootId, $variable) -> cached")
-            return cache[key]!!
+            return cached
         }
 
-        fun cache(key: ResolveKey, id: Int): Int {
-            cache[key] = id
+        fun cache(id: Int): Int {
+            memo.put(scope, rootId, id)
             log(prefix, "cache integrate($rootId, $variable) -> $id")
             return id
         }
@@ -117,8 +99,7 @@ class ResolutionIntegrator(val context: XADD, val verbose: Boolean=false) : Sing
         when (node) {
             is XADD.XADDINode -> {
                 if(variable.isReal) {
-                    val variables = node.decision.variables()
-                    if (variable.name in variables) {
+                    if (supports.decisionMentions(node._var, variable.name)) {
                         val bound = node.decision.getBound(variable.name)
 
                         val ubId: Int
@@ -142,34 +123,37 @@ class ResolutionIntegrator(val context: XADD, val verbose: Boolean=false) : Sing
                             }
                         }
 
+                        val ubScope = getScope(variable, newBound, lb)
+                        val lbScope = getScope(variable, ub, newBound)
+
                         log(prefix, "calculate ub-branch ($ubId)")
-                        val ubOldBranchF = { integrate(ubId, variable, cache, ub, lb, prefix + 1) }
+                        val ubOldBranchF = { integrate(ubId, variable, scope, ub, lb, prefix + 1) }
                         val ubNewBranchF = {
-                            val ubRec = { integrate(ubId, variable, cache, newBound, lb, prefix + 1) }
+                            val ubRec = { integrate(ubId, variable, ubScope, newBound, lb, prefix + 1) }
                             getDecision(newBound, ">=", lb).ifThen(ubRec)
                         }
                         log(prefix, "merge ub-branch")
                         val ubBranch = getDecision(newBound, ">=", ub).ite(ubOldBranchF, ubNewBranchF)
 
                         log(prefix, "calculate lb-branch ($lbId)")
-                        val lbOldBranchF = { integrate(lbId, variable, cache, ub, lb, prefix + 1) }
+                        val lbOldBranchF = { integrate(lbId, variable, scope, ub, lb, prefix + 1) }
                         val lbNewBranchF = {
-                            val lbRec = { integrate(lbId, variable, cache, ub, newBound, prefix + 1) }
+                            val lbRec = { integrate(lbId, variable, lbScope, ub, newBound, prefix + 1) }
                             getDecision(ub, ">=", newBound).ifThen(lbRec)
                         }
                         log(prefix, "merge lb-branch")
                         val lbBranch = getDecision(newBound, "<=", lb).ite(lbOldBranchF, lbNewBranchF)
 
-                        return cache(key, context.apply(ubBranch, lbBranch, XADD.SUM))
+                        return cache(context.apply(ubBranch, lbBranch, XADD.SUM))
                     } else {
                         log(prefix, "recur on both sides")
-                        val idTrue = integrate(node._high, variable, cache, ub, lb, prefix + 1)
-                        val idFalse = integrate(node._low, variable, cache, ub, lb, prefix + 1)
-                        return cache(key, node.decision.ite(idTrue, idFalse))
+                        val idTrue = integrate(node._high, variable, scope, ub, lb, prefix + 1)
+                        val idFalse = integrate(node._low, variable, scope, ub, lb, prefix + 1)
+                        return cache(node.decision.ite(idTrue, idFalse))
                     }
                 } else if(variable.isBool) {
                     log(prefix, "sum out boolean")
-                    return cache(key, context.apply(node._high, node._low, XADD.SUM))
+                    return cache(context.apply(node._high, node._low, XADD.SUM))
                 } else {
                     throw IllegalArgumentException("Variable $variable of unknown type")
                 }
@@ -180,7 +164,7 @@ class ResolutionIntegrator(val context: XADD, val verbose: Boolean=false) : Sing
                     context.ZERO -> context.ZERO
                     else -> computeIntegral(node._expr, variable, ub, lb)
                 }
-                return cache(key, result)
+                return cache(result)
             }
             else -> throw IllegalStateException("Unexpected node $node")
         }
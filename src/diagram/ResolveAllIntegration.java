@@ -4,13 +4,15 @@ import xadd.ExprLib;
 import xadd.ExprLib.ArithExpr;
 import xadd.XADD;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
-import java.util.function.Supplier;
 
 import static java.lang.String.format;
 
@@ -21,51 +23,34 @@ import static java.lang.String.format;
  */
 public class ResolveAllIntegration {
 
-	private class ResolveKey {
-		final int rootId;
-		final String variable;
-		final Optional<ArithExpr> optUb;
-		final Optional<ArithExpr> optLb;
-
-		ResolveKey(int rootId, String variable, Optional<ArithExpr> optUb, Optional<ArithExpr> optLb) {
-			this.rootId = rootId;
-			this.variable = variable;
-			this.optUb = optUb;
-			this.optLb = optLb;
-		}
-
-		@Override
-		public boolean equals(Object o) {
-			if(this == o) return true;
-			if(o == null || getClass() != o.getClass()) return false;
-
-			ResolveKey that = (ResolveKey) o;
-
-			if(rootId != that.rootId) return false;
-			if(variable != null ? !variable.equals(that.variable) : that.variable != null) return false;
-			if(optUb != null ? !optUb.equals(that.optUb) : that.optUb != null) return false;
-			return optLb != null ? optLb.equals(that.optLb) : that.optLb == null;
-		}
-
-		@Override
-		public int hashCode() {
-			int result = rootId;
-			result = 31 * result + (variable != null ? variable.hashCode() : 0);
-			result = 31 * result + (optUb != null ? optUb.hashCode() : 0);
-			result = 31 * result + (optLb != null ? optLb.hashCode() : 0);
-			return result;
-		}
-	}
-
 	//region Variables
 	private final static int BOOL = 1;
 	private final static int REAL = 2;
+	// Stages of a frame, the stages of a single branch are followed by the stages of the false and true branch
+	private final static int START = 0;
+	private final static int NEXT = 1;
+	private final static int ELIMINATED = 2;
+	private final static int LOW = 3;
+	private final static int HIGH = 4;
+	private final static int SUM_LOW = 5;
+	private final static int SUM_HIGH = 6;
+	private final static int LB = 7;
+	private final static int LB_FALSE = 8;
+	private final static int LB_TRUE = 9;
+	private final static int UB = 10;
+	private final static int UB_FALSE = 11;
+	private final static int UB_TRUE = 12;
 	private HashMap<Integer, Integer> integratedLeafNodes;
-	private HashMap<ResolveKey, Integer> resolveCache;
+	private final ResolveCache resolveCache;
+	private ResolveCache.Memo memo;
+	private final BoundIndex bounds;
 	private boolean verbose;
+	private ReductionPolicy reductionPolicy = ReductionPolicy.ALWAYS;
 	private OrderedXADD context;
+	private final SupportIndex supports;
 	private final int[] types;
 	private Set<String> variables;
+	private int namespace;
 
 	public boolean isVerbose() {
 		return verbose;
@@ -75,8 +60,48 @@ public class ResolveAllIntegration {
 		this.verbose = verbose;
 	}
 
+	public ReductionPolicy getReductionPolicy() {
+		return reductionPolicy;
+	}
+
+	public void setReductionPolicy(ReductionPolicy reductionPolicy) {
+		this.reductionPolicy = reductionPolicy;
+	}
+
 	//endregion
 
+	/**
+	 * A resolve call on the explicit stack of resolve, its stage records which sub-call result it is waiting for
+	 */
+	private static class Frame {
+		final int rootId;
+		final int vIndex;
+		final Optional<ArithExpr> optUb;
+		final Optional<ArithExpr> optLb;
+		final int scope;
+		final String prefix;
+		final int depth;
+		int stage = START;
+		XADD.XADDINode node;
+		Optional<ArithExpr> newBound;
+		int ubId, lbId, ubScope, lbScope;
+		int ubConsistencyId, lbConsistencyId, lbIte;
+		int varId, falseId;
+		Frame ifTrue;
+		int result;
+
+		Frame(int rootId, int vIndex, Optional<ArithExpr> optUb, Optional<ArithExpr> optLb, int scope, String prefix,
+			  int depth) {
+			this.rootId = rootId;
+			this.vIndex = vIndex;
+			this.optUb = optUb;
+			this.optLb = optLb;
+			this.scope = scope;
+			this.prefix = prefix;
+			this.depth = depth;
+		}
+	}
+
 	//region Construction
 
 	/**
@@ -93,6 +118,9 @@ public class ResolveAllIntegration {
 	public ResolveAllIntegration(OrderedXADD context, List<String> variableTypes, boolean verbose) {
 		this.context = context;
 		this.verbose = verbose;
+		this.supports = SupportIndex.of(context);
+		this.resolveCache = ResolveCache.of(context);
+		this.bounds = BoundIndex.of(context);
 		this.types = new int[variableTypes.size()];
 		for(int i = 0; i < variableTypes.size(); i++) {
 			this.types[i] = getType(variableTypes.get(i));
@@ -111,8 +139,10 @@ public class ResolveAllIntegration {
 	 */
 	public int integrate(int rootId) {
 		integratedLeafNodes = new HashMap<>();
-		resolveCache = new HashMap<>();
-		return resetReturn(resolve(rootId, 0, Optional.empty(), Optional.empty(), ""));
+		memo = resolveCache.newMemo();
+		updateScope();
+		return resetReturn(resolve(new Frame(rootId, 0, Optional.empty(), Optional.empty(),
+				getScope(0, Optional.empty(), Optional.empty()), "", 0)));
 	}
 
 	/**
@@ -123,8 +153,9 @@ public class ResolveAllIntegration {
 	 */
 	public int integrate(int rootId, Set<String> variables) {
 		integratedLeafNodes = new HashMap<>();
-		resolveCache = new HashMap<>();
+		memo = resolveCache.newMemo();
 		this.variables = variables;
+		updateScope();
 		int first = -1;
 		for(int i = 0; i < context.getVariableOrder().size(); i++) {
 			if(variables.contains(context.getVariableOrder().get(i))) {
@@ -133,7 +164,30 @@ public class ResolveAllIntegration {
 			}
 		}
 		// System.out.println(first);
-		return resetReturn(resolve(rootId, first, Optional.empty(), Optional.empty(), ""));
+		return resetReturn(resolve(new Frame(rootId, first, Optional.empty(), Optional.empty(),
+				getScope(first, Optional.empty(), Optional.empty()), "", 0)));
+	}
+
+	/**
+	 * Results are only shared between calls that eliminate the same variables in the same order with the same types,
+	 * hence cache keys are scoped to a namespace per variable order, types and set of variables (shared by integrators)
+	 */
+	private void updateScope() {
+		List<Integer> typeIds = new ArrayList<>(types.length);
+		for(int type : types) {
+			typeIds.add(type);
+		}
+		Set<String> eliminated = variables == null ? null : new HashSet<>(variables);
+		namespace = resolveCache.getNamespace(Arrays.asList(context.getVariableOrder(), typeIds, eliminated));
+	}
+
+	private int getScope(int vIndex, Optional<ArithExpr> optUb, Optional<ArithExpr> optLb) {
+		if(vIndex < 0 || vIndex >= context.getVariableOrder().size()) {
+			// Resolve will reject the index before using the scope
+			return -1;
+		}
+		int variableId = supports.getId(context.getVariableOrder().get(vIndex));
+		return resolveCache.getScope(namespace, variableId, types[vIndex], bounds.getId(optUb), bounds.getId(optLb));
 	}
 
 	private int getType(String type) {
@@ -153,7 +207,90 @@ public class ResolveAllIntegration {
 		}
 	}
 
-	private int resolve(int rootId, int vIndex, Optional<ArithExpr> optUb, Optional<ArithExpr> optLb, String prefix) {
+	private int reduce(int rootId, int resultId, int depth) {
+		return reductionPolicy.reduce(context, depth, rootId, resultId);
+	}
+
+	/**
+	 * Resolves the diagram of the given frame, sub-diagrams are resolved through an explicit stack of frames rather
+	 * than the Java call stack, such that the depth of a diagram is not limited by the thread stack size
+	 * @param root	The frame of the root call
+	 * @return	The id of the resolved diagram
+	 */
+	private int resolve(Frame root) {
+		ArrayDeque<Frame> stack = new ArrayDeque<>();
+		Frame frame = root;
+		int returned = -1;
+		while(true) {
+			Frame call = step(frame, returned);
+			if(call != null) {
+				stack.push(frame);
+				frame = call;
+			} else if(stack.isEmpty()) {
+				return frame.result;
+			} else {
+				returned = frame.result;
+				frame = stack.pop();
+			}
+		}
+	}
+
+	/**
+	 * Advances the given frame using the result of its last sub-call
+	 * @param frame		The frame
+	 * @param returned	The result of the last sub-call of the frame (if any)
+	 * @return	The next sub-call of the frame or null if the frame is done (see Frame.result)
+	 */
+	private Frame step(Frame frame, int returned) {
+		switch(frame.stage) {
+			case START:
+				return start(frame);
+			case NEXT:
+				// Result-ID is a diagram containing nothing
+				frame.stage = ELIMINATED;
+				return new Frame(returned, frame.vIndex, frame.optUb, frame.optLb, frame.scope, frame.prefix,
+						frame.depth);
+			case ELIMINATED:
+				return done(frame, reduce(frame.rootId, returned, frame.depth));
+			case LOW:
+				frame.falseId = returned;
+				frame.stage = HIGH;
+				return call(frame, frame.node._high, frame.vIndex, frame.optUb, frame.optLb, frame.scope);
+			case HIGH:
+				int resolved = context.getINodeCanon(frame.node._var, frame.falseId, returned);
+				log("Resolved did not contain: %s", frame.prefix, context.getNode(resolved));
+				return done(frame, resolved);
+			case SUM_LOW:
+				frame.falseId = returned;
+				frame.stage = SUM_HIGH;
+				return call(frame, frame.node._high, frame.vIndex + 1, Optional.empty(), Optional.empty(),
+						frame.ubScope);
+			case SUM_HIGH:
+				return done(frame, context.apply(frame.falseId, returned, XADD.SUM));
+			case LB_FALSE:
+			case UB_FALSE:
+				frame.falseId = returned;
+				frame.stage++;
+				return frame.ifTrue;
+			case LB_TRUE:
+				frame.lbIte = ite(frame, returned);
+				return upperBound(frame);
+			case LB:
+				frame.lbIte = returned;
+				return upperBound(frame);
+			case UB_TRUE:
+				return combine(frame, ite(frame, returned));
+			case UB:
+				return combine(frame, returned);
+			default:
+				throw new IllegalStateException(format("Unexpected stage %d", frame.stage));
+		}
+	}
+
+	private Frame start(Frame frame) {
+		int rootId = frame.rootId;
+		int vIndex = frame.vIndex;
+		String prefix = frame.prefix;
 		XADD.XADDNode node = context.getNode(rootId);
 		if(vIndex >= context.getVariableOrder().size()) {
 			System.err.println(context.getNode(rootId));
@@ -162,134 +299,70 @@ public class ResolveAllIntegration {
 		}
 		String variable = context.getVariableOrder().get(vIndex);
 		int type = types[vIndex];
-		log("Resolve %s for var %s with ub %s and lb %s", prefix, node, variable, optUb, optLb);
+		log("Resolve %s for var %s with ub %s and lb %s", prefix, node, variable, frame.optUb, frame.optLb);
 
-		ResolveKey key = new ResolveKey(rootId, variable, optUb, optLb);
-		if(resolveCache.containsKey(key)) {
+		int cached = memo.get(frame.scope, rootId);
+		if(cached >= 0) {
 			log("Cache hit", prefix);
-			return resolveCache.get(key);
+			frame.result = cached;
+			return null;
 		}
 
 		if(node instanceof XADD.XADDINode) {
 			XADD.XADDINode internalNode = (XADD.XADDINode) node;
-			HashSet<String> nodeVariables = new HashSet<>();
-			internalNode.getDecision().collectVars(nodeVariables);
+			frame.node = internalNode;
+			BitSet nodeVariables = supports.getDecisionVariables(internalNode._var);
 
 			if(getLast(nodeVariables) > vIndex) {
 				log("Treating %s (%d), last was %s", prefix, variable, vIndex, getLast(nodeVariables));
-				int resultId = resolve(rootId, vIndex + 1, Optional.empty(), Optional.empty(), prefix + "\t");
+				int nextScope = getScope(vIndex + 1, Optional.empty(), Optional.empty());
 				// resultId = context.reduceLP(resultId);
-				// Result-ID is a diagram containing nothing
-				int eliminated = context.reduceLP(resolve(resultId, vIndex, optUb, optLb, prefix));
-				resolveCache.put(key, eliminated);
-				return eliminated;
+				frame.stage = NEXT;
+				return call(frame, rootId, vIndex + 1, Optional.empty(), Optional.empty(), nextScope);
 			}
 
-			if(!nodeVariables.contains(variable)) {
+			if(!nodeVariables.get(supports.getId(variable))) {
 				// Variable not in node, should not occur because all variables are being eliminated
-				int resolveLow = resolve(internalNode._low, vIndex, optUb, optLb, prefix + "\t");
-				int resolveHigh = resolve(internalNode._high, vIndex, optUb, optLb, prefix + "\t");
-				int resolved = context.getINodeCanon(internalNode._var, resolveLow, resolveHigh);
-				log("Resolved did not contain: %s", prefix, context.getNode(resolved));
-				resolveCache.put(key, resolved);
-				return resolved;
-				// throw new IllegalStateException("");
-			} else {
-				if(internalNode.getDecision() instanceof XADD.ExprDec) {
-					ExprLib.CompExpr comparison = ((XADD.ExprDec) internalNode.getDecision())._expr;
-					ExprLib.CoefExprPair pair = comparison._lhs.removeVarFromExpr(variable);
-					double coefficient = pair._coef;
-					ArithExpr normalized = (ArithExpr) new ExprLib.OperExpr(ExprLib.ArithOperation.PROD,
-							pair._expr, new ExprLib.DoubleExpr(1 / Math.abs(coefficient))).makeCanonical();
-					final Optional<ArithExpr> newBound;
-
-					int ubId, lbId;
-
-					if(coefficient < 0) {
-						log("UB branch is true", prefix);
-						ubId = internalNode._high;
-						lbId = internalNode._low;
-						newBound = Optional.of(normalized);
-					} else if(coefficient > 0) {
-						log("UB branch is false", prefix);
-						ubId = internalNode._low;
-						lbId = internalNode._high;
-						ExprLib.OperExpr negated = new ExprLib.OperExpr(ExprLib.ArithOperation.MINUS, ExprLib.ZERO, normalized);
-						newBound = Optional.of((ArithExpr) negated.makeCanonical());
-					} else {
-						throw new IllegalStateException(format("Coefficient %s from expression %s should be non-zero",
-								coefficient, comparison));
-					}
-
-					log(" Node %s, coefficient %.2f, bound: %s", prefix, comparison, coefficient, newBound.get());
-
-					// f_u = (u_{new} \geq l) * \ite(u > u_{new}, br(x, h(f), u_{new}, l), br(x, h(f), u, l))$
-					// f_l = (l_{new} \leq u) * \ite(l < l_{new}, br(x, l(f), u, l_{new}), br(x, l(f), u, l))$
-
-					int ubConsistencyId, ubIte, lbConsistencyId, lbIte;
-
-					// TODO pass_ub / pass/lb
-
-					if(optLb.isPresent()) {
-						ArithExpr lb = optLb.get();
-						ubConsistencyId = comparisonToNodeId(ExprLib.CompOperation.GT_EQ, newBound.get(), optLb.get());
-
-						Supplier<Integer> resolveFalseSupplier =
-								() -> resolve(lbId, vIndex, optUb, optLb, prefix + "\t");
-						Supplier<Integer> resolveTrueSupplier =
-								() -> resolve(lbId, vIndex, optUb, newBound, prefix + "\t");
-
-						XADD.Decision decision = getDecision(ExprLib.CompOperation.LT_EQ, lb, newBound.get());
-						lbIte = simplifyIte(decision, resolveTrueSupplier, resolveFalseSupplier, prefix);
-					} else {
-						ubConsistencyId = context.getTermNode(ExprLib.ONE);
-						lbIte = resolve(lbId, vIndex, optUb, newBound, prefix + "\t");
-					}
-
-					if(optUb.isPresent()) {
-						ArithExpr ub = optUb.get();
-						lbConsistencyId = comparisonToNodeId(ExprLib.CompOperation.LT_EQ, newBound.get(), optUb.get());
-
-						Supplier<Integer> resolveFalseSupplier =
-								() -> resolve(ubId, vIndex, optUb, optLb, prefix + "\t");
-						Supplier<Integer> resolveTrueSupplier =
-								() -> resolve(ubId, vIndex, newBound, optLb, prefix + "\t");
-
-						XADD.Decision decision = getDecision(ExprLib.CompOperation.GT_EQ, ub, newBound.get());
-						ubIte = simplifyIte(decision, resolveTrueSupplier, resolveFalseSupplier, prefix);
-					} else {
-						lbConsistencyId = context.getTermNode(ExprLib.ONE);
-						ubIte = resolve(ubId, vIndex, newBound, optLb, prefix + "\t");
-					}
-
-					// Branches
-					int ubBranch = context.apply(ubConsistencyId, ubIte, XADD.PROD);
-					int lbBranch = context.apply(lbConsistencyId, lbIte, XADD.PROD);
-
-					if(ubBranch == 1 && lbBranch == 1) {
-						if(optLb.isPresent()) {
-							log("Ub consistency: %s >= %s", prefix, newBound.get(), optLb.get());
-							log("%d", "", comparisonToNodeId(ExprLib.CompOperation.GT_EQ,
-									newBound.get(), optLb.get()));
-							log("%d", "", comparisonToVarId(ExprLib.CompOperation.GT_EQ,
-									newBound.get(), optLb.get()));
-						}
-						log("Product ub: %d and %d, lb: %d and %d", prefix, ubConsistencyId, ubIte, lbConsistencyId, lbIte);
-						log("Consistency node %s", prefix, context.getNode(ubConsistencyId));
-					}
-
-					int resolved = context.apply(ubBranch, lbBranch, XADD.SUM);
-					log("Resolved summed: %s + %s = %s", prefix, context.getNode(ubBranch),
-							context.getNode(lbBranch), context.getNode(resolved));
-					resolveCache.put(key, resolved);
-					return resolved;
+				frame.stage = LOW;
+				return call(frame, internalNode._low, vIndex, frame.optUb, frame.optLb, frame.scope);
+			} else if(internalNode.getDecision() instanceof XADD.ExprDec) {
+				ExprLib.CompExpr comparison = ((XADD.ExprDec) internalNode.getDecision())._expr;
+				ExprLib.CoefExprPair pair = comparison._lhs.removeVarFromExpr(variable);
+				double coefficient = pair._coef;
+				ArithExpr normalized = (ArithExpr) new ExprLib.OperExpr(ExprLib.ArithOperation.PROD,
+						pair._expr, new ExprLib.DoubleExpr(1 / Math.abs(coefficient))).makeCanonical();
+
+				if(coefficient < 0) {
+					log("UB branch is true", prefix);
+					frame.ubId = internalNode._high;
+					frame.lbId = internalNode._low;
+					frame.newBound = Optional.of(normalized);
+				} else if(coefficient > 0) {
+					log("UB branch is false", prefix);
+					frame.ubId = internalNode._low;
+					frame.lbId = internalNode._high;
+					ExprLib.OperExpr negated = new ExprLib.OperExpr(ExprLib.ArithOperation.MINUS, ExprLib.ZERO, normalized);
+					frame.newBound = Optional.of((ArithExpr) negated.makeCanonical());
 				} else {
-					int low = resolve(internalNode._low, vIndex + 1, Optional.empty(), Optional.empty(), prefix + "\t");
-					int high = resolve(internalNode._high, vIndex + 1, Optional.empty(), Optional.empty(), prefix + "\t");
-					int summed = context.apply(low, high, XADD.SUM);
-					resolveCache.put(key, summed);
-					return summed;
+					throw new IllegalStateException(format("Coefficient %s from expression %s should be non-zero",
+							coefficient, comparison));
 				}
+
+				log(" Node %s, coefficient %.2f, bound: %s", prefix, comparison, coefficient, frame.newBound.get());
+				frame.ubScope = getScope(vIndex, frame.newBound, frame.optLb);
+				frame.lbScope = getScope(vIndex, frame.optUb, frame.newBound);
+
+				// f_u = (u_{new} \geq l) * \ite(u > u_{new}, br(x, h(f), u_{new}, l), br(x, h(f), u, l))$
+				// f_l = (l_{new} \leq u) * \ite(l < l_{new}, br(x, l(f), u, l_{new}), br(x, l(f), u, l))$
+
+				// TODO pass_ub / pass/lb
+
+				return lowerBound(frame);
+			} else {
+				// Both branches are resolved for the next variable (ubScope holds the scope of the next variable)
+				frame.ubScope = getScope(vIndex + 1, Optional.empty(), Optional.empty());
+				frame.stage = SUM_LOW;
+				return call(frame, internalNode._low, vIndex + 1, Optional.empty(), Optional.empty(), frame.ubScope);
 			}
 		} else if(node instanceof XADD.XADDTNode) {
 			XADD.XADDTNode terminalNode = (XADD.XADDTNode) node;
@@ -299,32 +372,111 @@ public class ResolveAllIntegration {
 				integratedLeafNodes.put(rootId, computeIntegral(terminalNode._expr, variable, optUb, optLb));
 			}
 			return integratedLeafNodes.get(rootId);*/
-			int resolved = computeIntegral(terminalNode._expr, variable, type, optUb, optLb);
+			int resolved = computeIntegral(terminalNode._expr, variable, type, frame.optUb, frame.optLb);
 			log("Terminal node integrated to return %s", prefix, context.getNode(resolved));
-			resolveCache.put(key, resolved);
-			return resolved;
+			return done(frame, resolved);
 		} else {
 			throw new IllegalStateException(format("Unexpected subclass %s of XADDNode %s", node.getClass(), node));
 		}
 	}
 
-	private int simplifyIte(XADD.Decision decision, Supplier<Integer> ifTrue, Supplier<Integer> ifFalse, String prefix) {
+	private Frame lowerBound(Frame frame) {
+		Frame resolveNew = call(frame, frame.lbId, frame.vIndex, frame.optUb, frame.newBound, frame.lbScope);
+		if(frame.optLb.isPresent()) {
+			ArithExpr lb = frame.optLb.get();
+			frame.ubConsistencyId = comparisonToNodeId(ExprLib.CompOperation.GT_EQ, frame.newBound.get(), lb);
+			Frame resolveOld = call(frame, frame.lbId, frame.vIndex, frame.optUb, frame.optLb, frame.scope);
+			XADD.Decision decision = getDecision(ExprLib.CompOperation.LT_EQ, lb, frame.newBound.get());
+			return simplifyIte(frame, decision, resolveNew, resolveOld, LB);
+		}
+		frame.ubConsistencyId = context.getTermNode(ExprLib.ONE);
+		frame.stage = LB;
+		return resolveNew;
+	}
+
+	private Frame upperBound(Frame frame) {
+		Frame resolveNew = call(frame, frame.ubId, frame.vIndex, frame.newBound, frame.optLb, frame.ubScope);
+		if(frame.optUb.isPresent()) {
+			ArithExpr ub = frame.optUb.get();
+			frame.lbConsistencyId = comparisonToNodeId(ExprLib.CompOperation.LT_EQ, frame.newBound.get(), ub);
+			Frame resolveOld = call(frame, frame.ubId, frame.vIndex, frame.optUb, frame.optLb, frame.scope);
+			XADD.Decision decision = getDecision(ExprLib.CompOperation.GT_EQ, ub, frame.newBound.get());
+			return simplifyIte(frame, decision, resolveNew, resolveOld, UB);
+		}
+		frame.lbConsistencyId = context.getTermNode(ExprLib.ONE);
+		frame.stage = UB;
+		return resolveNew;
+	}
+
+	private Frame combine(Frame frame, int ubIte) {
+		String prefix = frame.prefix;
+		// Branches
+		int ubBranch = context.apply(frame.ubConsistencyId, ubIte, XADD.PROD);
+		int lbBranch = context.apply(frame.lbConsistencyId, frame.lbIte, XADD.PROD);
+
+		if(ubBranch == 1 && lbBranch == 1) {
+			if(frame.optLb.isPresent()) {
+				log("Ub consistency: %s >= %s", prefix, frame.newBound.get(), frame.optLb.get());
+				log("%d", "", comparisonToNodeId(ExprLib.CompOperation.GT_EQ,
+						frame.newBound.get(), frame.optLb.get()));
+				log("%d", "", comparisonToVarId(ExprLib.CompOperation.GT_EQ,
+						frame.newBound.get(), frame.optLb.get()));
+			}
+			log("Product ub: %d and %d, lb: %d and %d", prefix, frame.ubConsistencyId, ubIte, frame.lbConsistencyId,
+					frame.lbIte);
+			log("Consistency node %s", prefix, context.getNode(frame.ubConsistencyId));
+		}
+
+		int resolved = context.apply(ubBranch, lbBranch, XADD.SUM);
+		log("Resolved summed: %s + %s = %s", prefix, context.getNode(ubBranch),
+				context.getNode(lbBranch), context.getNode(resolved));
+		return done(frame, resolved);
+	}
+
+	/**
+	 * Resolves the true branch, the false branch or both branches of an ite on the given decision
+	 * @param frame		The frame of the ite
+	 * @param decision	The decision
+	 * @param ifTrue	The sub-call of the true branch
+	 * @param ifFalse	The sub-call of the false branch
+	 * @param stage		The stage receiving the result of a single branch (followed by the stages receiving the false
+	 * 					and true branch of a proper ite)
+	 * @return	The next sub-call of the frame
+	 */
+	private Frame simplifyIte(Frame frame, XADD.Decision decision, Frame ifTrue, Frame ifFalse, int stage) {
 		if(decision instanceof XADD.TautDec) {
 			XADD.TautDec tautology = (XADD.TautDec) decision;
+			frame.stage = stage;
 			if(tautology._bTautology) {
-				log("%s is tautology, resolving only true branch", prefix, tautology);
-				return ifTrue.get();
+				log("%s is tautology, resolving only true branch", frame.prefix, tautology);
+				return ifTrue;
 			} else {
-				log("%s is inconsistency, resolving only false branch", prefix, tautology);
-				return ifFalse.get();
+				log("%s is inconsistency, resolving only false branch", frame.prefix, tautology);
+				return ifFalse;
 			}
-		} else {
-			int varId = context.getVarIndex(decision, true);
-			int resolveFalse = ifFalse.get();
-			int resolveTrue = ifTrue.get();
-			log("if %s then %s else %s", prefix, varId, resolveTrue, resolveFalse);
-			return context.getINodeCanon(varId, resolveFalse, resolveTrue);
 		}
+		frame.varId = context.getVarIndex(decision, true);
+		frame.ifTrue = ifTrue;
+		frame.stage = stage + 1;
+		return ifFalse;
+	}
+
+	private int ite(Frame frame, int resolveTrue) {
+		log("if %s then %s else %s", frame.prefix, frame.varId, resolveTrue, frame.falseId);
+		return context.getINodeCanon(frame.varId, frame.falseId, resolveTrue);
+	}
+
+	private Frame call(Frame frame, int rootId, int vIndex, Optional<ArithExpr> optUb, Optional<ArithExpr> optLb,
+					   int scope) {
+		// Prefixes are only extended when logging, a deep diagram would otherwise allocate quadratic memory
+		String prefix = verbose ? frame.prefix + "\t" : frame.prefix;
+		return new Frame(rootId, vIndex, optUb, optLb, scope, prefix, frame.depth + 1);
+	}
+
+	private Frame done(Frame frame, int resolved) {
+		memo.put(frame.scope, frame.rootId, resolved);
+		frame.result = resolved;
+		return null;
 	}
 
 	private int computeIntegral(ArithExpr expr, String variable, int type, Optional<ArithExpr> optUb, Optional<ArithExpr> optLb) {
@@ -354,9 +506,9 @@ public class ResolveAllIntegration {
 
 	private int resetReturn(int result) {
 		integratedLeafNodes = null;
-		resolveCache = null;
+		memo = null;
 		variables = null;
-		return result;
+		return reductionPolicy.finish(context, result);
 	}
 
 	private XADD.Decision getDecision(ExprLib.CompOperation op, ArithExpr lhs, ArithExpr rhs) {
@@ -384,10 +536,10 @@ public class ResolveAllIntegration {
 		return map;
 	}
 
-	private int getLast(Set<String> variables) {
+	private int getLast(BitSet variables) {
 		for(int i = context.getVariableOrder().size() - 1; i >= 0; i--) {
 			String variable = context.getVariableOrder().get(i);
-			if((this.variables == null || this.variables.contains(variable)) && variables.contains(variable)) {
+			if((this.variables == null || this.variables.contains(variable)) && variables.get(supports.getId(variable))) {
 				return i;
 			}
 		}
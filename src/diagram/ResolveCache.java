@@ -0,0 +1,327 @@
+package diagram;
+
+import xadd.XADD;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static java.lang.String.format;
+
+/**
+ * Memory-bounded cache for the intermediate results of the resolve integrators on an XADD pool / context.
+ * The cache is kept alongside the context, such that results are reused across integrate calls (and integrators).
+ * Within a single integrate call, integrators look up results in an exact memo (see Memo) before consulting this cache.
+ * Results are keyed on a scope id (namespace, variable, type and interned bounds) and the id of the resolved node,
+ * packed into a primitive long, and stored in a set-associative table that evicts using the second-chance (CLOCK)
+ * policy. Scopes are packed into a long as well and interned exactly, they are only dropped (together with their
+ * results) on compaction, such that scope ids are stable while results are cached for them. Scopes whose fields exceed
+ * their packed width are interned as local scopes (negative ids), whose results are only memoized within a call.
+ *
+ * @author Samuel Kolb
+ */
+public class ResolveCache {
+
+	static final int DEFAULT_CAPACITY = 1 << 16;
+
+	static final int RESOLVE = 1;
+	static final int SYMBOLIC_RESOLVE = 2;
+	static final int MAXIMIZATION = 3;
+	static final int RESOLUTION = 4;
+	private static final int FIRST_FREE_NAMESPACE = 16;
+
+	private static final int NAMESPACE_BITS = 12;
+	private static final int VARIABLE_BITS = 12;
+	private static final int TYPE_BITS = 2;
+	private static final int BOUND_BITS = 18;
+	private static final int NAMESPACE_OFFSET = VARIABLE_BITS + TYPE_BITS + 2 * BOUND_BITS;
+
+	static class Table extends LongIntTable {
+		private final LongIntMap scopes = new LongIntMap();
+		private final Map<List<Integer>, Integer> localScopes = new HashMap<>();
+		private final Map<Object, Integer> namespaces = new HashMap<>();
+		private final BitSet namespaceIds = new BitSet();
+		private int nextScope = 0;
+		private int nextLocalScope = -1;
+
+		Table() {
+			super(DEFAULT_CAPACITY);
+		}
+
+		/**
+		 * Drops the results for nodes that no longer exist, the scopes and namespaces that no result refers to anymore
+		 * and the bounds that no scope refers to anymore (local scopes are only used within a call and always dropped)
+		 * @param nodeIds	The ids of the nodes that still exist
+		 * @param bounds	The bound index of the context
+		 */
+		synchronized void retainNodes(Set<Integer> nodeIds, BoundIndex.Table bounds) {
+			BitSet used = new BitSet();
+			retain((key, value) -> {
+				if(!nodeIds.contains((int) key) || !nodeIds.contains(value)) {
+					return false;
+				}
+				used.set((int) (key >>> Integer.SIZE));
+				return true;
+			});
+			BitSet usedNamespaces = new BitSet();
+			BitSet usedBounds = new BitSet();
+			scopes.retain((key, scope) -> {
+				if(!used.get(scope)) {
+					return false;
+				}
+				usedNamespaces.set(getField(key, NAMESPACE_OFFSET, NAMESPACE_BITS));
+				usedBounds.set(getField(key, BOUND_BITS, BOUND_BITS));
+				usedBounds.set(getField(key, 0, BOUND_BITS));
+				return true;
+			});
+			localScopes.clear();
+			namespaces.values().removeIf(namespace -> !usedNamespaces.get(namespace));
+			namespaceIds.and(usedNamespaces);
+			bounds.retainBounds(usedBounds);
+		}
+
+		@Override
+		synchronized void clear() {
+			super.clear();
+			scopes.clear();
+			localScopes.clear();
+			namespaces.clear();
+			namespaceIds.clear();
+		}
+	}
+
+	/**
+	 * Exact memo of a single integrate call, that uses the (bounded) cache of the context as its second level.
+	 * Results computed during the call are never evicted from the memo, hence they are not recomputed within the call.
+	 */
+	class Memo {
+		private final LongIntMap results = new LongIntMap();
+
+		private Memo() {
+		}
+
+		/**
+		 * Returns the result for the given scope and node, computed during this call or cached for the context
+		 * @param scope		The scope id
+		 * @param rootId	The id of the resolved node
+		 * @return	The id of the resulting diagram or a negative number if no result was found
+		 */
+		int get(int scope, int rootId) {
+			long key = getKey(scope, rootId);
+			int result = results.get(key);
+			if(result == LongIntTable.MISSING && scope >= 0) {
+				result = table.get(key);
+				if(result != LongIntTable.MISSING) {
+					results.put(key, result);
+				}
+			}
+			return result;
+		}
+
+		/**
+		 * Stores the result for the given scope and node in this memo and in the cache of the context
+		 * @param scope		The scope id
+		 * @param rootId	The id of the resolved node
+		 * @param resultId	The id of the resulting diagram
+		 */
+		void put(int scope, int rootId, int resultId) {
+			long key = getKey(scope, rootId);
+			results.put(key, resultId);
+			if(scope >= 0) {
+				table.put(key, resultId);
+			}
+		}
+	}
+
+	private final Table table;
+
+	private ResolveCache(Table table) {
+		this.table = table;
+	}
+
+	/**
+	 * Returns the resolve cache of the given context
+	 * @param context	The XADD pool / context
+	 * @return	The resolve cache
+	 */
+	public static ResolveCache of(XADD context) {
+		return new ResolveCache(ContextData.of(context).resolveCache);
+	}
+
+	//region Public methods
+
+	/**
+	 * Returns the namespace for the given key, for integrators whose results depend on more than the variable, type
+	 * and bounds. Namespaces that no cached result refers to are reclaimed on compaction.
+	 * @param key	The key describing what the results depend on (e.g. the eliminated variables)
+	 * @return	The namespace id
+	 */
+	int getNamespace(Object key) {
+		synchronized(table) {
+			Integer namespace = table.namespaces.get(key);
+			if(namespace == null) {
+				namespace = table.namespaceIds.nextClearBit(FIRST_FREE_NAMESPACE);
+				table.namespaceIds.set(namespace);
+				table.namespaces.put(key, namespace);
+			}
+			return namespace;
+		}
+	}
+
+	/**
+	 * Returns the id of the given scope, interning it if necessary (fields that exceed their packed width, e.g. over
+	 * 4096 live namespaces, yield a local scope whose results are only memoized within a call)
+	 * @param namespace		The namespace (e.g. RESOLVE)
+	 * @param variableId	The id of the variable (see SupportIndex)
+	 * @param type			The type of the variable (as used by the integrator)
+	 * @param ubId			The id of the upper bound (see BoundIndex)
+	 * @param lbId			The id of the lower bound (see BoundIndex)
+	 * @return	The scope id (negative for local scopes)
+	 */
+	int getScope(int namespace, int variableId, int type, int ubId, int lbId) {
+		synchronized(table) {
+			if(!fits(namespace, NAMESPACE_BITS) || !fits(variableId, VARIABLE_BITS) || !fits(type, TYPE_BITS)
+					|| !fits(ubId, BOUND_BITS) || !fits(lbId, BOUND_BITS)) {
+				List<Integer> key = Arrays.asList(namespace, variableId, type, ubId, lbId);
+				return table.localScopes.computeIfAbsent(key, k -> table.nextLocalScope--);
+			}
+			long key = namespace;
+			key = (key << VARIABLE_BITS) | variableId;
+			key = (key << TYPE_BITS) | type;
+			key = (key << BOUND_BITS) | ubId;
+			key = (key << BOUND_BITS) | lbId;
+			int scope = table.scopes.get(key);
+			if(scope == LongIntTable.MISSING) {
+				scope = table.nextScope++;
+				table.scopes.put(key, scope);
+			}
+			return scope;
+		}
+	}
+
+	/**
+	 * Returns the cached result for the given scope and node
+	 * @param scope		The scope id
+	 * @param rootId	The id of the resolved node
+	 * @return	The id of the resulting diagram or a negative number if no result was cached
+	 */
+	int get(int scope, int rootId) {
+		if(scope < 0) {
+			return LongIntTable.MISSING;
+		}
+		return table.get(getKey(scope, rootId));
+	}
+
+	/**
+	 * Caches the result for the given scope and node, possibly evicting another result
+	 * @param scope		The scope id
+	 * @param rootId	The id of the resolved node
+	 * @param resultId	The id of the resulting diagram
+	 */
+	void put(int scope, int rootId, int resultId) {
+		if(scope >= 0) {
+			table.put(getKey(scope, rootId), resultId);
+		}
+	}
+
+	/**
+	 * Creates a new memo for a single integrate call
+	 * @return	The (empty) memo
+	 */
+	Memo newMemo() {
+		return new Memo();
+	}
+
+	/**
+	 * @return	The maximal number of cached results
+	 */
+	public int getCapacity() {
+		synchronized(table) {
+			return table.keys.length;
+		}
+	}
+
+	/**
+	 * Sets the maximal number of cached results (rounded up to a power of two), clearing the cache
+	 * @param capacity	The capacity
+	 */
+	public void setCapacity(int capacity) {
+		if(capacity < 1) {
+			throw new IllegalArgumentException(format("Capacity must be positive, was %d", capacity));
+		}
+		table.allocate(capacity);
+	}
+
+	/**
+	 * @return	The number of cached results
+	 */
+	public int getSize() {
+		return table.size();
+	}
+
+	/**
+	 * @return	The number of lookups that found a cached result
+	 */
+	public long getHits() {
+		synchronized(table) {
+			return table.hits;
+		}
+	}
+
+	/**
+	 * @return	The number of lookups that did not find a cached result
+	 */
+	public long getMisses() {
+		synchronized(table) {
+			return table.misses;
+		}
+	}
+
+	/**
+	 * @return	The number of cached results that were evicted to make room for new results
+	 */
+	public long getEvictions() {
+		synchronized(table) {
+			return table.evictions;
+		}
+	}
+
+	/**
+	 * @return	The number of interned scopes
+	 */
+	int getScopeCount() {
+		synchronized(table) {
+			return table.scopes.size() + table.localScopes.size();
+		}
+	}
+
+	/**
+	 * Removes all cached results and scopes (counters are kept)
+	 */
+	public void clear() {
+		table.clear();
+	}
+
+	@Override
+	public String toString() {
+		return format("ResolveCache[capacity=%d, size=%d, hits=%d, misses=%d, evictions=%d]",
+				getCapacity(), getSize(), getHits(), getMisses(), getEvictions());
+	}
+
+	//endregion
+
+	private static boolean fits(int value, int bits) {
+		return value >= 0 && value < (1 << bits);
+	}
+
+	private static int getField(long key, int offset, int bits) {
+		return (int) ((key >>> offset) & ((1L << bits) - 1));
+	}
+
+	private static long getKey(int scope, int rootId) {
+		return ((long) scope << Integer.SIZE) | (rootId & 0xFFFFFFFFL);
+	}
+}
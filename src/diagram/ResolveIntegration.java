@@ -4,10 +4,9 @@ import xadd.ExprLib;
 import xadd.ExprLib.ArithExpr;
 import xadd.XADD;
 
+import java.util.ArrayDeque;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Optional;
-import java.util.function.Supplier;
 
 import static java.lang.String.format;
 
@@ -18,52 +17,70 @@ import static java.lang.String.format;
  */
 public class ResolveIntegration {
 
-	private class ResolveKey {
-		final int rootId;
-		final String variable;
-		final Optional<ArithExpr> optUb;
-		final Optional<ArithExpr> optLb;
-
-		ResolveKey(int rootId, String variable, Optional<ArithExpr> optUb, Optional<ArithExpr> optLb) {
-			this.rootId = rootId;
-			this.variable = variable;
-			this.optUb = optUb;
-			this.optLb = optLb;
-		}
-
-		@Override
-		public boolean equals(Object o) {
-			if(this == o) return true;
-			if(o == null || getClass() != o.getClass()) return false;
-
-			ResolveKey that = (ResolveKey) o;
-
-			if(rootId != that.rootId) return false;
-			if(variable != null ? !variable.equals(that.variable) : that.variable != null) return false;
-			if(optUb != null ? !optUb.equals(that.optUb) : that.optUb != null) return false;
-			return optLb != null ? optLb.equals(that.optLb) : that.optLb == null;
-		}
-
-		@Override
-		public int hashCode() {
-			int result = rootId;
-			result = 31 * result + (variable != null ? variable.hashCode() : 0);
-			result = 31 * result + (optUb != null ? optUb.hashCode() : 0);
-			result = 31 * result + (optLb != null ? optLb.hashCode() : 0);
-			return result;
-		}
-	}
-
 	//region Variables
 	private final static int BOOL = 1;
 	private final static int REAL = 2;
+	// Stages of a frame, the stages of a single branch are followed by the stages of the false and true branch
+	private final static int START = 0;
+	private final static int LOW = 1;
+	private final static int HIGH = 2;
+	private final static int LB = 3;
+	private final static int LB_FALSE = 4;
+	private final static int LB_TRUE = 5;
+	private final static int UB = 6;
+	private final static int UB_FALSE = 7;
+	private final static int UB_TRUE = 8;
 	private HashMap<Integer, Integer> integratedLeafNodes;
-	private HashMap<ResolveKey, Integer> resolveCache;
+	private final ResolveCache resolveCache;
+	private ResolveCache.Memo memo;
+	private final BoundIndex bounds;
 	private final boolean verbose;
+	private ReductionPolicy reductionPolicy = ReductionPolicy.ALWAYS;
 	private final boolean reduce = false;
 	private XADD context;
+	private final SupportIndex supports;
+	private String variable;
+	private int type;
+
+	public ReductionPolicy getReductionPolicy() {
+		return reductionPolicy;
+	}
+
+	public void setReductionPolicy(ReductionPolicy reductionPolicy) {
+		this.reductionPolicy = reductionPolicy;
+	}
+
 	//endregion
 
+	/**
+	 * A resolve call on the explicit stack of resolve, its stage records which sub-call result it is waiting for
+	 */
+	private static class Frame {
+		final int rootId;
+		final Optional<ArithExpr> optUb;
+		final Optional<ArithExpr> optLb;
+		final int scope;
+		final String prefix;
+		final int depth;
+		int stage = START;
+		XADD.XADDINode node;
+		Optional<ArithExpr> newBound;
+		int ubId, lbId, ubScope, lbScope;
+		int ubConsistencyId, lbConsistencyId, lbIte;
+		int varId, falseId;
+		Frame ifTrue;
+		int result;
+
+		Frame(int rootId, Optional<ArithExpr> optUb, Optional<ArithExpr> optLb, int scope, String prefix, int depth) {
+			this.rootId = rootId;
+			this.optUb = optUb;
+			this.optLb = optLb;
+			this.scope = scope;
+			this.prefix = prefix;
+			this.depth = depth;
+		}
+	}
+
 	//region Construction
 
 	/**
@@ -80,6 +97,9 @@ public class ResolveIntegration {
 	public ResolveIntegration(XADD context, boolean verbose) {
 		this.context = context;
 		this.verbose = verbose;
+		this.supports = SupportIndex.of(context);
+		this.resolveCache = ResolveCache.of(context);
+		this.bounds = BoundIndex.of(context);
 	}
 
 	//endregion
@@ -94,8 +114,13 @@ public class ResolveIntegration {
 	 */
 	public int integrate(int rootId, String variable, String type) {
 		integratedLeafNodes = new HashMap<>();
-		resolveCache = new HashMap<>();
-		return resolve(rootId, variable, getType(type), Optional.empty(), Optional.empty(), "");
+		memo = resolveCache.newMemo();
+		this.variable = variable;
+		this.type = getType(type);
+		Optional<ArithExpr> none = Optional.empty();
+		int resolved = resolve(new Frame(rootId, none, none, getScope(variable, this.type, none, none), "", 0));
+		memo = null;
+		return reductionPolicy.finish(context, resolved);
 	}
 
 	private int getType(String type) {
@@ -115,135 +140,149 @@ public class ResolveIntegration {
 		}
 	}
 
-	private int resolve(int rootId, String variable, int type, Optional<ArithExpr> optUb, Optional<ArithExpr> optLb, String prefix) {
+	private int getScope(String variable, int type, Optional<ArithExpr> optUb, Optional<ArithExpr> optLb) {
+		return resolveCache.getScope(ResolveCache.RESOLVE, supports.getId(variable), type, bounds.getId(optUb),
+				bounds.getId(optLb));
+	}
+
+	private int reduce(int rootId, int resultId, int depth) {
+		return reductionPolicy.reduce(context, depth, rootId, resultId);
+	}
+
+	/**
+	 * Resolves the diagram of the given frame, sub-diagrams are resolved through an explicit stack of frames rather
+	 * than the Java call stack, such that the depth of a diagram is not limited by the thread stack size
+	 * @param root	The frame of the root call
+	 * @return	The id of the resolved diagram
+	 */
+	private int resolve(Frame root) {
+		ArrayDeque<Frame> stack = new ArrayDeque<>();
+		Frame frame = root;
+		int returned = -1;
+		while(true) {
+			Frame call = step(frame, returned);
+			if(call != null) {
+				stack.push(frame);
+				frame = call;
+			} else if(stack.isEmpty()) {
+				return frame.result;
+			} else {
+				returned = frame.result;
+				frame = stack.pop();
+			}
+		}
+	}
+
+	/**
+	 * Advances the given frame using the result of its last sub-call
+	 * @param frame		The frame
+	 * @param returned	The result of the last sub-call of the frame (if any)
+	 * @return	The next sub-call of the frame or null if the frame is done (see Frame.result)
+	 */
+	private Frame step(Frame frame, int returned) {
+		switch(frame.stage) {
+			case START:
+				return start(frame);
+			case LOW:
+				frame.falseId = returned;
+				frame.stage = HIGH;
+				return call(frame, frame.node._high, frame.optUb, frame.optLb, frame.scope);
+			case HIGH:
+				int resolved = context.getINodeCanon(frame.node._var, frame.falseId, returned);
+				log("Resolved did not contain: %s", frame.prefix, context.getNode(resolved));
+				return done(frame, resolved);
+			case LB_FALSE:
+			case UB_FALSE:
+				frame.falseId = returned;
+				frame.stage++;
+				return frame.ifTrue;
+			case LB_TRUE:
+				frame.lbIte = ite(frame, returned);
+				return upperBound(frame);
+			case LB:
+				frame.lbIte = returned;
+				return upperBound(frame);
+			case UB_TRUE:
+				return combine(frame, ite(frame, returned));
+			case UB:
+				return combine(frame, returned);
+			default:
+				throw new IllegalStateException(format("Unexpected stage %d", frame.stage));
+		}
+	}
+
+	private Frame start(Frame frame) {
+		int rootId = frame.rootId;
+		String prefix = frame.prefix;
 		if(rootId == context.ZERO) {
-			return context.ZERO;
+			frame.result = context.ZERO;
+			return null;
 		}
 
-		ResolveKey key = new ResolveKey(rootId, variable, optUb, optLb);
-		if(resolveCache.containsKey(key)) {
+		int cached = memo.get(frame.scope, rootId);
+		if(cached >= 0) {
 			log("Cache hit", prefix);
 			// System.out.format("Cache hit %s %s % %s", rootId, variable, optLb, optUb);
 			// System.out.println(rootId + " " + variable + " " + optLb + " " + optUb);
-			return resolveCache.get(key);
+			frame.result = cached;
+			return null;
+		}
+
+		if(!supports.mentions(rootId, variable)) {
+			// The sub-diagram is constant in the variable, its integral is the diagram scaled by the domain size
+			Optional<ArithExpr> size = getDomainSize(type, frame.optUb, frame.optLb);
+			if(size.isPresent()) {
+				int resolved = context.apply(rootId, context.getTermNode(size.get()), XADD.PROD);
+				log("Scaled sub-diagram without %s by %s", prefix, variable, size.get());
+				return done(frame, resolved);
+			}
 		}
 
 		XADD.XADDNode node = context.getNode(rootId);
-		log("Resolve %s for var %s with ub %s and lb %s", prefix, node, variable, optUb, optLb);
+		log("Resolve %s for var %s with ub %s and lb %s", prefix, node, variable, frame.optUb, frame.optLb);
 		if(node instanceof XADD.XADDINode) {
 			XADD.XADDINode internalNode = (XADD.XADDINode) node;
-			HashSet<String> variables = new HashSet<>();
-			internalNode.getDecision().collectVars(variables);
-			if(!variables.contains(variable)) {
-				int resolveLow = resolve(internalNode._low, variable, type, optUb, optLb, prefix + "\t");
-				int resolveHigh = resolve(internalNode._high, variable, type, optUb, optLb, prefix + "\t");
-				int resolved = context.getINodeCanon(internalNode._var, resolveLow, resolveHigh);
-				log("Resolved did not contain: %s", prefix, context.getNode(resolved));
-				resolveCache.put(key, resolved);
-				return resolved;
-			} else {
-				if(internalNode.getDecision() instanceof XADD.ExprDec) {
-					ExprLib.CompExpr comparison = ((XADD.ExprDec) internalNode.getDecision())._expr;
-					ExprLib.CoefExprPair pair = comparison._lhs.removeVarFromExpr(variable);
-					double coefficient = pair._coef;
-					ExprLib.ArithExpr normalized = (ArithExpr) new ExprLib.OperExpr(ExprLib.ArithOperation.PROD,
-							pair._expr, new ExprLib.DoubleExpr(1 / Math.abs(coefficient))).makeCanonical();
-					final Optional<ArithExpr> newBound;
-
-					int ubId, lbId;
-
-					if(coefficient < 0) {
-						log("UB branch is true", prefix);
-						ubId = internalNode._high;
-						lbId = internalNode._low;
-						newBound = Optional.of(normalized);
-					} else if(coefficient > 0) {
-						log("UB branch is false", prefix);
-						ubId = internalNode._low;
-						lbId = internalNode._high;
-						ExprLib.OperExpr negated = new ExprLib.OperExpr(ExprLib.ArithOperation.MINUS, ExprLib.ZERO, normalized);
-						newBound = Optional.of((ArithExpr) negated.makeCanonical());
-					} else {
-						throw new IllegalStateException(format("Coefficient %s from expression %s should be non-zero",
-								coefficient, comparison));
-					}
-
-					log(" Node %s, coefficient %.2f, bound: %s", prefix, comparison, coefficient, newBound.get());
-
-					// f_u = (u_{new} \geq l) * \ite(u > u_{new}, br(x, h(f), u_{new}, l), br(x, h(f), u, l))$
-					// f_l = (l_{new} \leq u) * \ite(l < l_{new}, br(x, l(f), u, l_{new}), br(x, l(f), u, l))$
-
-					int ubConsistencyId, ubIte, lbConsistencyId, lbIte;
-
-					// TODO pass_ub / pass/lb
-
-					if(optLb.isPresent()) {
-						ArithExpr lb = optLb.get();
-						ubConsistencyId = comparisonToNodeId(ExprLib.CompOperation.GT_EQ, newBound.get(), optLb.get());
-
-						Supplier<Integer> resolveFalseSupplier =
-								() -> resolve(lbId, variable, type, optUb, optLb, prefix + "\t");
-						Supplier<Integer> resolveTrueSupplier =
-								() -> resolve(lbId, variable, type, optUb, newBound, prefix + "\t");
-
-						XADD.Decision decision = getDecision(ExprLib.CompOperation.LT_EQ, lb, newBound.get());
-						lbIte = simplifyIte(decision, resolveTrueSupplier, resolveFalseSupplier, prefix);
-					} else {
-						ubConsistencyId = context.getTermNode(ExprLib.ONE);
-						lbIte = resolve(lbId, variable, type, optUb, newBound, prefix + "\t");
-					}
-
-					if(optUb.isPresent()) {
-						ArithExpr ub = optUb.get();
-						lbConsistencyId = comparisonToNodeId(ExprLib.CompOperation.LT_EQ, newBound.get(), optUb.get());
-
-						Supplier<Integer> resolveFalseSupplier =
-								() -> resolve(ubId, variable, type, optUb, optLb, prefix + "\t");
-						Supplier<Integer> resolveTrueSupplier =
-								() -> resolve(ubId, variable, type, newBound, optLb, prefix + "\t");
-
-						XADD.Decision decision = getDecision(ExprLib.CompOperation.GT_EQ, ub, newBound.get());
-						ubIte = simplifyIte(decision, resolveTrueSupplier, resolveFalseSupplier, prefix);
-					} else {
-						lbConsistencyId = context.getTermNode(ExprLib.ONE);
-						ubIte = resolve(ubId, variable, type, newBound, optLb, prefix + "\t");
-					}
-
-					// Branches
-					int ubBranch = context.apply(ubConsistencyId, ubIte, XADD.PROD);
-					if(reduce) {
-						ubBranch = context.reduce(ubBranch);
-					}
-					int lbBranch = context.apply(lbConsistencyId, lbIte, XADD.PROD);
-					if(reduce) {
-						lbBranch = context.reduce(lbBranch);
-					}
-
-					if(ubBranch == 1 && lbBranch == 1) {
-					 	if(optLb.isPresent()) {
-							log("Ub consistency: %s >= %s", prefix, newBound.get(), optLb.get());
-							log("%d", "", comparisonToNodeId(ExprLib.CompOperation.GT_EQ,
-									newBound.get(), optLb.get()));
-							log("%d", "", comparisonToVarId(ExprLib.CompOperation.GT_EQ,
-									newBound.get(), optLb.get()));
-						}
-						log("Product ub: %d and %d, lb: %d and %d", prefix, ubConsistencyId, ubIte, lbConsistencyId, lbIte);
-						log("Consistency node %s", prefix, context.getNode(ubConsistencyId));
-					}
-
-					int resolved = context.apply(ubBranch, lbBranch, XADD.SUM);
-					resolved = context.reduceLP(resolved);
-
-					log("Resolved summed: %s + %s = %s", prefix, context.getNode(ubBranch),
-							context.getNode(lbBranch), context.getNode(resolved));
-					resolveCache.put(key, resolved);
-					return resolved;
+			frame.node = internalNode;
+			if(!supports.decisionMentions(internalNode._var, variable)) {
+				frame.stage = LOW;
+				return call(frame, internalNode._low, frame.optUb, frame.optLb, frame.scope);
+			} else if(internalNode.getDecision() instanceof XADD.ExprDec) {
+				ExprLib.CompExpr comparison = ((XADD.ExprDec) internalNode.getDecision())._expr;
+				ExprLib.CoefExprPair pair = comparison._lhs.removeVarFromExpr(variable);
+				double coefficient = pair._coef;
+				ExprLib.ArithExpr normalized = (ArithExpr) new ExprLib.OperExpr(ExprLib.ArithOperation.PROD,
+						pair._expr, new ExprLib.DoubleExpr(1 / Math.abs(coefficient))).makeCanonical();
+
+				if(coefficient < 0) {
+					log("UB branch is true", prefix);
+					frame.ubId = internalNode._high;
+					frame.lbId = internalNode._low;
+					frame.newBound = Optional.of(normalized);
+				} else if(coefficient > 0) {
+					log("UB branch is false", prefix);
+					frame.ubId = internalNode._low;
+					frame.lbId = internalNode._high;
+					ExprLib.OperExpr negated = new ExprLib.OperExpr(ExprLib.ArithOperation.MINUS, ExprLib.ZERO, normalized);
+					frame.newBound = Optional.of((ArithExpr) negated.makeCanonical());
 				} else {
-					int summed = context.apply(internalNode._low, internalNode._high, XADD.SUM);
-					summed = context.reduceLP(summed);
-					resolveCache.put(key, summed);
-					return summed;
+					throw new IllegalStateException(format("Coefficient %s from expression %s should be non-zero",
+							coefficient, comparison));
 				}
+
+				log(" Node %s, coefficient %.2f, bound: %s", prefix, comparison, coefficient, frame.newBound.get());
+				frame.ubScope = getScope(variable, type, frame.newBound, frame.optLb);
+				frame.lbScope = getScope(variable, type, frame.optUb, frame.newBound);
+
+				// f_u = (u_{new} \geq l) * \ite(u > u_{new}, br(x, h(f), u_{new}, l), br(x, h(f), u, l))$
+				// f_l = (l_{new} \leq u) * \ite(l < l_{new}, br(x, l(f), u, l_{new}), br(x, l(f), u, l))$
+
+				// TODO pass_ub / pass/lb
+
+				return lowerBound(frame);
+			} else {
+				int summed = context.apply(internalNode._low, internalNode._high, XADD.SUM);
+				summed = reduce(rootId, summed, frame.depth);
+				return done(frame, summed);
 			}
 		} else if(node instanceof XADD.XADDTNode) {
 			XADD.XADDTNode terminalNode = (XADD.XADDTNode) node;
@@ -253,32 +292,128 @@ public class ResolveIntegration {
 				integratedLeafNodes.put(rootId, computeIntegral(terminalNode._expr, variable, optUb, optLb));
 			}
 			return integratedLeafNodes.get(rootId);*/
-			int resolved = computeIntegral(terminalNode._expr, variable, type, optUb, optLb);
+			int resolved = computeIntegral(terminalNode._expr, variable, type, frame.optUb, frame.optLb);
 			log("Terminal node integrated to return %s", prefix, context.getNode(resolved));
-			resolveCache.put(key, resolved);
-			return resolved;
+			return done(frame, resolved);
 		} else {
 			throw new IllegalStateException(format("Unexpected subclass %s of XADDNode %s", node.getClass(), node));
 		}
 	}
 
-	private int simplifyIte(XADD.Decision decision, Supplier<Integer> ifTrue, Supplier<Integer> ifFalse, String prefix) {
+	private Frame lowerBound(Frame frame) {
+		Frame resolveNew = call(frame, frame.lbId, frame.optUb, frame.newBound, frame.lbScope);
+		if(frame.optLb.isPresent()) {
+			ArithExpr lb = frame.optLb.get();
+			frame.ubConsistencyId = comparisonToNodeId(ExprLib.CompOperation.GT_EQ, frame.newBound.get(), lb);
+			Frame resolveOld = call(frame, frame.lbId, frame.optUb, frame.optLb, frame.scope);
+			XADD.Decision decision = getDecision(ExprLib.CompOperation.LT_EQ, lb, frame.newBound.get());
+			return simplifyIte(frame, decision, resolveNew, resolveOld, LB);
+		}
+		frame.ubConsistencyId = context.getTermNode(ExprLib.ONE);
+		frame.stage = LB;
+		return resolveNew;
+	}
+
+	private Frame upperBound(Frame frame) {
+		Frame resolveNew = call(frame, frame.ubId, frame.newBound, frame.optLb, frame.ubScope);
+		if(frame.optUb.isPresent()) {
+			ArithExpr ub = frame.optUb.get();
+			frame.lbConsistencyId = comparisonToNodeId(ExprLib.CompOperation.LT_EQ, frame.newBound.get(), ub);
+			Frame resolveOld = call(frame, frame.ubId, frame.optUb, frame.optLb, frame.scope);
+			XADD.Decision decision = getDecision(ExprLib.CompOperation.GT_EQ, ub, frame.newBound.get());
+			return simplifyIte(frame, decision, resolveNew, resolveOld, UB);
+		}
+		frame.lbConsistencyId = context.getTermNode(ExprLib.ONE);
+		frame.stage = UB;
+		return resolveNew;
+	}
+
+	private Frame combine(Frame frame, int ubIte) {
+		String prefix = frame.prefix;
+		// Branches
+		int ubBranch = context.apply(frame.ubConsistencyId, ubIte, XADD.PROD);
+		if(reduce) {
+			ubBranch = context.reduce(ubBranch);
+		}
+		int lbBranch = context.apply(frame.lbConsistencyId, frame.lbIte, XADD.PROD);
+		if(reduce) {
+			lbBranch = context.reduce(lbBranch);
+		}
+
+		if(ubBranch == 1 && lbBranch == 1) {
+			if(frame.optLb.isPresent()) {
+				log("Ub consistency: %s >= %s", prefix, frame.newBound.get(), frame.optLb.get());
+				log("%d", "", comparisonToNodeId(ExprLib.CompOperation.GT_EQ,
+						frame.newBound.get(), frame.optLb.get()));
+				log("%d", "", comparisonToVarId(ExprLib.CompOperation.GT_EQ,
+						frame.newBound.get(), frame.optLb.get()));
+			}
+			log("Product ub: %d and %d, lb: %d and %d", prefix, frame.ubConsistencyId, ubIte, frame.lbConsistencyId,
+					frame.lbIte);
+			log("Consistency node %s", prefix, context.getNode(frame.ubConsistencyId));
+		}
+
+		int resolved = context.apply(ubBranch, lbBranch, XADD.SUM);
+		resolved = reduce(frame.rootId, resolved, frame.depth);
+
+		log("Resolved summed: %s + %s = %s", prefix, context.getNode(ubBranch),
+				context.getNode(lbBranch), context.getNode(resolved));
+		return done(frame, resolved);
+	}
+
+	/**
+	 * Resolves the true branch, the false branch or both branches of an ite on the given decision
+	 * @param frame		The frame of the ite
+	 * @param decision	The decision
+	 * @param ifTrue	The sub-call of the true branch
+	 * @param ifFalse	The sub-call of the false branch
+	 * @param stage		The stage receiving the result of a single branch (followed by the stages receiving the false
+	 * 					and true branch of a proper ite)
+	 * @return	The next sub-call of the frame
+	 */
+	private Frame simplifyIte(Frame frame, XADD.Decision decision, Frame ifTrue, Frame ifFalse, int stage) {
 		if(decision instanceof XADD.TautDec) {
 			XADD.TautDec tautology = (XADD.TautDec) decision;
+			frame.stage = stage;
 			if(tautology._bTautology) {
-				log("%s is tautology, resolving only true branch", prefix, tautology);
-				return ifTrue.get();
+				log("%s is tautology, resolving only true branch", frame.prefix, tautology);
+				return ifTrue;
 			} else {
-				log("%s is inconsistency, resolving only false branch", prefix, tautology);
-				return ifFalse.get();
+				log("%s is inconsistency, resolving only false branch", frame.prefix, tautology);
+				return ifFalse;
 			}
-		} else {
-			int varId = context.getVarIndex(decision, true);
-			int resolveFalse = ifFalse.get();
-			int resolveTrue = ifTrue.get();
-			log("if %s then %s else %s", prefix, varId, resolveTrue, resolveFalse);
-			return context.getINodeCanon(varId, resolveFalse, resolveTrue);
 		}
+		frame.varId = context.getVarIndex(decision, true);
+		frame.ifTrue = ifTrue;
+		frame.stage = stage + 1;
+		return ifFalse;
+	}
+
+	private int ite(Frame frame, int resolveTrue) {
+		log("if %s then %s else %s", frame.prefix, frame.varId, resolveTrue, frame.falseId);
+		return context.getINodeCanon(frame.varId, frame.falseId, resolveTrue);
+	}
+
+	private Frame call(Frame frame, int rootId, Optional<ArithExpr> optUb, Optional<ArithExpr> optLb, int scope) {
+		// Prefixes are only extended when logging, a deep diagram would otherwise allocate quadratic memory
+		String prefix = verbose ? frame.prefix + "\t" : frame.prefix;
+		return new Frame(rootId, optUb, optLb, scope, prefix, frame.depth + 1);
+	}
+
+	private Frame done(Frame frame, int resolved) {
+		memo.put(frame.scope, frame.rootId, resolved);
+		frame.result = resolved;
+		return null;
+	}
+
+	private Optional<ArithExpr> getDomainSize(int type, Optional<ArithExpr> optUb, Optional<ArithExpr> optLb) {
+		if(type == BOOL) {
+			return Optional.of(new ExprLib.DoubleExpr(2));
+		} else if(type == REAL && optUb.isPresent() && optLb.isPresent()) {
+			ArithExpr size = ArithExpr.op(optUb.get(), optLb.get(), ExprLib.ArithOperation.MINUS);
+			return Optional.of((ArithExpr) size.makeCanonical());
+		}
+		return Optional.empty();
 	}
 
 	private int computeIntegral(ArithExpr expr, String variable, int type, Optional<ArithExpr> optUb, Optional<ArithExpr> optLb) {
@@ -5,7 +5,6 @@ import xadd.ExprLib.ArithExpr;
 import xadd.XADD;
 
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.function.Supplier;
 
 import static java.lang.String.format;
@@ -17,47 +16,24 @@ import static java.lang.String.format;
  */
 public class ResolveMaximization {
 
-	private class ResolveKey {
-		final int rootId;
-		final String variable;
-		final ArithExpr optUb;
-		final ArithExpr optLb;
-
-		ResolveKey(int rootId, Variable variable, ArithExpr optUb, ArithExpr optLb) {
-			this.rootId = rootId;
-			this.variable = variable.getName();
-			this.optUb = optUb;
-			this.optLb = optLb;
-		}
-
-		@Override
-		public boolean equals(Object o) {
-			if(this == o) return true;
-			if(o == null || getClass() != o.getClass()) return false;
-
-			ResolveKey that = (ResolveKey) o;
-
-			if(rootId != that.rootId) return false;
-			if(variable != null ? !variable.equals(that.variable) : that.variable != null) return false;
-			if(optUb != null ? !optUb.equals(that.optUb) : that.optUb != null) return false;
-			return optLb != null ? optLb.equals(that.optLb) : that.optLb == null;
-		}
-
-		@Override
-		public int hashCode() {
-			int result = rootId;
-			result = 31 * result + (variable != null ? variable.hashCode() : 0);
-			result = 31 * result + (optUb != null ? optUb.hashCode() : 0);
-			result = 31 * result + (optLb != null ? optLb.hashCode() : 0);
-			return result;
-		}
-	}
-
 	//region Variables
-	private HashMap<ResolveKey, Integer> resolveCache;
+	private final ResolveCache resolveCache;
+	private ResolveCache.Memo memo;
+	private final BoundIndex bounds;
 	private final boolean verbose;
+	private ReductionPolicy reductionPolicy = ReductionPolicy.ALWAYS;
 	private final boolean reduce = false;
 	private XADD context;
+	private final SupportIndex supports;
+
+	public ReductionPolicy getReductionPolicy() {
+		return reductionPolicy;
+	}
+
+	public void setReductionPolicy(ReductionPolicy reductionPolicy) {
+		this.reductionPolicy = reductionPolicy;
+	}
+
 	//endregion
 
 	//region Construction
@@ -75,6 +51,9 @@ public class ResolveMaximization {
 	 */
 	public ResolveMaximization(XADD context, boolean verbose) {
 		this.context = context;
+		this.supports = SupportIndex.of(context);
+		this.resolveCache = ResolveCache.of(context);
+		this.bounds = BoundIndex.of(context);
 		this.verbose = verbose;
 	}
 
@@ -89,8 +68,12 @@ public class ResolveMaximization {
 	 * @return	The integer node id of the resulting diagram
 	 */
 	public int maxOut(int rootId, Variable variable) {
-		resolveCache = new HashMap<>();
-		return maxOut(rootId, variable, ExprLib.POS_INF, ExprLib.NEG_INF, "");
+		ArithExpr ub = ExprLib.POS_INF;
+		ArithExpr lb = ExprLib.NEG_INF;
+		memo = resolveCache.newMemo();
+		int resolved = maxOut(rootId, variable, ub, lb, getScope(variable, ub, lb), "", 0);
+		memo = null;
+		return reductionPolicy.finish(context, resolved);
 	}
 
     /**
@@ -105,40 +88,51 @@ public class ResolveMaximization {
 		}
 	}
 
+	private int getScope(Variable variable, ArithExpr optUb, ArithExpr optLb) {
+		int type = variable.isBool() ? 1 : 2;
+		return resolveCache.getScope(ResolveCache.MAXIMIZATION, supports.getId(variable.getName()), type,
+				bounds.getId(optUb), bounds.getId(optLb));
+	}
+
+	private int reduce(int rootId, int resultId, int depth) {
+		return reductionPolicy.reduce(context, depth, rootId, resultId);
+	}
+
     /**
      * Recursively max out a variable from the given XADD
      * @param rootId    The integer node id of the XADD to eliminate the variable from
      * @param variable  The variable to eliminate
      * @param optUb The current upper bound for the variable
      * @param optLb The current lower bound for the variable
+     * @param scope The id of the cache scope of the variable and bounds
      * @param prefix    Logging prefix
+     * @param depth     The level of the recursion (0 at the top)
      * @return  The integer node id corresponding to the resulting XADD
      */
-	private int maxOut(int rootId, Variable variable, ArithExpr optUb, ArithExpr optLb, String prefix) {
+	private int maxOut(int rootId, Variable variable, ArithExpr optUb, ArithExpr optLb, int scope,
+					   String prefix, int depth) {
 		if(rootId == context.ZERO) {
 			return context.ZERO;
 		}
 
-		ResolveKey key = new ResolveKey(rootId, variable, optUb, optLb);
-		if(resolveCache.containsKey(key)) {
+		int cached = memo.get(scope, rootId);
+		if(cached >= 0) {
 			log("Cache hit", prefix);
 			// System.out.format("Cache hit %s %s % %s", rootId, variable, optLb, optUb);
 			// System.out.println(rootId + " " + variable + " " + optLb + " " + optUb);
-			return resolveCache.get(key);
+			return cached;
 		}
 
 		XADD.XADDNode node = context.getNode(rootId);
 		log("Resolve %s for var %s with ub %s and lb %s", prefix, node, variable, optUb, optLb);
 		if(node instanceof XADD.XADDINode) {
 			XADD.XADDINode internalNode = (XADD.XADDINode) node;
-			HashSet<String> variables = new HashSet<>();
-			internalNode.getDecision().collectVars(variables);
-			if(!variables.contains(variable.getName())) {
-				int resolveLow = maxOut(internalNode._low, variable, optUb, optLb, prefix + "\t");
-				int resolveHigh = maxOut(internalNode._high, variable, optUb, optLb, prefix + "\t");
+			if(!supports.decisionMentions(internalNode._var, variable.getName())) {
+				int resolveLow = maxOut(internalNode._low, variable, optUb, optLb, scope, prefix + "\t", depth + 1);
+				int resolveHigh = maxOut(internalNode._high, variable, optUb, optLb, scope, prefix + "\t", depth + 1);
 				int resolved = context.getINodeCanon(internalNode._var, resolveLow, resolveHigh);
 				log("Resolved did not contain: %s", prefix, context.getNode(resolved));
-				resolveCache.put(key, resolved);
+				memo.put(scope, rootId, resolved);
 				return resolved;
 			} else {
 				if(internalNode.getDecision() instanceof XADD.ExprDec) {
@@ -168,6 +162,8 @@ public class ResolveMaximization {
 					}
 
 					log(" Node %s, coefficient %.2f, bound: %s", prefix, comparison, coefficient, newBound);
+					final int ubScope = getScope(variable, newBound, optLb);
+					final int lbScope = getScope(variable, optUb, newBound);
 
 					// f_u = (u_{new} \geq l) * \ite(u > u_{new}, br(x, h(f), u_{new}, l), br(x, h(f), u, l))$
 					// f_l = (l_{new} \leq u) * \ite(l < l_{new}, br(x, l(f), u, l_{new}), br(x, l(f), u, l))$
@@ -180,30 +176,30 @@ public class ResolveMaximization {
 						ubConsistencyId = comparisonToNodeId(ExprLib.CompOperation.GT_EQ, newBound, optLb);
 
 						Supplier<Integer> resolveFalseSupplier =
-								() -> maxOut(lbId, variable, optUb, optLb, prefix + "\t");
+								() -> maxOut(lbId, variable, optUb, optLb, scope, prefix + "\t", depth + 1);
 						Supplier<Integer> resolveTrueSupplier =
-								() -> maxOut(lbId, variable, optUb, newBound, prefix + "\t");
+								() -> maxOut(lbId, variable, optUb, newBound, lbScope, prefix + "\t", depth + 1);
 
 						XADD.Decision decision = getDecision(ExprLib.CompOperation.LT_EQ, optLb, newBound);
 						lbIte = simplifyIte(decision, resolveTrueSupplier, resolveFalseSupplier, prefix);
 					} else {
 						ubConsistencyId = context.getTermNode(ExprLib.ONE);
-						lbIte = maxOut(lbId, variable, optUb, newBound, prefix + "\t");
+						lbIte = maxOut(lbId, variable, optUb, newBound, lbScope, prefix + "\t", depth + 1);
 					}
 
 					if(optUb != ExprLib.POS_INF) {
 						lbConsistencyId = comparisonToNodeId(ExprLib.CompOperation.LT_EQ, newBound, optUb);
 
 						Supplier<Integer> resolveFalseSupplier =
-								() -> maxOut(ubId, variable, optUb, optLb, prefix + "\t");
+								() -> maxOut(ubId, variable, optUb, optLb, scope, prefix + "\t", depth + 1);
 						Supplier<Integer> resolveTrueSupplier =
-								() -> maxOut(ubId, variable, newBound, optLb, prefix + "\t");
+								() -> maxOut(ubId, variable, newBound, optLb, ubScope, prefix + "\t", depth + 1);
 
 						XADD.Decision decision = getDecision(ExprLib.CompOperation.GT_EQ, optUb, newBound);
 						ubIte = simplifyIte(decision, resolveTrueSupplier, resolveFalseSupplier, prefix);
 					} else {
 						lbConsistencyId = context.getTermNode(ExprLib.ONE);
-						ubIte = maxOut(ubId, variable, newBound, optLb, prefix + "\t");
+						ubIte = maxOut(ubId, variable, newBound, optLb, ubScope, prefix + "\t", depth + 1);
 					}
 
 					// Branches
@@ -227,16 +223,16 @@ public class ResolveMaximization {
 					}
 
 					int resolved = context.apply(ubBranch, lbBranch, XADD.MAX);
-					resolved = context.reduceLP(resolved);
+					resolved = reduce(rootId, resolved, depth);
 
 					log("Resolved maxed: max(%s, %s) = %s", prefix, context.getNode(ubBranch),
 							context.getNode(lbBranch), context.getNode(resolved));
-					resolveCache.put(key, resolved);
+					memo.put(scope, rootId, resolved);
 					return resolved;
 				} else {
 					int maxed = context.apply(internalNode._low, internalNode._high, XADD.MAX);
-					maxed = context.reduceLP(maxed);
-					resolveCache.put(key, maxed);
+					maxed = reduce(rootId, maxed, depth);
+					memo.put(scope, rootId, maxed);
 					return maxed;
 				}
 			}
@@ -244,7 +240,7 @@ public class ResolveMaximization {
 			XADD.XADDTNode terminalNode = (XADD.XADDTNode) node;
 			int resolved = computeMax(terminalNode._expr, variable, optUb, optLb);
 			log("Terminal node integrated to return %s", prefix, context.getNode(resolved));
-			resolveCache.put(key, resolved);
+			memo.put(scope, rootId, resolved);
 			return resolved;
 		} else {
 			throw new IllegalStateException(format("Unexpected subclass %s of XADDNode %s", node.getClass(), node));
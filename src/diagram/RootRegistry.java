@@ -0,0 +1,157 @@
+package diagram;
+
+import xadd.XADD;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static java.lang.String.format;
+
+/**
+ * Keeps track of the diagrams (root nodes) of an XADD pool / context that are still in use.
+ * Nodes that are not reachable from a registered root can be removed by compacting the context.
+ *
+ * @author Samuel Kolb
+ */
+public class RootRegistry {
+
+	/**
+	 * A registered root, closing the handle releases the root
+	 */
+	public class Handle implements AutoCloseable {
+		private final int nodeId;
+		private boolean closed = false;
+
+		private Handle(int nodeId) {
+			this.nodeId = nodeId;
+		}
+
+		/**
+		 * @return	The id of the root node
+		 */
+		public int getNodeId() {
+			return nodeId;
+		}
+
+		/**
+		 * @return	The diagram rooted at the root node
+		 */
+		public XADDiagram getDiagram() {
+			if(closed) {
+				throw new IllegalStateException(format("Root %d has already been released", nodeId));
+			}
+			return new XADDiagram(context, nodeId);
+		}
+
+		@Override
+		public void close() {
+			if(!closed) {
+				closed = true;
+				release(nodeId);
+			}
+		}
+	}
+
+	static class Table {
+		private final Map<Integer, Integer> counts = new HashMap<>();
+	}
+
+	private final XADD context;
+	private final Table table;
+
+	private RootRegistry(XADD context, Table table) {
+		this.context = context;
+		this.table = table;
+	}
+
+	/**
+	 * Returns the root registry of the given context
+	 * @param context	The XADD pool / context
+	 * @return	The root registry
+	 */
+	public static RootRegistry of(XADD context) {
+		return new RootRegistry(context, ContextData.of(context).roots);
+	}
+
+	/**
+	 * Registers the given node as root, it (and its descendants) will survive compaction until the handle is closed.
+	 * A node can be registered multiple times, it is released once all its handles have been closed.
+	 * @param nodeId	The id of the root node
+	 * @return	The handle of the root
+	 */
+	public Handle retain(int nodeId) {
+		synchronized(table) {
+			table.counts.merge(nodeId, 1, Integer::sum);
+		}
+		return new Handle(nodeId);
+	}
+
+	/**
+	 * @return	The ids of the currently registered roots
+	 */
+	public Set<Integer> getRoots() {
+		synchronized(table) {
+			return Collections.unmodifiableSet(new HashSet<>(table.counts.keySet()));
+		}
+	}
+
+	/**
+	 * Removes all nodes that are not reachable from a registered root (or a special node of the context) and flushes
+	 * the caches of the context. Node ids of surviving nodes remain valid.
+	 */
+	public void compact() {
+		Set<Integer> roots = getRoots();
+		List<Integer> constants = Arrays.asList(context.ZERO, context.ONE, context.POS_INF, context.NEG_INF);
+		Set<Integer> added = new HashSet<>();
+		for(Integer nodeId : roots) {
+			if(!context._hsSpecialNodes.contains(nodeId)) {
+				added.add(nodeId);
+			}
+		}
+		for(Integer nodeId : constants) {
+			if(!context._hsSpecialNodes.contains(nodeId)) {
+				added.add(nodeId);
+			}
+		}
+		for(Integer nodeId : added) {
+			context.addSpecialNode(nodeId);
+		}
+		try {
+			context.flushCaches();
+		} finally {
+			context._hsSpecialNodes.removeAll(added);
+		}
+		ContextData.of(context).retainNodes(context._hmInt2Node.keySet());
+	}
+
+	/**
+	 * Compacts the context (see compact) if it holds more than the given number of nodes
+	 * @param threshold	The maximal number of nodes the context may hold without being compacted
+	 * @return	True iff the context was compacted
+	 */
+	public boolean compactIfAbove(int threshold) {
+		if(context._hmInt2Node.size() <= threshold) {
+			return false;
+		}
+		compact();
+		return true;
+	}
+
+	private void release(int nodeId) {
+		synchronized(table) {
+			Integer count = table.counts.get(nodeId);
+			if(count == null) {
+				throw new IllegalStateException(format("Root %d is not registered", nodeId));
+			} else if(count == 1) {
+				table.counts.remove(nodeId);
+			} else {
+				table.counts.put(nodeId, count - 1);
+			}
+		}
+	}
+}
@@ -0,0 +1,219 @@
+package diagram;
+
+import xadd.XADD;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Index of the variables that occur in (the decisions of) nodes of an XADD pool / context.
+ * Variables are interned to integer ids and the support of every node is computed once and cached as a bitset.
+ * Bitsets returned by this index are shared and should not be modified.
+ *
+ * @author Samuel Kolb
+ */
+public class SupportIndex {
+
+	static class Table {
+		private final Map<String, Integer> ids = new HashMap<>();
+		private final List<String> names = new ArrayList<>();
+		private final BitSet booleans = new BitSet();
+		private final Map<Integer, BitSet> decisionVariables = new HashMap<>();
+		private final Map<Integer, BitSet> decisionSupports = new HashMap<>();
+		private final Map<Integer, BitSet> supports = new HashMap<>();
+
+		synchronized void retainNodes(Set<Integer> nodeIds) {
+			decisionSupports.keySet().retainAll(nodeIds);
+			supports.keySet().retainAll(nodeIds);
+		}
+	}
+
+	private final XADD context;
+	private final Table table;
+
+	private SupportIndex(XADD context, Table table) {
+		this.context = context;
+		this.table = table;
+	}
+
+	/**
+	 * Returns the support index of the given context
+	 * @param context	The XADD pool / context
+	 * @return	The support index
+	 */
+	public static SupportIndex of(XADD context) {
+		return new SupportIndex(context, ContextData.of(context).supports);
+	}
+
+	/**
+	 * Returns the id of the given variable
+	 * @param variable	The name of the variable
+	 * @return	The interned id of the variable
+	 */
+	public int getId(String variable) {
+		synchronized(table) {
+			return table.ids.computeIfAbsent(variable, name -> {
+				table.names.add(name);
+				return table.names.size() - 1;
+			});
+		}
+	}
+
+	/**
+	 * Returns the variable with the given id
+	 * @param id	The interned id of the variable
+	 * @return	The name of the variable
+	 */
+	public String getName(int id) {
+		synchronized(table) {
+			return table.names.get(id);
+		}
+	}
+
+	/**
+	 * Returns the variables occurring in the given decision
+	 * @param decisionId	The id of the decision (the variable index of an internal node)
+	 * @return	A bitset of variable ids
+	 */
+	public BitSet getDecisionVariables(int decisionId) {
+		synchronized(table) {
+			BitSet variables = table.decisionVariables.get(decisionId);
+			if(variables == null) {
+				XADD.Decision decision = context._alOrder.get(decisionId);
+				HashSet<String> names = new HashSet<>();
+				decision.collectVars(names);
+				variables = toBitSet(names);
+				if(decision instanceof XADD.BoolDec) {
+					table.booleans.or(variables);
+				}
+				table.decisionVariables.put(decisionId, variables);
+			}
+			return variables;
+		}
+	}
+
+	/**
+	 * Checks if the given decision contains the given variable
+	 * @param decisionId	The id of the decision (the variable index of an internal node)
+	 * @param variable		The name of the variable
+	 * @return	True iff the decision contains the variable
+	 */
+	public boolean decisionMentions(int decisionId, String variable) {
+		return getDecisionVariables(decisionId).get(getId(variable));
+	}
+
+	/**
+	 * Returns the variables occurring in the decisions of the diagram rooted at the given node
+	 * @param nodeId	The id of the root node
+	 * @return	A bitset of variable ids
+	 */
+	public BitSet getDecisionSupport(int nodeId) {
+		synchronized(table) {
+			index(nodeId);
+			return table.decisionSupports.get(nodeId);
+		}
+	}
+
+	/**
+	 * Returns the variables occurring in the decisions or leaves of the diagram rooted at the given node
+	 * @param nodeId	The id of the root node
+	 * @return	A bitset of variable ids
+	 */
+	public BitSet getSupport(int nodeId) {
+		synchronized(table) {
+			index(nodeId);
+			return table.supports.get(nodeId);
+		}
+	}
+
+	/**
+	 * Checks if the diagram rooted at the given node contains the given variable (in decisions or leaves)
+	 * @param nodeId	The id of the root node
+	 * @param variable	The name of the variable
+	 * @return	True iff the variable occurs in the diagram
+	 */
+	public boolean mentions(int nodeId, String variable) {
+		return getSupport(nodeId).get(getId(variable));
+	}
+
+	/**
+	 * Returns the variables occurring in the decisions or leaves of the diagram rooted at the given node
+	 * @param nodeId	The id of the root node
+	 * @return	The set of variable names
+	 */
+	public Set<String> getVariables(int nodeId) {
+		return toNames(getSupport(nodeId));
+	}
+
+	/**
+	 * Returns the boolean variables occurring in the diagram rooted at the given node
+	 * @param nodeId	The id of the root node
+	 * @return	The set of variable names
+	 */
+	public Set<String> getBooleanVariables(int nodeId) {
+		synchronized(table) {
+			BitSet variables = (BitSet) getDecisionSupport(nodeId).clone();
+			variables.and(table.booleans);
+			return toNames(variables);
+		}
+	}
+
+	/**
+	 * Returns the continuous variables occurring in the decisions of the diagram rooted at the given node
+	 * @param nodeId	The id of the root node
+	 * @return	The set of variable names
+	 */
+	public Set<String> getContinuousVariables(int nodeId) {
+		synchronized(table) {
+			BitSet variables = (BitSet) getDecisionSupport(nodeId).clone();
+			variables.andNot(table.booleans);
+			return toNames(variables);
+		}
+	}
+
+	private void index(int rootId) {
+		if(table.supports.containsKey(rootId)) {
+			return;
+		}
+		for(int nodeId : DiagramWalker.postOrder(context, rootId, table.supports::containsKey)) {
+			XADD.XADDNode node = context.getNode(nodeId);
+			if(node instanceof XADD.XADDTNode) {
+				HashSet<String> names = new HashSet<>();
+				((XADD.XADDTNode) node)._expr.collectVars(names);
+				table.decisionSupports.put(nodeId, new BitSet());
+				table.supports.put(nodeId, toBitSet(names));
+			} else {
+				XADD.XADDINode iNode = (XADD.XADDINode) node;
+				BitSet decisionSupport = (BitSet) getDecisionVariables(iNode._var).clone();
+				decisionSupport.or(table.decisionSupports.get(iNode._low));
+				decisionSupport.or(table.decisionSupports.get(iNode._high));
+				BitSet support = (BitSet) decisionSupport.clone();
+				support.or(table.supports.get(iNode._low));
+				support.or(table.supports.get(iNode._high));
+				table.decisionSupports.put(nodeId, decisionSupport);
+				table.supports.put(nodeId, support);
+			}
+		}
+	}
+
+	private BitSet toBitSet(Set<String> names) {
+		BitSet variables = new BitSet();
+		for(String name : names) {
+			variables.set(getId(name));
+		}
+		return variables;
+	}
+
+	private Set<String> toNames(BitSet variables) {
+		Set<String> names = new HashSet<>();
+		for(int id = variables.nextSetBit(0); id >= 0; id = variables.nextSetBit(id + 1)) {
+			names.add(getName(id));
+		}
+		return names;
+	}
+}
@@ -11,6 +11,8 @@ import xadd.XADD
  */
 class SymbolicResolutionIntegrator(val context: XADD, val verbose: Boolean=false) : SingleVariableIntegrator {
 
+    private val supports = SupportIndex.of(context)
+
     private val ubSym = ExprLib.VarExpr("_ub")
     private val lbSym = ExprLib.VarExpr("_lb")
 
@@ -43,12 +45,6 @@ class SymbolicResolutionIntegrator(val context: XADD, val verbose: Boolean=false
 
     private fun integrate(rootId: Int, variable: Variable, cache: MutableMap<ResolveKey, Int>, prefix: Int): Int {
 
-        fun XADD.Decision.variables(): HashSet<String> {
-            val variables = HashSet<String>()
-            this.collectVars(variables)
-            return variables
-        }
-
         fun XADD.Decision.getBound(variable: String): Pair<Double, Expression> {
             this as XADD.ExprDec
             val pair = _expr._lhs.removeVarFromExpr(variable)
@@ -109,8 +105,7 @@ class SymbolicResolutionIntegrator(val context: XADD, val verbose: Boolean=false
         when (node) {
             is XADD.XADDINode -> {
                 if(variable.isReal) {
-                    val variables = node.decision.variables()
-                    if (variable.name in variables) {
+                    if (supports.decisionMentions(node._var, variable.name)) {
                         val bound = node.decision.getBound(variable.name)
 
                         val ubId: Int
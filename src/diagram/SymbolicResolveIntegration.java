@@ -5,7 +5,6 @@ import xadd.ExprLib.ArithExpr;
 import xadd.XADD;
 
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Optional;
 import java.util.function.Supplier;
 
@@ -19,43 +18,26 @@ import static java.lang.String.format;
  */
 public class SymbolicResolveIntegration {
 
-	private class ResolveKey {
-		final int rootId;
-		final String variable;
-
-		ResolveKey(int rootId, String variable) {
-			this.rootId = rootId;
-			this.variable = variable;
-		}
-
-		@Override
-		public boolean equals(Object o) {
-			if(this == o) return true;
-			if(o == null || getClass() != o.getClass()) return false;
-
-			ResolveKey that = (ResolveKey) o;
-
-			if(rootId != that.rootId) return false;
-			if(variable != null ? !variable.equals(that.variable) : that.variable != null) return false;
-			return true;
-		}
-
-		@Override
-		public int hashCode() {
-			int result = rootId;
-			result = 31 * result + (variable != null ? variable.hashCode() : 0);
-			return result;
-		}
-	}
-
 	//region Variables
 	private final static int BOOL = 1;
 	private final static int REAL = 2;
 	private HashMap<Integer, Integer> integratedLeafNodes;
-	private HashMap<ResolveKey, Integer> resolveCache;
+	private final ResolveCache resolveCache;
+	private ResolveCache.Memo memo;
 	private final boolean verbose;
+	private ReductionPolicy reductionPolicy = ReductionPolicy.ALWAYS;
 	private final boolean reduce = false;
 	private XADD context;
+	private final SupportIndex supports;
+
+	public ReductionPolicy getReductionPolicy() {
+		return reductionPolicy;
+	}
+
+	public void setReductionPolicy(ReductionPolicy reductionPolicy) {
+		this.reductionPolicy = reductionPolicy;
+	}
+
 	//endregion
 
 	//region Construction
@@ -73,6 +55,8 @@ public class SymbolicResolveIntegration {
 	 */
 	public SymbolicResolveIntegration(XADD context, boolean verbose) {
 		this.context = context;
+		this.supports = SupportIndex.of(context);
+		this.resolveCache = ResolveCache.of(context);
 		this.verbose = verbose;
 	}
 
@@ -88,8 +72,13 @@ public class SymbolicResolveIntegration {
 	 */
 	public int integrate(int rootId, String variable, String type) {
 		integratedLeafNodes = new HashMap<>();
-		resolveCache = new HashMap<>();
-		return resolve(rootId, variable, getType(type), Optional.empty(), Optional.empty(), "");
+		memo = resolveCache.newMemo();
+		int typeId = getType(type);
+		int scope = resolveCache.getScope(ResolveCache.SYMBOLIC_RESOLVE, supports.getId(variable), typeId,
+				BoundIndex.NONE, BoundIndex.NONE);
+		int resolved = resolve(rootId, variable, typeId, Optional.empty(), Optional.empty(), scope, "", 0);
+		memo = null;
+		return reductionPolicy.finish(context, resolved);
 	}
 
 	private int getType(String type) {
@@ -109,17 +98,22 @@ public class SymbolicResolveIntegration {
 		}
 	}
 
-	private int resolve(int rootId, String variable, int type, Optional<ArithExpr> optUb, Optional<ArithExpr> optLb, String prefix) {
+	private int reduce(int rootId, int resultId, int depth) {
+		return reductionPolicy.reduce(context, depth, rootId, resultId);
+	}
+
+	private int resolve(int rootId, String variable, int type, Optional<ArithExpr> optUb, Optional<ArithExpr> optLb,
+						int scope, String prefix, int depth) {
 		if(rootId == context.ZERO) {
 			return context.ZERO;
 		}
 
-		ResolveKey key = new ResolveKey(rootId, variable);
-		if(resolveCache.containsKey(key)) {
+		int cached = memo.get(scope, rootId);
+		if(cached >= 0) {
 			log("Cache hit", prefix);
 			// System.out.format("Cache hit %s %s % %s", rootId, variable, optLb, optUb);
 			// System.out.println(rootId + " " + variable + " " + optLb + " " + optUb);
-			return resolveCache.get(key);
+			return cached;
 		}
 
 		ArithExpr ubSym = new ExprLib.VarExpr("_ub");
@@ -135,16 +129,15 @@ public class SymbolicResolveIntegration {
 		log("Resolve %s for var %s with ub %s and lb %s", prefix, node, variable, optUb, optLb);
 		if(node instanceof XADD.XADDINode) {
 			XADD.XADDINode internalNode = (XADD.XADDINode) node;
-			HashSet<String> variables = new HashSet<>();
-			internalNode.getDecision().collectVars(variables);
-
-			if(!variables.contains(variable)) {
-				int resolveLow = resolve(internalNode._low, variable, type, optUbSym, optLbSym, prefix + "\t");
-				int resolveHigh = resolve(internalNode._high, variable, type, optUbSym, optLbSym, prefix + "\t");
+			if(!supports.decisionMentions(internalNode._var, variable)) {
+				int resolveLow = resolve(internalNode._low, variable, type, optUbSym, optLbSym, scope,
+						prefix + "\t", depth + 1);
+				int resolveHigh = resolve(internalNode._high, variable, type, optUbSym, optLbSym, scope,
+						prefix + "\t", depth + 1);
 				int resolved = context.getINodeCanon(internalNode._var, resolveLow, resolveHigh);
 				// resolved = context.reduceLP(resolved);
 				log("Resolved did not contain: %s", prefix, context.getNode(resolved));
-				resolveCache.put(key, resolved);
+				memo.put(scope, rootId, resolved);
 				return context.substitute(resolved, map("_ub", "_lb").to(
 						optUb.orElse(posInf),
 						optLb.orElse(negInf)));
@@ -184,7 +177,8 @@ public class SymbolicResolveIntegration {
 
 					// TODO pass_ub / pass/lb
 
-					int genericLbResolve = resolve(lbId, variable, type, optUbSym, optLbSym, prefix + "\t");
+					int genericLbResolve = resolve(lbId, variable, type, optUbSym, optLbSym, scope,
+							prefix + "\t", depth + 1);
 					ubConsistencyId = comparisonToNodeId(ExprLib.CompOperation.GT_EQ, newBound.get(), lbSym);
 
 
@@ -197,7 +191,8 @@ public class SymbolicResolveIntegration {
 					lbIte = simplifyIte(lbDecision, resolveLbTrueSupplier, resolveLbFalseSupplier, prefix);
 
 
-					int genericUbResolve = resolve(ubId, variable, type, optUbSym, optLbSym, prefix + "\t");
+					int genericUbResolve = resolve(ubId, variable, type, optUbSym, optLbSym, scope,
+							prefix + "\t", depth + 1);
 					lbConsistencyId = comparisonToNodeId(ExprLib.CompOperation.LT_EQ, newBound.get(), ubSym);
 
 					Supplier<Integer> resolveUbFalseSupplier =
@@ -235,7 +230,7 @@ public class SymbolicResolveIntegration {
 
 					log("Resolved summed: %s + %s = %s", prefix, context.getNode(ubBranch),
 							context.getNode(lbBranch), context.getNode(resolved));
-					resolveCache.put(key, resolved);
+					memo.put(scope, rootId, resolved);
 					// new XADDiagram(context, resolved).show(rootId + " resolved");
 					int substituted = context.substitute(resolved, map("_ub", "_lb").to(
 							optUb.orElse(posInf), optLb.orElse(negInf)));
@@ -245,8 +240,8 @@ public class SymbolicResolveIntegration {
 				} else {
 					// TODO
 					int summed = context.apply(internalNode._low, internalNode._high, XADD.SUM);
-					summed = context.reduceLP(summed);
-					resolveCache.put(key, summed);
+					summed = reduce(rootId, summed, depth);
+					memo.put(scope, rootId, summed);
 					return summed;
 				}
 			}
@@ -260,7 +255,7 @@ public class SymbolicResolveIntegration {
 			return integratedLeafNodes.get(rootId);*/
 			int resolved = computeIntegral(terminalNode._expr, variable, type, optUbSym, optLbSym);
 			log("Terminal node integrated to return %s", prefix, context.getNode(resolved));
-			resolveCache.put(key, resolved);
+			memo.put(scope, rootId, resolved);
 			return context.substitute(resolved, map("_ub", "_lb").to(
 					optUb.orElse(posInf), optLb.orElse(negInf)));
 		} else {
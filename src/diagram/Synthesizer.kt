@@ -1,6 +1,7 @@
 package diagram
 
 import time.Stopwatch
+import xadd.ExprLib
 import xadd.XADD
 import java.util.*
 import kotlin.collections.ArrayList
@@ -30,15 +31,13 @@ class Synthesizer(variables: Int, seed: Long, xadd: XADD?=null) {
         val vars = this.variables.shuffled(this.random).subList(0, varsPerTest)
         val coefficients = this.random.doubles(varsPerTest.toLong()).toArray().toList()
         val constant = this.random.nextDouble()
-        val testString = vars.zip(coefficients).joinToString(" + ") { "${it.second} * ${it.first}" }
-        return this.build.test("$testString <= $constant")
+        return this.build.test(vars.zip(coefficients).toMap(), ExprLib.CompOperation.LT_EQ, constant)
     }
 
     fun randomFunc(varsPerExpression: Int) : XADDiagram {
         val vars = this.variables.shuffled(this.random).subList(0, varsPerExpression)
         val coefficients = this.random.doubles(varsPerExpression.toLong()).toArray().toList()
-        val testString = vars.zip(coefficients).joinToString(" + ") { "${it.second} * ${it.first}" }
-        return this.build.`val`(testString)
+        return this.build.`val`(vars.zip(coefficients).toMap(), 0.0)
     }
 
     fun getBounds() : BoolXADD {
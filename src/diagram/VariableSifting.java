@@ -0,0 +1,217 @@
+package diagram;
+
+import xadd.XADD;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static java.lang.String.format;
+
+/**
+ * Dynamic variable reordering for ordered contexts using sifting: every variable (most frequent first) is moved
+ * through all positions of the order while the other variables keep their relative order, and is left at the position
+ * that minimizes the total size of the live diagrams.
+ * Since the order of existing nodes is fixed, the positions of a variable are evaluated by rebuilding the diagrams in a
+ * scratch context, where only the parts of the diagrams that contain the variable are rebuilt for every position.
+ *
+ * @author Samuel Kolb
+ */
+public class VariableSifting {
+
+	//region Variables
+	private final double maxGrowth;
+	//endregion
+
+	//region Construction
+
+	/**
+	 * Creates a sifting reorderer that stops moving a variable in one direction once the diagrams grow by over 20%
+	 */
+	public VariableSifting() {
+		this(1.2);
+	}
+
+	/**
+	 * @param maxGrowth	Moving a variable in one direction stops once the size exceeds maxGrowth times the best size
+	 */
+	public VariableSifting(double maxGrowth) {
+		if(maxGrowth < 1) {
+			throw new IllegalArgumentException(format("Maximal growth must be at least 1, was %f", maxGrowth));
+		}
+		this.maxGrowth = maxGrowth;
+	}
+
+	//endregion
+
+	//region Public methods
+
+	/**
+	 * Reorders the registered roots of the given context (see RootRegistry)
+	 * @param context	The ordered context
+	 * @return	The diagrams rebuilt under the best order found
+	 */
+	public Reordering reorder(OrderedXADD context) {
+		return reorder(context, RootRegistry.of(context).getRoots());
+	}
+
+	/**
+	 * Reorders the given roots if the context holds more than the given number of nodes
+	 * @param context	The ordered context
+	 * @param roots		The ids of the live roots
+	 * @param threshold	The number of nodes above which reordering is triggered
+	 * @return	The diagrams rebuilt under the best order found, or empty if the context is below the threshold
+	 */
+	public Optional<Reordering> reorderIfAbove(OrderedXADD context, Collection<Integer> roots, int threshold) {
+		if(context._hmInt2Node.size() <= threshold) {
+			return Optional.empty();
+		}
+		return Optional.of(reorder(context, roots));
+	}
+
+	/**
+	 * Reorders the given roots
+	 * @param context	The ordered context
+	 * @param roots		The ids of the live roots
+	 * @return	The diagrams rebuilt under the best order found
+	 */
+	public Reordering reorder(OrderedXADD context, Collection<Integer> roots) {
+		List<String> order = new ArrayList<>(context.getVariableOrder());
+		int bestSize = count(context, roots);
+		SupportIndex supports = SupportIndex.of(context);
+		for(String variable : getSiftingOrder(context, roots)) {
+			int position = order.indexOf(variable);
+			if(position < 0) {
+				continue;
+			}
+			// Moving the variable preserves the relative order of the other variables, so in a single scratch context
+			// nodes whose decisions do not contain the variable are translated once and shared by all candidates
+			OrderedXADD scratch = new OrderedXADD(order, context.isOrderOnFirst());
+			int variableId = supports.getId(variable);
+			Map<Integer, Integer> shared = new HashMap<>();
+			List<String> bestOrder = order;
+			int startSize = bestSize;
+			// Move the variable down, then up, remembering the best position
+			for(int direction : new int[]{1, -1}) {
+				for(int target = position + direction; target >= 0 && target < order.size(); target += direction) {
+					List<String> candidate = move(order, position, target);
+					scratch.setVariableOrder(candidate);
+					Map<Integer, Integer> translation = new HashMap<>(shared);
+					Set<Integer> newRoots = new HashSet<>();
+					for(int root : roots) {
+						newRoots.add(translate(context, scratch, root, translation));
+					}
+					for(Map.Entry<Integer, Integer> entry : translation.entrySet()) {
+						if(!supports.getDecisionSupport(entry.getKey()).get(variableId)) {
+							shared.put(entry.getKey(), entry.getValue());
+						}
+					}
+					int size = count(scratch, newRoots);
+					if(size < bestSize) {
+						bestSize = size;
+						bestOrder = candidate;
+					} else if(size > maxGrowth * startSize) {
+						break;
+					}
+				}
+			}
+			order = new ArrayList<>(bestOrder);
+		}
+		return rebuild(context, order, roots);
+	}
+
+	/**
+	 * Rebuilds the given roots in a new context using the given variable order
+	 * @param source	The ordered context containing the roots
+	 * @param order		The new variable order
+	 * @param roots		The ids of the roots
+	 * @return	The rebuilt diagrams
+	 */
+	public static Reordering rebuild(OrderedXADD source, List<String> order, Collection<Integer> roots) {
+		OrderedXADD target = new OrderedXADD(order, source.isOrderOnFirst());
+		Map<Integer, Integer> translation = new HashMap<>();
+		Map<Integer, Integer> newRoots = new HashMap<>();
+		for(int root : roots) {
+			newRoots.put(root, translate(source, target, root, translation));
+		}
+		return new Reordering(target, newRoots, count(target, newRoots.values()));
+	}
+
+	//endregion
+
+	private static int translate(XADD source, XADD target, int root, Map<Integer, Integer> translation) {
+		for(int nodeId : DiagramWalker.postOrder(source, root, translation::containsKey)) {
+			XADD.XADDNode node = source.getNode(nodeId);
+			if(node instanceof XADD.XADDTNode) {
+				translation.put(nodeId, target.getTermNode(((XADD.XADDTNode) node)._expr));
+			} else {
+				XADD.XADDINode iNode = (XADD.XADDINode) node;
+				int var = target.getVarIndex(translate(target, iNode.getDecision()), true);
+				int low = translation.get(iNode._low);
+				int high = translation.get(iNode._high);
+				translation.put(nodeId, target.getINodeCanon(var, low, high));
+			}
+		}
+		return translation.get(root);
+	}
+
+	private static int count(XADD context, Collection<Integer> roots) {
+		Set<Integer> counted = new HashSet<>();
+		for(int root : roots) {
+			for(int nodeId : DiagramWalker.postOrder(context, root, counted::contains)) {
+				counted.add(nodeId);
+			}
+		}
+		return counted.size();
+	}
+
+	private static XADD.Decision translate(XADD target, XADD.Decision decision) {
+		if(decision instanceof XADD.BoolDec) {
+			return target.new BoolDec(((XADD.BoolDec) decision)._sVarName);
+		} else if(decision instanceof XADD.ExprDec) {
+			return target.new ExprDec(((XADD.ExprDec) decision)._expr);
+		}
+		throw new IllegalStateException(format("Unexpected decision %s", decision));
+	}
+
+	private static List<String> getSiftingOrder(XADD context, Collection<Integer> roots) {
+		// Variables occurring in more decision nodes are sifted first
+		SupportIndex supports = SupportIndex.of(context);
+		Map<String, Integer> counts = new HashMap<>();
+		Set<Integer> visited = new HashSet<>();
+		for(int root : roots) {
+			for(int nodeId : DiagramWalker.postOrder(context, root, visited::contains)) {
+				visited.add(nodeId);
+				XADD.XADDNode node = context.getNode(nodeId);
+				if(node instanceof XADD.XADDINode) {
+					for(String variable : toNames(supports, supports.getDecisionVariables(((XADD.XADDINode) node)._var))) {
+						counts.merge(variable, 1, Integer::sum);
+					}
+				}
+			}
+		}
+		List<String> variables = new ArrayList<>(counts.keySet());
+		variables.sort((v1, v2) -> Integer.compare(counts.get(v2), counts.get(v1)));
+		return variables;
+	}
+
+	private static List<String> toNames(SupportIndex supports, BitSet variables) {
+		List<String> names = new ArrayList<>();
+		for(int id = variables.nextSetBit(0); id >= 0; id = variables.nextSetBit(id + 1)) {
+			names.add(supports.getName(id));
+		}
+		return names;
+	}
+
+	private static List<String> move(List<String> order, int from, int to) {
+		List<String> moved = new ArrayList<>(order);
+		moved.add(to, moved.remove(from));
+		return moved;
+	}
+}
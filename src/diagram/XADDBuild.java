@@ -1,11 +1,16 @@
 package diagram;
 
+import xadd.ExprLib;
+import xadd.ExprLib.ArithExpr;
 import xadd.XADD;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.BinaryOperator;
 
-import static function.Functional.autoFold;
-import static function.Functional.zip;
 import static java.lang.String.format;
 
 /**
@@ -15,8 +20,24 @@ import static java.lang.String.format;
  */
 public class XADDBuild {
 
+	private static class Operand<T extends XADDiagram> implements Comparable<Operand<T>> {
+		final T diagram;
+		final int size;
+
+		Operand(T diagram) {
+			this.diagram = diagram;
+			this.size = DiagramWalker.postOrder(diagram.xadd, diagram.number).length;
+		}
+
+		@Override
+		public int compareTo(Operand<T> other) {
+			return Integer.compare(size, other.size);
+		}
+	}
+
 	public static class Builder {
 		private final XADD xadd;
+		private final Map<String, Integer> tests;
 
 		/**
 		 * Obtain an xadd builder
@@ -24,6 +45,7 @@ public class XADDBuild {
 		 */
 		public Builder(XADD context) {
 			this.xadd = context;
+			this.tests = ContextData.of(context).tests;
 		}
 
 		/**
@@ -35,30 +57,118 @@ public class XADDBuild {
 			return new XADDiagram(xadd, contextBuild(string));
 		}
 
-		private BoolXADD fromStringBool(String string) {
-			return new BoolXADD(xadd, contextBuild(string));
-		}
-
 		private int contextBuild(String string) {
 			return xadd.buildCanonicalXADDFromString(string);
 		}
 
 		/**
-		 * Builds a diagram that returns 1 if the given variable is true, 0 otherwise.
+		 * Builds a diagram that returns 1 if the given variable is true, 0 otherwise (without parsing).
 		 * @param string	The name of the variable
 		 * @return	The diagram
 		 */
 		public BoolXADD bool(String string) {
-			return fromStringBool("(" + string + " ([1]) ([0]))");
+			int varId = xadd.getVarIndex(xadd.new BoolDec(string), true);
+			return new BoolXADD(xadd, xadd.getINode(varId, xadd.ZERO, xadd.ONE));
 		}
 
 		/**
 		 * Builds a diagram that returns 1 if the given expression is true, 0 otherwise.
+		 * Expressions are shared by all builders of the context, such that they are only parsed once.
 		 * @param string	The expression
 		 * @return	The diagram
 		 */
 		public BoolXADD test(String string) {
-			return fromStringBool("([" + string + "] ([1]) ([0]))");
+			synchronized(tests) {
+				Integer nodeId = tests.get(string);
+				if(nodeId == null) {
+					nodeId = contextBuild("([" + string + "] ([1]) ([0]))");
+					tests.put(string, nodeId);
+				}
+				return new BoolXADD(xadd, nodeId);
+			}
+		}
+
+		/**
+		 * Builds a diagram that returns 1 if the given comparison holds, 0 otherwise (without parsing).
+		 * @param lhs			The left hand side
+		 * @param operation		The comparison operator
+		 * @param rhs			The right hand side
+		 * @return	The diagram
+		 */
+		public BoolXADD test(ArithExpr lhs, ExprLib.CompOperation operation, ArithExpr rhs) {
+			XADD.Decision decision = xadd.new ExprDec(new ExprLib.CompExpr(operation, lhs, rhs)).makeCanonical();
+			if(decision instanceof XADD.TautDec) {
+				return val(((XADD.TautDec) decision)._bTautology);
+			}
+			int varId = xadd.getVarIndex(decision, true);
+			int zero = xadd.getTermNode(ExprLib.ZERO);
+			int one = xadd.getTermNode(ExprLib.ONE);
+			return new BoolXADD(xadd, xadd.getINode(varId, zero, one));
+		}
+
+		/**
+		 * Builds a diagram that returns 1 if the given linear comparison holds, 0 otherwise (without parsing).
+		 * @param coefficients	Mapping from variables to their coefficients in the left hand side
+		 * @param operation		The comparison operator
+		 * @param constant		The constant right hand side
+		 * @return	The diagram
+		 */
+		public BoolXADD test(Map<String, Double> coefficients, ExprLib.CompOperation operation, double constant) {
+			return test(linear(coefficients, 0), operation, new ExprLib.DoubleExpr(constant));
+		}
+
+		/**
+		 * Builds a diagram with a single (arithmetic) leaf (without parsing).
+		 * @param expression	The leaf expression
+		 * @return	The diagram
+		 */
+		public XADDiagram val(ArithExpr expression) {
+			return new XADDiagram(xadd, xadd.getTermNode((ArithExpr) expression.makeCanonical()));
+		}
+
+		/**
+		 * Builds a diagram with a single linear leaf (without parsing).
+		 * @param coefficients	Mapping from variables to their coefficients
+		 * @param constant		The constant term
+		 * @return	The diagram
+		 */
+		public XADDiagram val(Map<String, Double> coefficients, double constant) {
+			return val(linear(coefficients, constant));
+		}
+
+		/**
+		 * Builds the linear expression sum_i c_i * x_i + constant
+		 * @param coefficients	Mapping from variables to their coefficients
+		 * @param constant		The constant term
+		 * @return	The (canonical) expression
+		 */
+		public ArithExpr linear(Map<String, Double> coefficients, double constant) {
+			ArrayList<ArithExpr> terms = new ArrayList<>();
+			for(Map.Entry<String, Double> entry : coefficients.entrySet()) {
+				terms.add(new ExprLib.OperExpr(ExprLib.ArithOperation.PROD,
+						new ExprLib.DoubleExpr(entry.getValue()), new ExprLib.VarExpr(entry.getKey())));
+			}
+			terms.add(new ExprLib.DoubleExpr(constant));
+			return (ArithExpr) new ExprLib.OperExpr(ExprLib.ArithOperation.SUM, terms).makeCanonical();
+		}
+
+		/**
+		 * Builds the linear expression sum_i c_i * x_i + constant
+		 * @param variables		The variables x_i
+		 * @param coefficients	The coefficients c_i
+		 * @param constant		The constant term
+		 * @return	The (canonical) expression
+		 */
+		public ArithExpr linear(String[] variables, double[] coefficients, double constant) {
+			if(variables.length != coefficients.length) {
+				throw new IllegalArgumentException(format("Got %d variables but %d coefficients",
+						variables.length, coefficients.length));
+			}
+			Map<String, Double> map = new LinkedHashMap<>();
+			for(int i = 0; i < variables.length; i++) {
+				map.merge(variables[i], coefficients[i], Double::sum);
+			}
+			return linear(map, constant);
 		}
 
 		/**
@@ -67,7 +177,74 @@ public class XADDBuild {
 		 * @return	The combined XADD
 		 */
 		public XADDiagram cases(Map<BoolXADD, XADDiagram> caseMap) {
-			return autoFold(XADDiagram::plus, zip(XADDiagram::times, caseMap));
+			// The cases are mutually exclusive, hence every case can be spliced in where the previous cases are false
+			BooleanApply logic = new BooleanApply(xadd);
+			int result = xadd.getTermNode(ExprLib.ZERO);
+			for(Map.Entry<BoolXADD, XADDiagram> entry : caseMap.entrySet()) {
+				result = logic.ite(entry.getKey().number, entry.getValue().number, result);
+			}
+			return new XADDiagram(xadd, result);
+		}
+
+		/**
+		 * Builds the diagram that equals the first diagram if the guard is true and the second diagram otherwise
+		 * @param guard		The guard
+		 * @param ifTrue	The diagram to use where the guard is true
+		 * @param ifFalse	The diagram to use where the guard is false
+		 * @return	The combined XADD
+		 */
+		public XADDiagram ite(BoolXADD guard, XADDiagram ifTrue, XADDiagram ifFalse) {
+			return new XADDiagram(xadd, new BooleanApply(xadd).ite(guard.number, ifTrue.number, ifFalse.number));
+		}
+
+		/**
+		 * Builds the conjunction of the given diagrams, combining the smallest operands first
+		 * @param operands	The diagrams to combine
+		 * @return	The combined XADD (true if there are no operands)
+		 */
+		public BoolXADD and(Collection<BoolXADD> operands) {
+			return operands.isEmpty() ? val(true) : combine(operands, BoolXADD::and);
+		}
+
+		/**
+		 * Builds the disjunction of the given diagrams, combining the smallest operands first
+		 * @param operands	The diagrams to combine
+		 * @return	The combined XADD (false if there are no operands)
+		 */
+		public BoolXADD or(Collection<BoolXADD> operands) {
+			return operands.isEmpty() ? val(false) : combine(operands, BoolXADD::or);
+		}
+
+		/**
+		 * Builds the sum of the given diagrams, combining the smallest operands first
+		 * @param operands	The diagrams to combine
+		 * @return	The combined XADD (0 if there are no operands)
+		 */
+		public XADDiagram sum(Collection<? extends XADDiagram> operands) {
+			return operands.isEmpty() ? val(0) : combine(operands, XADDiagram::plus);
+		}
+
+		/**
+		 * Builds the product of the given diagrams, combining the smallest operands first
+		 * @param operands	The diagrams to combine
+		 * @return	The combined XADD (1 if there are no operands)
+		 */
+		public XADDiagram product(Collection<? extends XADDiagram> operands) {
+			return operands.isEmpty() ? val(1) : combine(operands, XADDiagram::times);
+		}
+
+		private <T extends XADDiagram> T combine(Collection<? extends T> operands, BinaryOperator<T> operator) {
+			// Repeatedly combine the two smallest diagrams (Huffman-style) to keep intermediate diagrams small
+			PriorityQueue<Operand<T>> queue = new PriorityQueue<>();
+			for(T operand : operands) {
+				queue.add(new Operand<>(operand));
+			}
+			while(queue.size() > 1) {
+				T first = queue.poll().diagram;
+				T second = queue.poll().diagram;
+				queue.add(new Operand<>(operator.apply(first, second)));
+			}
+			return queue.poll().diagram;
 		}
 
 		/**
@@ -76,7 +253,7 @@ public class XADDBuild {
 		 * @return	The corresponding XADD
 		 */
 		public BoolXADD val(boolean value) {
-			return fromStringBool("([" + (value ? "1" : "0") + "])");
+			return new BoolXADD(xadd, value ? xadd.ONE : xadd.ZERO);
 		}
 
 		/**
@@ -85,7 +262,7 @@ public class XADDBuild {
 		 * @return	The corresponding XADD
 		 */
 		public XADDiagram val(double value) {
-			return val(Double.toString(value));
+			return new XADDiagram(xadd, xadd.getTermNode(new ExprLib.DoubleExpr(value)));
 		}
 
 		/**
@@ -94,7 +271,7 @@ public class XADDBuild {
 		 * @return	The corresponding XADD
 		 */
 		public XADDiagram val(int value) {
-			return val(Integer.toString(value));
+			return val((double) value);
 		}
 
 		/**
@@ -104,16 +281,22 @@ public class XADDBuild {
 		 */
 		public XADDiagram val(String value) {
 			try {
-				return fromString("([" + value + "])");
+				// Constants do not need to be parsed as expression
+				return val(Double.parseDouble(value));
+			} catch(NumberFormatException e) {
+				// Not a constant
+			}
+			try {
+				return new XADDiagram(xadd, contextBuild("([" + value + "])"));
 			} catch(Exception e) {
 				throw new IllegalArgumentException(format("Could not parse string value %s", value), e);
 			}
 		}
 	}
 
-	// Static: context
+	// Static: context (one per thread, since XADD contexts are not thread-safe)
 	//public static XADD context = new XADD();
-	static final Builder builder = new Builder(new XADD());
+	static final ThreadLocal<Builder> builder = ThreadLocal.withInitial(() -> new Builder(new XADD()));
 
 	/**
 	 * Builds a diagram from a string.
@@ -121,7 +304,7 @@ public class XADDBuild {
 	 * @return	The diagram
 	 */
 	public static XADDiagram fromString(String string) {
-		return builder.fromString(string);
+		return builder.get().fromString(string);
 	}
 
 	/**
@@ -130,7 +313,7 @@ public class XADDBuild {
 	 * @return	The diagram
 	 */
 	public static BoolXADD bool(String string) {
-		return builder.bool(string);
+		return builder.get().bool(string);
 	}
 
 	/**
@@ -139,7 +322,7 @@ public class XADDBuild {
 	 * @return	The diagram
 	 */
 	public static BoolXADD test(String string) {
-		return builder.test(string);
+		return builder.get().test(string);
 	}
 
 	/**
@@ -148,7 +331,43 @@ public class XADDBuild {
 	 * @return	The combined XADD
 	 */
 	public static XADDiagram cases(Map<BoolXADD, XADDiagram> caseMap) {
-		return builder.cases(caseMap);
+		return builder.get().cases(caseMap);
+	}
+
+	/**
+	 * Builds the conjunction of the given diagrams, combining the smallest operands first
+	 * @param operands	The diagrams to combine
+	 * @return	The combined XADD (true if there are no operands)
+	 */
+	public static BoolXADD and(Collection<BoolXADD> operands) {
+		return builder.get().and(operands);
+	}
+
+	/**
+	 * Builds the disjunction of the given diagrams, combining the smallest operands first
+	 * @param operands	The diagrams to combine
+	 * @return	The combined XADD (false if there are no operands)
+	 */
+	public static BoolXADD or(Collection<BoolXADD> operands) {
+		return builder.get().or(operands);
+	}
+
+	/**
+	 * Builds the sum of the given diagrams, combining the smallest operands first
+	 * @param operands	The diagrams to combine
+	 * @return	The combined XADD (0 if there are no operands)
+	 */
+	public static XADDiagram sum(Collection<? extends XADDiagram> operands) {
+		return builder.get().sum(operands);
+	}
+
+	/**
+	 * Builds the product of the given diagrams, combining the smallest operands first
+	 * @param operands	The diagrams to combine
+	 * @return	The combined XADD (1 if there are no operands)
+	 */
+	public static XADDiagram product(Collection<? extends XADDiagram> operands) {
+		return builder.get().product(operands);
 	}
 
 	/**
@@ -157,7 +376,7 @@ public class XADDBuild {
 	 * @return	The corresponding XADD
 	 */
 	public static BoolXADD val(boolean value) {
-		return builder.val(value);
+		return builder.get().val(value);
 	}
 
 	/**
@@ -166,7 +385,7 @@ public class XADDBuild {
 	 * @return	The corresponding XADD
 	 */
 	public static XADDiagram val(double value) {
-		return builder.val(value);
+		return builder.get().val(value);
 	}
 
 	/**
@@ -175,7 +394,7 @@ public class XADDBuild {
 	 * @return	The corresponding XADD
 	 */
 	public static XADDiagram val(int value) {
-		return builder.val(value);
+		return builder.get().val(value);
 	}
 
 	/**
@@ -184,7 +403,7 @@ public class XADDBuild {
 	 * @return	The corresponding XADD
 	 */
 	public static XADDiagram val(String value) {
-		return builder.val(value);
+		return builder.get().val(value);
 	}
 
 	/**
@@ -1,6 +1,7 @@
 package diagram
 
 import time.Stopwatch
+import xadd.ExprLib
 import xadd.XADD
 import java.lang.Math.abs
 import java.lang.Math.pow
@@ -54,22 +55,8 @@ class XADDParser(val xadd: XADD) {
                 }
             }
             return when(node.name) {
-                "*" -> {
-                    var diagram = builder.`val`(1)
-                    for(child in node.childNodes) {
-                        diagram = diagram.times(astToXadd(child))
-                    }
-                    diagram
-                    // node.childNodes.map({astToXadd(it)}).fold(builder.`val`(1), XADDiagram::times).reduceLp()
-                }
-                "+" -> {
-                    var diagram = builder.`val`(0)
-                    for(child in node.childNodes) {
-                        diagram = diagram.plus(astToXadd(child))
-                    }
-                    diagram
-                    // node.childNodes.map({astToXadd(it)}).fold(builder.`val`(0), XADDiagram::plus).reduceLp()
-                }
+                "*" -> builder.product(node.childNodes.map({astToXadd(it)}))
+                "+" -> builder.sum(node.childNodes.map({astToXadd(it)}))
                 "ite" -> astToBoolXadd(node.childNodes[0]).assignWeights(
                         astToXadd(node.childNodes[1]), astToXadd(node.childNodes[2])
                 )
@@ -85,8 +72,8 @@ class XADDParser(val xadd: XADD) {
     fun astToBoolXadd(node: NestedParser.Node) : BoolXADD {
         if(node is NestedParser.OperatorNode) {
             if(node.name in arrayOf("<=", "<")) {
-                val parsedInequality = astToInequality(node)
-                return builder.test(parsedInequality)
+                val operation = if(node.name == "<=") ExprLib.CompOperation.LT_EQ else ExprLib.CompOperation.LT
+                return builder.test(astToExpression(node.childNodes[0]), operation, astToExpression(node.childNodes[1]))
             }
             if(node.name in arrayOf("const", "var") && node.childNodes[0].name == "bool") {
                 val value = node.childNodes[1].name!!
@@ -101,8 +88,8 @@ class XADDParser(val xadd: XADD) {
                 }
             }
             when(node.name) {
-                "&" -> return node.childNodes.map({astToBoolXadd(it)}).fold(builder.`val`(true), BoolXADD::and)
-                "|" -> return node.childNodes.map({astToBoolXadd(it)}).fold(builder.`val`(false), BoolXADD::or)
+                "&" -> return builder.and(node.childNodes.map({astToBoolXadd(it)}))
+                "|" -> return builder.or(node.childNodes.map({astToBoolXadd(it)}))
                 "~" -> return astToBoolXadd(node.childNodes[0]).not()
                 else -> throw IllegalArgumentException("Operator ${node.name} not currently as boolean connective")
             }
@@ -113,21 +100,28 @@ class XADDParser(val xadd: XADD) {
         }
     }
 
-    private fun astToInequality(node: NestedParser.Node) : String {
+    private fun astToExpression(node: NestedParser.Node) : ExprLib.ArithExpr {
         if(node is NestedParser.OperatorNode) {
             val op = node.name ?: throw IllegalArgumentException("Uninitialized node name")
             if(op in arrayOf("const", "var")) {
                 val type = node.childNodes[0].name
                 if(type == "bool") throw IllegalArgumentException("Illegal type '$type' in inequality")
-                return node.childNodes[1].name!!
-            }
-            if(op in arrayOf("<=", "<")) {
-                val lhs = astToInequality(node.childNodes[0])
-                val rhs = astToInequality(node.childNodes[1])
-                return "$lhs $op $rhs"
+                val name = node.childNodes[1].name!!
+                if(op == "var") {
+                    return ExprLib.VarExpr(name)
+                }
+                val value = name.toDoubleOrNull()
+                if(value != null) {
+                    return ExprLib.DoubleExpr(value)
+                }
+                // Constants that are not plain numbers (e.g. 1/2) are parsed as expression
+                val leaf = xadd.getNode(builder.`val`(name).number) as? XADD.XADDTNode
+                        ?: throw IllegalArgumentException("Illegal real constant $name")
+                return leaf._expr
             }
             if(op in arrayOf("*", "+")) {
-                return node.childNodes.map({astToInequality(it)}).joinToString(op)
+                val operation = if(op == "*") ExprLib.ArithOperation.PROD else ExprLib.ArithOperation.SUM
+                return ExprLib.OperExpr(operation, ArrayList(node.childNodes.map({astToExpression(it)})))
             }
             throw IllegalArgumentException("Operator $op could not be parsed as inequality")
         } else if (node is NestedParser.LeafNode) {
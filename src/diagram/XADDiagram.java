@@ -6,7 +6,9 @@ import pair.TypePair;
 import xadd.ExprLib;
 import xadd.XADD;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -14,6 +16,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 
 import static function.Architect.*;
 import static function.Functional.*;
@@ -34,45 +37,20 @@ public class XADDiagram {
 		R combine(R result1, R result2);
 	}
 
-	private static class IntegrationObserver implements NodeWalkerObserver<Set<String>, Double> {
-
-		private XADD xadd;
-		private Set<String> initial;
-
-		private IntegrationObserver(XADD xadd, Set<String> initial) {
-			this.xadd = xadd;
-			this.initial = initial;
-		}
-
-		@Override
-		public Set<String> getInitial() {
-			return initial;
-		}
-
-		@Override
-		public Double calculate(int nodeId, XADD.XADDTNode node, Set<String> state) {
-			return Math.pow(2, state.size()) * xadd.evaluate(nodeId, new HashMap<>(), new HashMap<>());
-		}
-
-		@Override
-		public TypePair<Set<String>> update(int nodeId, XADD.XADDINode node, Set<String> state) {
-			Set<String> copy = set(state);
-			if(!copy.remove(node.getDecision().toString())) {
-				throw new IllegalStateException("Removing non-existing variable");
-			}
-			return TypePair.make(copy, copy);
-		}
+	/**
+	 * Marks observers that can be used to walk a diagram in parallel, calculate, update and combine have to be
+	 * thread-safe and combine should be associative.
+	 */
+	interface ParallelObserver<S, R> extends NodeWalkerObserver<S, R> {
 
-		@Override
-		public Double combine(Double result1, Double result2) {
-			return result1 + result2;
-		}
 	}
 
 	// Data: number
 	public final XADD xadd;
 	public final int number;
 
+	private volatile CompiledDiagram compiled;
+
 	public XADDiagram(XADD context, int number) {
 		this.xadd = context;
 		this.number = number;
@@ -88,7 +66,7 @@ public class XADDiagram {
 	 * @return The resulting diagram
 	 */
 	public XADDiagram times(XADDiagram diagram) {
-		return xadd(xadd.apply(this.number, diagram.number, XADD.PROD));
+		return xadd(ApplyCache.of(xadd).apply(this.number, diagram.number, XADD.PROD));
 	}
 
 	/**
@@ -97,7 +75,7 @@ public class XADDiagram {
 	 * @return The resulting diagram
 	 */
 	public XADDiagram plus(XADDiagram diagram) {
-		return xadd(xadd.apply(this.number, diagram.number, XADD.SUM));
+		return xadd(ApplyCache.of(xadd).apply(this.number, diagram.number, XADD.SUM));
 	}
 
 	/**
@@ -106,7 +84,7 @@ public class XADDiagram {
 	 * @return The resulting diagram
 	 */
 	public XADDiagram min(XADDiagram diagram) {
-		return xadd(xadd.apply(this.number, diagram.number, XADD.MIN));
+		return xadd(ApplyCache.of(xadd).apply(this.number, diagram.number, XADD.MIN));
 	}
 
 	/**
@@ -115,7 +93,7 @@ public class XADDiagram {
 	 * @return The resulting diagram
 	 */
 	public XADDiagram max(XADDiagram diagram) {
-		return xadd(xadd.apply(this.number, diagram.number, XADD.MAX));
+		return xadd(ApplyCache.of(xadd).apply(this.number, diagram.number, XADD.MAX));
 	}
 
 	public double evaluate() {
@@ -144,9 +122,106 @@ public class XADDiagram {
 		return result;
 	}
 
+	/**
+	 * Compiles this diagram for fast repeated evaluation, the compiled diagram is created once and shared by all calls
+	 * @return	The compiled diagram
+	 */
+	public CompiledDiagram compile() {
+		CompiledDiagram result = compiled;
+		if(result == null) {
+			result = compile(Collections.emptyList(), Collections.emptyList());
+			compiled = result;
+		}
+		return result;
+	}
+
+	/**
+	 * Compiles this diagram for fast repeated evaluation
+	 * @param booleanVariables		The layout of boolean assignments (missing variables will be appended)
+	 * @param continuousVariables	The layout of continuous assignments (missing variables will be appended)
+	 * @return	The compiled diagram
+	 */
+	public CompiledDiagram compile(List<String> booleanVariables, List<String> continuousVariables) {
+		return new CompiledDiagram(this, booleanVariables, continuousVariables);
+	}
+
+	/**
+	 * Evaluates this diagram for a batch of assignments, using the compiled diagram (see compile())
+	 * @param assignments	The assignments, they have to assign all variables occurring in this diagram
+	 * @return	The results of the evaluation, in the same order as the assignments
+	 */
+	public double[] evaluate(List<Assignment> assignments) {
+		CompiledDiagram compiled = compile();
+		List<String> continuousVariables = compiled.getContinuousVariables();
+		List<String> booleanVariables = compiled.getBooleanVariables();
+		double[][] continuous = new double[continuousVariables.size()][assignments.size()];
+		boolean[][] booleans = new boolean[booleanVariables.size()][assignments.size()];
+		for(int row = 0; row < assignments.size(); row++) {
+			Assignment assignment = assignments.get(row);
+			for(int i = 0; i < continuous.length; i++) {
+				Double value = assignment.getDouble(continuousVariables.get(i));
+				if(value == null) {
+					throw new IllegalArgumentException("Missing assignment for variable " + continuousVariables.get(i));
+				}
+				continuous[i][row] = value;
+			}
+			for(int i = 0; i < booleans.length; i++) {
+				Boolean value = assignment.getBool(booleanVariables.get(i));
+				if(value == null) {
+					throw new IllegalArgumentException("Missing assignment for variable " + booleanVariables.get(i));
+				}
+				booleans[i][row] = value;
+			}
+		}
+		double[] result = new double[assignments.size()];
+		compiled.evaluate(continuous, booleans, result);
+		return result;
+	}
+
 	public Double integrate(List<String> booleanVariables, List<String> continuousVariables) {
 		int boolOnly = fold(this.number, xadd::computeDefiniteIntegral, continuousVariables);
-		return xadd(boolOnly).walk(new IntegrationObserver(xadd, set(booleanVariables)));
+		return countModels(boolOnly, booleanVariables);
+	}
+
+	/**
+	 * Computes the weighted model count of the given boolean diagram, i.e. its sum over all assignments to the given
+	 * boolean variables. Counts are memoized per node and variables skipped along an edge are accounted for by the
+	 * difference in the number of variables below either end, such that the cost is linear in the size of the diagram.
+	 * @param rootId			The id of the root node of a diagram with only boolean decisions
+	 * @param booleanVariables	The boolean variables to sum out
+	 * @return	The weighted model count
+	 */
+	private double countModels(int rootId, List<String> booleanVariables) {
+		SupportIndex supports = SupportIndex.of(xadd);
+		BitSet mask = new BitSet();
+		for(String variable : booleanVariables) {
+			mask.set(supports.getId(variable));
+		}
+
+		Map<Integer, Double> counts = new HashMap<>();
+		Map<Integer, Integer> levels = new HashMap<>();
+		for(int nodeId : DiagramWalker.postOrder(xadd, rootId)) {
+			XADD.XADDNode node = xadd.getNode(nodeId);
+			if(node instanceof XADD.XADDTNode) {
+				counts.put(nodeId, xadd.evaluate(nodeId, new HashMap<>(), new HashMap<>()));
+				levels.put(nodeId, 0);
+			} else {
+				XADD.XADDINode iNode = (XADD.XADDINode) node;
+				BitSet variables = supports.getDecisionVariables(iNode._var);
+				if(!(iNode.getDecision() instanceof XADD.BoolDec) || !mask.intersects(variables)) {
+					throw new IllegalStateException(format("Decision %s is not one of the boolean variables %s",
+							iNode.getDecision(), booleanVariables));
+				}
+				BitSet support = (BitSet) supports.getDecisionSupport(nodeId).clone();
+				support.and(mask);
+				int level = support.cardinality();
+				double low = Math.scalb(counts.get(iNode._low), level - 1 - levels.get(iNode._low));
+				double high = Math.scalb(counts.get(iNode._high), level - 1 - levels.get(iNode._high));
+				counts.put(nodeId, low + high);
+				levels.put(nodeId, level);
+			}
+		}
+		return Math.scalb(counts.get(rootId), mask.cardinality() - levels.get(rootId));
 	}
 
 	public XADDiagram getIntegratedDiagram(List<String> booleanVariables, List<String> continuousVariables) {
@@ -253,6 +328,29 @@ public class XADDiagram {
 		return new XADDiagram(xadd, result);
 	}
 
+	/**
+	 * Eliminate the given variables from this diagram and return the resulting diagram (using bound-resolve).
+	 * Rather than eliminating the variables in the given order, the next variable is chosen greedily before every step
+	 * @param variables	The variables to eliminate
+	 * @param types	The types of the variables
+	 * @return	The diagram in which the variables have been eliminated
+	 */
+	public XADDiagram eliminateVarsGreedy(List<String> variables, List<String> types) {
+		if(variables.size() != types.size()) {
+			throw new IllegalArgumentException(format("Diverging number of variables (%d) and types (%d)",
+					variables.size(), types.size()));
+		}
+		ResolveIntegration integrator = new ResolveIntegration(xadd);
+		SingleVariableIntegrator step = (diagram, variable) -> diagram.xadd(
+				integrator.integrate(diagram.number, variable.getName(), variable.isBool() ? "bool" : "real"));
+		List<Variable> typedVariables = new ArrayList<>(variables.size());
+		for(int i = 0; i < variables.size(); i++) {
+			String type = types.get(i).toLowerCase();
+			typedVariables.add(type.startsWith("bool") ? Variable.bool(variables.get(i)) : Variable.real(variables.get(i)));
+		}
+		return new GreedyEliminationIntegrator(step).integrate(this, typedVariables);
+	}
+
 	/**
 	 * Eliminate the given variables from this diagram and return the resulting diagram (using bound-resolve)
 	 * @param variables	The variables to eliminate
@@ -274,21 +372,6 @@ public class XADDiagram {
 		return new XADDiagram(xadd, result);
 	}
 
-	private Double evaluateIntegration(Set<String> variables, int nodeId) {
-		XADD.XADDNode node = xadd.getNode(nodeId);
-		if(node instanceof XADD.XADDTNode) {
-			return Math.pow(2, variables.size()) * xadd.evaluate(nodeId, new HashMap<>(), new HashMap<>());
-		} else if(node instanceof XADD.XADDINode) {
-			XADD.XADDINode iNode = (XADD.XADDINode) node;
-			if(!variables.remove(iNode.getDecision().toString())) {
-				throw new IllegalStateException("Removing non-existing variable");
-			}
-			return evaluateIntegration(set(variables), iNode._high) + evaluateIntegration(set(variables), iNode._low);
-		} else {
-			throw new IllegalStateException("Unexpected structural error");
-		}
-	}
-
 	public XADDiagram evaluatePartial(Map<String, Boolean> booleanVariables, Map<String, Double> continuousVariables) {
 		int temp = xadd.substituteBoolVars(this.number, new HashMap<>(booleanVariables));
 		return xadd(xadd.substitute(temp, map(ExprLib.DoubleExpr::new, continuousVariables)));
@@ -315,12 +398,20 @@ public class XADDiagram {
 		return 0.0;
 	}*/
 
+	/**
+	 * Registers this diagram as root of its context, such that it survives compaction of the context
+	 * @return	The handle of the root, to be closed once the diagram is no longer used
+	 */
+	public RootRegistry.Handle retain() {
+		return RootRegistry.of(xadd).retain(number);
+	}
+
 	public XADDiagram reduce() {
-		return xadd(xadd.reduce(this.number));
+		return xadd(ApplyCache.of(xadd).reduce(this.number));
 	}
 
 	public XADDiagram reduceLp() {
-		return xadd(xadd.reduceLP(this.number));
+		return xadd(ApplyCache.of(xadd).reduceLP(this.number));
 	}
 
 	public Double maxValue() {
@@ -332,7 +423,8 @@ public class XADDiagram {
 		//OptimizationObserver.ValuedAssignment valuedAssignment = this.walk(new OptimizationObserver(false, this));
 		//return valuedAssignment.assignment;
 		// return this.walk(new Optimization(false, () -> new LinearGLPKSolver(getContinuous()))).assignment;
-		return this.walk(new Optimization(false, () -> new JOptSolver(getContinuous()))).assignment;
+		Set<String> continuous = getContinuous();
+		return this.walkParallel(new Optimization(false, () -> new JOptSolver(continuous))).assignment;
 	}
 
 	private Assignment.Valued<Double> maxAssignment() {
@@ -345,22 +437,54 @@ public class XADDiagram {
 	 * @return	The result as aggregated by the observer
 	 */
 	public <S, R> R walk(NodeWalkerObserver<S, R> observer) {
-		return walk(xadd, this.number, observer, observer.getInitial());
+		return DiagramWalker.walk(xadd, this.number, observer, observer.getInitial(), DiagramWalker.Memoization.NONE);
 	}
 
-	private static <S, R> R walk(XADD xadd, int nodeId, NodeWalkerObserver<S, R> observer, S state) {
-		XADD.XADDNode node = xadd.getNode(nodeId);
-		if(node instanceof XADD.XADDTNode) {
-			return observer.calculate(nodeId, (XADD.XADDTNode) node, state);
-		} else if(node instanceof XADD.XADDINode) {
-			XADD.XADDINode iNode = (XADD.XADDINode) node;
-			TypePair<S> pair = observer.update(nodeId, iNode, state);
-			return observer.combine(walk(xadd, iNode._low, observer, pair.one()), walk(xadd, iNode._high, observer, pair.two()));
-		} else {
-			throw new IllegalStateException("Unexpected structural error");
+	/**
+	 * Walk this XADD with the given observer, sub-diagrams in the top levels of the diagram are walked in parallel.
+	 * Small diagrams (see DiagramWalker.PARALLEL_SIZE) are walked sequentially.
+	 * @param observer	The observer
+	 * @return	The result as aggregated by the observer
+	 */
+	public <S, R> R walkParallel(ParallelObserver<S, R> observer) {
+		if(DiagramWalker.countNodes(xadd, number, DiagramWalker.PARALLEL_SIZE) < DiagramWalker.PARALLEL_SIZE) {
+			return walk(observer);
 		}
+		return walkParallel(observer, DiagramWalker.PARALLEL_DEPTH, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Walk this XADD with the given observer, sub-diagrams in the top levels of the diagram are walked in parallel
+	 * @param observer	The observer
+	 * @param depth		The number of levels in which the low and high branches are forked
+	 * @param pool		The pool to execute the walk in
+	 * @return	The result as aggregated by the observer
+	 */
+	public <S, R> R walkParallel(ParallelObserver<S, R> observer, int depth, ForkJoinPool pool) {
+		return DiagramWalker.walkParallel(xadd, this.number, observer, observer.getInitial(), depth, pool);
 	}
 
+	/**
+	 * Walk this XADD with the given observer, visiting every node only once. The result of a node is computed using
+	 * the state of the first path that reaches it and is reused for all other paths, therefore this walk should only
+	 * be used for observers whose results do not depend on the state.
+	 * @param observer	The observer
+	 * @return	The result as aggregated by the observer
+	 */
+	public <S, R> R walkShared(NodeWalkerObserver<S, R> observer) {
+		return DiagramWalker.walk(xadd, this.number, observer, observer.getInitial(), DiagramWalker.Memoization.NODE);
+	}
+
+	/**
+	 * Walk this XADD with the given observer, memoizing results on the node and the state with which it is reached.
+	 * States should implement equals and hashCode.
+	 * @param observer	The observer
+	 * @return	The result as aggregated by the observer
+	 */
+	public <S, R> R walkMemoized(NodeWalkerObserver<S, R> observer) {
+		return DiagramWalker.walk(xadd, this.number, observer, observer.getInitial(),
+				DiagramWalker.Memoization.NODE_STATE);
+	}
 
 	/**
 	 * Shows this diagram with the given title.
@@ -387,58 +511,10 @@ public class XADDiagram {
 	}
 
 	public Set<String> getDiscrete() {
-		return walk(new NodeWalkerObserver<HashSet<String>, HashSet<String>>() {
-			@Override
-			public HashSet<String> getInitial() {
-				return new HashSet<>();
-			}
-
-			@Override
-			public HashSet<String> calculate(int nodeId, XADD.XADDTNode node, HashSet<String> state) {
-				return state;
-			}
-
-			@Override
-			public TypePair<HashSet<String>> update(int nodeId, XADD.XADDINode node, HashSet<String> state) {
-				if(node.getDecision() instanceof XADD.BoolDec) {
-					node.getDecision().collectVars(state);
-				}
-				return TypePair.make(state, state);
-			}
-
-			@Override
-			public HashSet<String> combine(HashSet<String> result1, HashSet<String> result2) {
-				result1.addAll(result2);
-				return result1;
-			}
-		});
+		return SupportIndex.of(xadd).getBooleanVariables(number);
 	}
 
 	public Set<String> getContinuous() {
-		return walk(new NodeWalkerObserver<HashSet<String>, HashSet<String>>() {
-			@Override
-			public HashSet<String> getInitial() {
-				return new HashSet<>();
-			}
-
-			@Override
-			public HashSet<String> calculate(int nodeId, XADD.XADDTNode node, HashSet<String> state) {
-				return state;
-			}
-
-			@Override
-			public TypePair<HashSet<String>> update(int nodeId, XADD.XADDINode node, HashSet<String> state) {
-				if(!(node.getDecision() instanceof XADD.BoolDec)) {
-					node.getDecision().collectVars(state);
-				}
-				return TypePair.make(state, state);
-			}
-
-			@Override
-			public HashSet<String> combine(HashSet<String> result1, HashSet<String> result2) {
-				result1.addAll(result2);
-				return result1;
-			}
-		});
+		return SupportIndex.of(xadd).getContinuousVariables(number);
 	}
 }
@@ -0,0 +1,68 @@
+package diagram
+
+import org.junit.Assert
+import org.junit.Test
+import xadd.XADD
+
+/**
+ * Tests the ApplyCache class
+ *
+ * @author Samuel Kolb
+ */
+class ApplyCacheTest {
+
+    private fun getDiagrams(builder: XADDBuild.Builder): List<XADDiagram> {
+        return (0 until 6).map { builder.test("x <= $it").assignWeights(builder.`val`(it), builder.`val`("x + y")) }
+    }
+
+    @Test
+    fun testApply_SameAsContext() {
+        val context = XADD()
+        val cache = ApplyCache.of(context)
+        val diagrams = getDiagrams(XADDBuild.builder(context))
+        for(operation in listOf(XADD.SUM, XADD.PROD, XADD.MAX, XADD.MINUS)) {
+            for(d1 in diagrams) {
+                for(d2 in diagrams) {
+                    val expected = context.apply(d1.number, d2.number, operation)
+                    Assert.assertEquals(expected, cache.apply(d1.number, d2.number, operation))
+                    // Cached
+                    Assert.assertEquals(expected, cache.apply(d1.number, d2.number, operation))
+                }
+            }
+        }
+        Assert.assertTrue(cache.hits > 0)
+    }
+
+    @Test
+    fun testCapacity_Evicts() {
+        val context = XADD()
+        val cache = ApplyCache.of(context)
+        cache.capacity = 8
+        Assert.assertEquals(8, cache.capacity)
+        val diagrams = getDiagrams(XADDBuild.builder(context))
+        for(d1 in diagrams) {
+            for(d2 in diagrams) {
+                Assert.assertEquals(context.apply(d1.number, d2.number, XADD.MINUS),
+                        cache.apply(d1.number, d2.number, XADD.MINUS))
+            }
+        }
+        Assert.assertTrue(cache.evictions > 0)
+
+        // The most recent result is cached
+        val result = cache.apply(diagrams[0].number, diagrams[1].number, XADD.MINUS)
+        val misses = cache.misses
+        Assert.assertEquals(result, cache.apply(diagrams[0].number, diagrams[1].number, XADD.MINUS))
+        Assert.assertEquals(misses, cache.misses)
+    }
+
+    @Test
+    fun testContextLimit_Flushes() {
+        val context = XADD()
+        val cache = ApplyCache.of(context)
+        cache.contextLimit = 0
+        val diagrams = getDiagrams(XADDBuild.builder(context))
+        cache.apply(diagrams[0].number, diagrams[1].number, XADD.SUM)
+        Assert.assertTrue(cache.contextFlushes > 0)
+        Assert.assertEquals(0, context._hmApplyCache.size)
+    }
+}
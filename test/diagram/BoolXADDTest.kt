@@ -23,6 +23,26 @@ class BoolXADDTest {
         compareVolumes(bounds, formula, listOf("a"), listOf("x"))
     }
 
+    @Test
+    fun testXorImplies_SameAsDerived() {
+        val builder = XADDBuild.builder(XADD())
+        val bounds = builder.test("x >= 0").and(builder.test("x <= 10"))
+        val a = builder.bool("a")
+        val b = builder.test("x <= 5")
+
+        val xorVolume = volume(bounds.and(a.xor(b)), listOf("a"), listOf("x"))
+        val derivedXorVolume = volume(bounds.and(a.and(b.not()).or(a.not().and(b))), listOf("a"), listOf("x"))
+        Assert.assertEquals(xorVolume, derivedXorVolume, DELTA)
+
+        val impliesVolume = volume(bounds.and(a.implies(b)), listOf("a"), listOf("x"))
+        val derivedImpliesVolume = volume(bounds.and(a.not().or(b)), listOf("a"), listOf("x"))
+        Assert.assertEquals(impliesVolume, derivedImpliesVolume, DELTA)
+    }
+
+    private fun volume(diagram: BoolXADD, boolVars: List<String>, realVars: List<String>): Double {
+        return diagram.eliminateBoolVars(boolVars).eliminateRealVars(realVars).evaluate()
+    }
+
     private fun compareVolumes(bounds: BoolXADD, formula: BoolXADD, boolVars: List<String>, realVars: List<String>) {
         val totalVolume = bounds.eliminateBoolVars(boolVars).eliminateRealVars(realVars).evaluate()
         val originalVolume = bounds.and(formula).eliminateBoolVars(boolVars).eliminateRealVars(realVars).evaluate()
@@ -0,0 +1,62 @@
+package diagram
+
+import org.junit.Assert
+import org.junit.Test
+import xadd.ExprLib
+import xadd.XADD
+
+/**
+ * Tests the BooleanIndex class
+ *
+ * @author Samuel Kolb
+ */
+class BooleanIndexTest {
+
+    /**
+     * Checks (without index) if all leaves of the diagram rooted at the given node are 0 or 1
+     */
+    private fun isBool(context: XADD, nodeId: Int): Boolean {
+        return DiagramWalker.postOrder(context, nodeId).all {
+            val node = context.getNode(it)
+            val value = ((node as? XADD.XADDTNode)?._expr as? ExprLib.DoubleExpr)?._dConstVal
+            node is XADD.XADDINode || value == 0.0 || value == 1.0
+        }
+    }
+
+    private fun getDiagrams(builder: XADDBuild.Builder): List<XADDiagram> {
+        val a = builder.bool("a")
+        val test = builder.test("x <= 2")
+        return listOf(a, test, a.and(test), a.or(test.not()), a.plus(test), a.times(test),
+                test.times(builder.`val`("x")), builder.`val`(1), builder.`val`(0), builder.`val`(0.5),
+                a.assignWeights(builder.`val`(1), builder.`val`(2)))
+    }
+
+    @Test
+    fun testIsBool_SameAsLeaves() {
+        val context = XADD()
+        val index = BooleanIndex.of(context)
+        for(diagram in getDiagrams(XADDBuild.builder(context))) {
+            // Sub-diagrams are indexed along the way
+            for(nodeId in DiagramWalker.postOrder(context, diagram.number).reversed()) {
+                Assert.assertEquals(isBool(context, nodeId), index.isBool(nodeId))
+            }
+        }
+    }
+
+    @Test
+    fun testConvert() {
+        val builder = XADDBuild.builder(XADD())
+        for(diagram in getDiagrams(builder)) {
+            if(isBool(diagram.xadd, diagram.number)) {
+                Assert.assertEquals(diagram.number, BoolXADD.convert(diagram).number)
+            } else {
+                try {
+                    BoolXADD.convert(diagram)
+                    Assert.fail("Non-boolean diagram should not be converted")
+                } catch(e: IllegalArgumentException) {
+                    // Expected
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package diagram
+
+import org.junit.Assert
+import org.junit.Test
+import xadd.XADD
+
+/**
+ * Tests the CompiledDiagram class
+ *
+ * @author Samuel Kolb
+ */
+class CompiledDiagramTest {
+
+    private val DELTA = 0.000001
+
+    private fun getDiagram(builder: XADDBuild.Builder): XADDiagram {
+        val bounds = builder.test("x >= 0").and(builder.test("x <= 10")).and(builder.test("y >= 0"))
+                .and(builder.test("y <= 10"))
+        val inner = builder.test("x + 2 * y <= 12").assignWeights(builder.`val`("x * y + 3"), builder.`val`("2 * x"))
+        return bounds.times(builder.bool("a").assignWeights(inner, builder.`val`("y - 1")))
+    }
+
+    @Test
+    fun testEvaluate_SameAsDiagram() {
+        val builder = XADDBuild.builder(XADD())
+        val diagram = getDiagram(builder)
+        val compiled = diagram.compile(listOf("a"), listOf("x", "y"))
+
+        val continuous = DoubleArray(2)
+        val booleans = BooleanArray(1)
+        for(a in listOf(true, false)) {
+            for(x in -1..11) {
+                for(y in -1..11) {
+                    val assignment = Assignment().setBool("a", a).setReal("x", x.toDouble()).setReal("y", y.toDouble())
+                    continuous[compiled.getContinuousIndex("x")] = x.toDouble()
+                    continuous[compiled.getContinuousIndex("y")] = y.toDouble()
+                    booleans[compiled.getBooleanIndex("a")] = a
+                    Assert.assertEquals(diagram.evaluate(assignment), compiled.evaluate(continuous, booleans), DELTA)
+                    Assert.assertEquals(diagram.evaluate(assignment), compiled.evaluate(assignment), DELTA)
+                }
+            }
+        }
+    }
+
+    @Test
+    fun testEvaluateBatch_SameAsDiagram() {
+        val builder = XADDBuild.builder(XADD())
+        val diagram = getDiagram(builder)
+        val assignments = ArrayList<Assignment>()
+        for(a in listOf(true, false)) {
+            for(x in -1..11) {
+                for(y in -1..11) {
+                    assignments.add(Assignment().setBool("a", a).setReal("x", x.toDouble()).setReal("y", y.toDouble()))
+                }
+            }
+        }
+        val results = diagram.evaluate(assignments)
+        for(i in assignments.indices) {
+            Assert.assertEquals(diagram.evaluate(assignments[i]), results[i], DELTA)
+        }
+    }
+
+    @Test
+    fun testCompile_Cached() {
+        val builder = XADDBuild.builder(XADD())
+        val diagram = getDiagram(builder)
+        Assert.assertSame(diagram.compile(), diagram.compile())
+    }
+}
@@ -0,0 +1,82 @@
+package diagram
+
+import org.junit.Assert
+import org.junit.Test
+import xadd.XADD
+import java.util.Collections
+import java.util.IdentityHashMap
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Tests the ContextPool class
+ *
+ * @author Samuel Kolb
+ */
+class ContextPoolTest {
+
+    private val DELTA = 0.000001
+
+    private fun volume(builder: XADDBuild.Builder, upper: Int): Double {
+        val bounds = builder.test("x >= 0").and(builder.test("x <= $upper"))
+        return bounds.times(builder.`val`("x")).eliminateRealVars("x").evaluate()
+    }
+
+    @Test
+    fun testExecute_ExclusiveContexts() {
+        val created = AtomicInteger()
+        val pool = ContextPool(2) { created.incrementAndGet(); XADD() }
+        val inUse = Collections.synchronizedSet(Collections.newSetFromMap(IdentityHashMap<XADD, Boolean>()))
+        val conflicts = AtomicInteger()
+        val executor = Executors.newFixedThreadPool(8)
+        val results = (1..32).map { upper ->
+            executor.submit<Double> {
+                pool.execute { context ->
+                    if(!inUse.add(context)) {
+                        conflicts.incrementAndGet()
+                    }
+                    try {
+                        volume(XADDBuild.builder(context), upper)
+                    } finally {
+                        inUse.remove(context)
+                    }
+                }
+            }
+        }
+        for((i, result) in results.withIndex()) {
+            val upper = i + 1
+            Assert.assertEquals(upper * upper / 2.0, result.get(), DELTA)
+        }
+        executor.shutdown()
+        executor.awaitTermination(1, TimeUnit.MINUTES)
+        Assert.assertEquals(0, conflicts.get())
+        Assert.assertTrue(created.get() <= 2)
+    }
+
+    @Test
+    fun testLease_Closed() {
+        val pool = ContextPool(1)
+        val lease = pool.acquire()
+        val context = lease.context
+        lease.close()
+        try {
+            lease.context
+            Assert.fail("Closed lease should not give access to its context")
+        } catch(e: IllegalStateException) {
+            // Expected
+        }
+        pool.acquire().use { Assert.assertSame(context, it.context) }
+    }
+
+    @Test
+    fun testDefaultBuilder_PerThread() {
+        val context = XADDBuild.bool("a").xadd
+        Assert.assertSame(context, XADDBuild.bool("b").xadd)
+        var other: XADD? = null
+        val thread = Thread { other = XADDBuild.bool("a").xadd }
+        thread.start()
+        thread.join()
+        Assert.assertNotSame(context, other)
+    }
+}
@@ -0,0 +1,170 @@
+package diagram
+
+import build.Factory
+import org.junit.Assert
+import org.junit.Test
+import pair.TypePair
+import solving.JOptSolver
+import xadd.XADD
+import java.util.concurrent.ForkJoinPool
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Tests the DiagramWalker class
+ *
+ * @author Samuel Kolb
+ */
+class DiagramWalkerTest {
+
+    /**
+     * Counts paths, the state is the number of high edges taken and leaves contribute that number as weight
+     */
+    private class PathObserver(val weighted: Boolean) : XADDiagram.NodeWalkerObserver<Int, Int> {
+        var calculations = 0
+
+        override fun getInitial() = 0
+
+        override fun calculate(nodeId: Int, node: XADD.XADDTNode, state: Int): Int {
+            calculations++
+            return if(weighted) state else 1
+        }
+
+        override fun update(nodeId: Int, node: XADD.XADDINode, state: Int): TypePair<Int> {
+            return TypePair.make(state, state + 1)
+        }
+
+        override fun combine(result1: Int, result2: Int) = result1 + result2
+    }
+
+    /**
+     * Thread-safe version of the path observer
+     */
+    private class ParallelPathObserver : XADDiagram.ParallelObserver<Int, Int> {
+        val calculations = AtomicInteger()
+
+        override fun getInitial() = 0
+
+        override fun calculate(nodeId: Int, node: XADD.XADDTNode, state: Int): Int {
+            calculations.incrementAndGet()
+            return state
+        }
+
+        override fun update(nodeId: Int, node: XADD.XADDINode, state: Int): TypePair<Int> {
+            return TypePair.make(state, state + 1)
+        }
+
+        override fun combine(result1: Int, result2: Int) = result1 + result2
+    }
+
+    /**
+     * Builds a chain of boolean decisions, every decision leads to 0 if false and to the next decision if true
+     */
+    private fun getChain(context: XADD, depth: Int): Int {
+        val decisions = (0 until depth).map { context.getVarIndex(context.BoolDec("v$it"), true) }
+        var nodeId = context.ONE
+        for(decision in decisions.asReversed()) {
+            nodeId = context.getINode(decision, context.ZERO, nodeId)
+        }
+        return nodeId
+    }
+
+    private fun getDiagram(builder: XADDBuild.Builder): XADDiagram {
+        return builder.sum(listOf(builder.bool("a"), builder.bool("b"), builder.bool("c")))
+    }
+
+    @Test
+    fun testWalk_AllPaths() {
+        val diagram = getDiagram(XADDBuild.builder(XADD()))
+        val observer = PathObserver(false)
+        Assert.assertEquals(8, diagram.walk(observer))
+        Assert.assertEquals(8, observer.calculations)
+    }
+
+    @Test
+    fun testWalkShared_SameAsWalk() {
+        val diagram = getDiagram(XADDBuild.builder(XADD()))
+        val observer = PathObserver(false)
+        Assert.assertEquals(diagram.walk(PathObserver(false)), diagram.walkShared(observer))
+        // Only the leaves 0, 1, 2 and 3 are calculated
+        Assert.assertEquals(4, observer.calculations)
+    }
+
+    @Test
+    fun testWalkMemoized_SameAsWalk() {
+        val diagram = getDiagram(XADDBuild.builder(XADD()))
+        val observer = PathObserver(true)
+        Assert.assertEquals(diagram.walk(PathObserver(true)), diagram.walkMemoized(observer))
+        Assert.assertEquals(12, diagram.walkMemoized(PathObserver(true)))
+        Assert.assertEquals(4, observer.calculations)
+    }
+
+    @Test
+    fun testWalk_DeepDiagram() {
+        val context = XADD()
+        val depth = 20000
+        val observer = PathObserver(false)
+        Assert.assertEquals(depth + 1, XADDiagram(context, getChain(context, depth)).walk(observer))
+        Assert.assertEquals(depth + 1, observer.calculations)
+    }
+
+    @Test
+    fun testPostOrder_ChildrenFirst() {
+        val context = XADD()
+        val depth = 20000
+        val order = DiagramWalker.postOrder(context, getChain(context, depth))
+        Assert.assertEquals(depth + 2, order.size)
+        Assert.assertEquals(order.size, order.toSet().size)
+        val positions = order.withIndex().associate { Pair(it.value, it.index) }
+        for(nodeId in order) {
+            val node = context.getNode(nodeId)
+            if(node is XADD.XADDINode) {
+                Assert.assertTrue(positions[node._low]!! < positions[nodeId]!!)
+                Assert.assertTrue(positions[node._high]!! < positions[nodeId]!!)
+            }
+        }
+    }
+
+    @Test
+    fun testCountNodes_Bounded() {
+        val context = XADD()
+        val depth = 100
+        val rootId = getChain(context, depth)
+        Assert.assertEquals(depth + 2, DiagramWalker.countNodes(context, rootId, Int.MAX_VALUE - 1))
+        Assert.assertEquals(depth + 2, DiagramWalker.countNodes(context, rootId, depth + 2))
+        Assert.assertEquals(11, DiagramWalker.countNodes(context, rootId, 10))
+    }
+
+    @Test
+    fun testWalkParallel_SameAsWalk() {
+        val builder = XADDBuild.builder(XADD())
+        val diagram = builder.sum((0 until 8).map { builder.bool("v$it") })
+        val pool = ForkJoinPool(4)
+        for(depth in listOf(0, 1, 3, 8, 20)) {
+            val observer = ParallelPathObserver()
+            Assert.assertEquals(diagram.walk(PathObserver(true)), diagram.walkParallel(observer, depth, pool))
+            Assert.assertEquals(256, observer.calculations.get())
+        }
+        pool.shutdown()
+    }
+
+    @Test
+    fun testWalkParallel_Optimization() {
+        val builder = XADDBuild.builder(XADD())
+        val bounds = builder.and(listOf(builder.test("x >= 0"), builder.test("x <= 10"), builder.test("y >= 0"),
+                builder.test("y <= 10")))
+        val inner = builder.test("x + 2 * y <= 12").assignWeights(builder.`val`("x + y + 3"), builder.`val`("2 * x"))
+        val diagram = bounds.assignWeights(builder.bool("a").assignWeights(inner, builder.`val`("y - 1")),
+                builder.`val`(0))
+        val continuous = diagram.continuous
+
+        val sequential = Optimization(false, Factory { JOptSolver(continuous) })
+        val expected = diagram.walk(sequential)
+        // Solvers are reused between leaves
+        Assert.assertEquals(1, sequential.solverCount)
+
+        val pool = ForkJoinPool(4)
+        val parallel = diagram.walkParallel(Optimization(false, Factory { JOptSolver(continuous) }), 8, pool)
+        pool.shutdown()
+        Assert.assertEquals(expected.value, parallel.value, 0.000001)
+    }
+}
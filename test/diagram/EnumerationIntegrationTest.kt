@@ -0,0 +1,93 @@
+package diagram
+
+import org.junit.Assert
+import org.junit.Test
+import xadd.XADD
+
+/**
+ * Tests the EnumerationIntegration class
+ *
+ * @author Samuel Kolb
+ */
+class EnumerationIntegrationTest {
+
+    private val DELTA = 0.000001
+
+    private fun getAssignments(): List<Assignment> {
+        val assignments = ArrayList<Assignment>()
+        for(a in listOf(true, false)) {
+            for(y in -3..12) {
+                for(z in -3..12) {
+                    assignments.add(Assignment().setBool("a", a).setReal("y", y * 0.75).setReal("z", z * 0.75))
+                }
+            }
+        }
+        return assignments
+    }
+
+    /**
+     * Integrates the given variable out of the given diagram with both enumeration and bound-resolve and compares
+     * the results
+     */
+    private fun assertSameAsResolve(diagram: XADDiagram, variable: String, type: String) {
+        val context = diagram.xadd
+        val expected = XADDiagram(context, ResolveIntegration(context).integrate(diagram.number, variable, type))
+        val actual = XADDiagram(context, EnumerationIntegration(context).integrate(diagram.number, variable, type))
+        for(assignment in getAssignments()) {
+            Assert.assertEquals(assignment.toString(), expected.evaluate(assignment), actual.evaluate(assignment), DELTA)
+        }
+    }
+
+    @Test
+    fun testNumericBounds() {
+        val builder = XADDBuild.builder(XADD())
+        val bounds = builder.and(listOf(builder.test("x >= 1"), builder.test("x <= 4"), builder.test("x <= 6")))
+        assertSameAsResolve(bounds.times(builder.`val`("x + 2")), "x", "real")
+        assertSameAsResolve(bounds.times(builder.bool("a").assignWeights(builder.`val`("x * x"),
+                builder.`val`(3))), "x", "real")
+    }
+
+    @Test
+    fun testNumericBounds_EmptyInterval() {
+        val builder = XADDBuild.builder(XADD())
+        // ub <= lb: the integral is 0 rather than negative
+        val empty = builder.test("x >= 5").and(builder.test("x <= 2")).times(builder.`val`("x"))
+        assertSameAsResolve(empty, "x", "real")
+        val point = builder.test("x >= 3").and(builder.test("x <= 3")).times(builder.`val`(7))
+        assertSameAsResolve(point, "x", "real")
+    }
+
+    @Test
+    fun testMixedBounds() {
+        val builder = XADDBuild.builder(XADD())
+        val bounds = builder.and(listOf(builder.test("x >= 0"), builder.test("x <= 8"), builder.test("x <= y"),
+                builder.test("x >= z")))
+        assertSameAsResolve(bounds.times(builder.`val`("x + y")), "x", "real")
+    }
+
+    @Test
+    fun testRepeatedSymbolicBounds() {
+        val builder = XADDBuild.builder(XADD())
+        // The same symbolic bound occurs on several paths and ties with a numeric bound for y = 4
+        val bounds = builder.and(listOf(builder.test("x >= 0"), builder.test("x <= y"), builder.test("x <= 4")))
+        val diagram = builder.bool("a").assignWeights(bounds.times(builder.`val`("2 * x")),
+                bounds.and(builder.test("x <= y")).times(builder.`val`(1)))
+        assertSameAsResolve(diagram, "x", "real")
+        val tied = builder.and(listOf(builder.test("x >= z"), builder.test("x >= z"), builder.test("x <= y"),
+                builder.test("x <= z + 3")))
+        assertSameAsResolve(tied.times(builder.`val`("x")), "x", "real")
+    }
+
+    @Test
+    fun testBooleanVariable() {
+        val builder = XADDBuild.builder(XADD())
+        val bounds = builder.test("y >= 0").and(builder.test("y <= 5"))
+        val diagram = bounds.times(builder.bool("b").assignWeights(builder.`val`("y"), builder.`val`(2)))
+        val context = diagram.xadd
+        val expected = XADDiagram(context, ResolveIntegration(context).integrate(diagram.number, "b", "bool"))
+        val actual = EnumerationIntegration(context).integrate(diagram, Variable.bool("b"))
+        for(assignment in getAssignments()) {
+            Assert.assertEquals(expected.evaluate(assignment), actual.evaluate(assignment), DELTA)
+        }
+    }
+}
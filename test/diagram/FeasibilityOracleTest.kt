@@ -0,0 +1,180 @@
+package diagram
+
+import org.junit.Assert
+import org.junit.Test
+import xadd.XADD
+
+/**
+ * Tests the FeasibilityOracle class
+ *
+ * @author Samuel Kolb
+ */
+class FeasibilityOracleTest {
+
+    private val DELTA = 0.000001
+
+    private fun getDecision(test: XADDiagram): Int {
+        return (test.xadd.getNode(test.number) as XADD.XADDINode)._var
+    }
+
+    private fun getAssignments(): List<Assignment> {
+        val assignments = ArrayList<Assignment>()
+        for(a in listOf(true, false)) {
+            for(x in -6..14) {
+                for(y in -2..8) {
+                    assignments.add(Assignment().setBool("a", a).setReal("x", x * 0.75).setReal("y", y + 0.5))
+                }
+            }
+        }
+        return assignments
+    }
+
+    @Test
+    fun testPushPop() {
+        val context = XADD()
+        val builder = XADDBuild.builder(context)
+        val low = getDecision(builder.test("x <= 5"))
+        val high = getDecision(builder.test("x >= 7"))
+        val oracle = FeasibilityOracle.of(context)
+        Assert.assertTrue(oracle.push(low, true))
+        Assert.assertEquals(1, oracle.depth)
+        Assert.assertFalse(oracle.isFeasible(high, true))
+        Assert.assertTrue(oracle.isFeasible(high, false))
+        Assert.assertFalse(oracle.push(high, true))
+        Assert.assertFalse(oracle.isFeasible)
+        oracle.pop()
+        Assert.assertTrue(oracle.isFeasible)
+        oracle.pop()
+        Assert.assertEquals(0, oracle.depth)
+        Assert.assertTrue(oracle.isFeasible(high, true))
+        try {
+            oracle.pop()
+            Assert.fail("Popping from an empty path should fail")
+        } catch(e: IllegalStateException) {
+            // Expected
+        }
+    }
+
+    @Test
+    fun testWitness_Reused() {
+        val context = XADD()
+        val builder = XADDBuild.builder(context)
+        val lower = getDecision(builder.test("x >= 0"))
+        val upper = getDecision(builder.test("x <= 10"))
+        val oracle = FeasibilityOracle.of(context)
+        Assert.assertTrue(oracle.push(lower, true))
+        val witnessHits = oracle.witnessHits
+        // The witness x = 0 of the parent path satisfies x <= 10
+        Assert.assertTrue(oracle.push(upper, true))
+        Assert.assertEquals(witnessHits + 1, oracle.witnessHits)
+    }
+
+    @Test
+    fun testInference_Subset() {
+        val context = XADD()
+        val builder = XADDBuild.builder(context)
+        val low = getDecision(builder.test("x <= 5"))
+        val other = getDecision(builder.test("y >= 0"))
+        val high = getDecision(builder.test("x >= 7"))
+        val oracle = FeasibilityOracle.of(context)
+        oracle.push(low, true)
+        Assert.assertFalse(oracle.isFeasible(high, true))
+        oracle.push(other, true)
+        val inferred = oracle.inferred
+        // {x <= 5, y >= 0, x >= 7} contains the infeasible subset {x <= 5, x >= 7}
+        Assert.assertFalse(oracle.isFeasible(high, true))
+        Assert.assertEquals(inferred + 1, oracle.inferred)
+    }
+
+    @Test
+    fun testInference_Superset() {
+        val context = XADD()
+        val builder = XADDBuild.builder(context)
+        val x = getDecision(builder.test("x >= 5"))
+        val y = getDecision(builder.test("y >= 5"))
+        val sum = getDecision(builder.test("x + y >= 12"))
+        val oracle = FeasibilityOracle.of(context)
+        Assert.assertTrue(oracle.push(x, true))
+        Assert.assertTrue(oracle.push(y, true))
+        Assert.assertTrue(oracle.push(sum, true))
+
+        val other = FeasibilityOracle.of(context)
+        val inferred = other.inferred
+        // {y >= 5} is a subset of the feasible set {x >= 5, y >= 5, x + y >= 12}
+        Assert.assertTrue(other.push(y, true))
+        Assert.assertEquals(inferred + 1, other.inferred)
+        // The witness of the superset also satisfies x + y >= 12
+        val witnessHits = other.witnessHits
+        Assert.assertTrue(other.push(sum, true))
+        Assert.assertEquals(witnessHits + 1, other.witnessHits)
+    }
+
+    @Test
+    fun testCapacity_EvictsLeastRecentlyUsed() {
+        val context = XADD()
+        val builder = XADDBuild.builder(context)
+        val first = getDecision(builder.test("x >= 5"))
+        val second = getDecision(builder.test("y <= 3"))
+        val oracle = FeasibilityOracle.of(context)
+        oracle.isFeasible(first, true)
+        oracle.isFeasible(first, true)
+        Assert.assertEquals(1, oracle.memoHits)
+
+        oracle.setCapacity(1)
+        oracle.isFeasible(second, true)
+        // The result for {x >= 5} was evicted to make room for {y <= 3}
+        oracle.isFeasible(first, true)
+        Assert.assertEquals(1, oracle.memoHits)
+        Assert.assertEquals(3, oracle.intervalDecided)
+    }
+
+    @Test
+    fun testInterval_WithoutLp() {
+        val context = XADD()
+        val builder = XADDBuild.builder(context)
+        val decisions = listOf("x >= 0", "x <= 10", "y >= 2", "y <= 1", "x >= 3").map { getDecision(builder.test(it)) }
+        val oracle = FeasibilityOracle.of(context)
+        Assert.assertTrue(oracle.push(decisions[0], true))
+        Assert.assertTrue(oracle.push(decisions[1], true))
+        Assert.assertTrue(oracle.push(decisions[2], true))
+        Assert.assertFalse(oracle.isFeasible(decisions[3], true))
+        Assert.assertTrue(oracle.isFeasible(decisions[4], false))
+        Assert.assertTrue(oracle.intervalDecided > 0)
+        Assert.assertEquals(0, oracle.lpSolves)
+    }
+
+    @Test
+    fun testPolynomial_NotPruned() {
+        val context = XADD()
+        val builder = XADDBuild.builder(context)
+        val bound = getDecision(builder.test("x >= 2"))
+        val square = getDecision(builder.test("x * x <= 1"))
+        val polynomial = getDecision(builder.test("x * x - x <= -0.1"))
+        val oracle = FeasibilityOracle.of(context)
+        // Non-linear decisions are ignored rather than approximated by a linear constraint
+        Assert.assertTrue(oracle.isFeasible(polynomial, true))
+        Assert.assertTrue(oracle.isFeasible(polynomial, false))
+        Assert.assertTrue(oracle.push(bound, true))
+        Assert.assertTrue(oracle.isFeasible(square, true))
+        Assert.assertTrue(oracle.isFeasible(square, false))
+    }
+
+    @Test
+    fun testReduceLp_SameAsXADD() {
+        val context = XADD()
+        val builder = XADDBuild.builder(context)
+        val linear = builder.and(listOf(builder.test("x >= 0"), builder.test("x <= 8"), builder.test("x + y <= 10")))
+                .times(builder.test("x >= 9").assignWeights(builder.`val`(5), builder.bool("a")
+                        .assignWeights(builder.`val`("x + y"), builder.`val`(2))))
+        val polynomial = builder.test("x * x <= 1").times(builder.test("x >= 2").assignWeights(builder.`val`(3),
+                builder.`val`("x"))).plus(builder.test("x * x - x <= -0.1").times(builder.`val`("y")))
+        for(diagram in listOf(linear, polynomial, linear.times(polynomial))) {
+            val reduced = diagram.reduceLp()
+            val baseline = XADDiagram(context, context.reduceLP(diagram.number))
+            for(assignment in getAssignments()) {
+                Assert.assertEquals(diagram.evaluate(assignment), reduced.evaluate(assignment), DELTA)
+                Assert.assertEquals(baseline.evaluate(assignment), reduced.evaluate(assignment), DELTA)
+            }
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package diagram
+
+import org.junit.Assert
+import org.junit.Test
+import xadd.XADD
+
+/**
+ * Tests the GreedyEliminationIntegrator class
+ *
+ * @author Samuel Kolb
+ */
+class GreedyEliminationIntegratorTest {
+
+    private val DELTA = 0.000001
+
+    /**
+     * Builds a diagram in which x is bounded by three decisions, while y and a occur in one decision each
+     */
+    private fun getDiagram(builder: XADDBuild.Builder): XADDiagram {
+        val bounds = builder.and(listOf(builder.test("x >= 0"), builder.test("x <= 1"), builder.test("x <= y")))
+        return bounds.times(builder.bool("a").assignWeights(builder.`val`("x + y"), builder.`val`(2)))
+    }
+
+    @Test
+    fun testEstimateCosts() {
+        val diagram = getDiagram(XADDBuild.builder(XADD()))
+        val candidates = listOf(Variable.real("x"), Variable.bool("a"), Variable.real("z"))
+        val costs = GreedyEliminationIntegrator.estimateCosts(diagram, candidates)
+        // Three bounds on x allow at least three and at most five bound pairs
+        Assert.assertTrue(costs[0] in 3..5)
+        Assert.assertEquals(1, costs[1])
+        Assert.assertEquals(0, costs[2])
+    }
+
+    @Test
+    fun testIntegrate_ChosenOrder() {
+        val diagram = getDiagram(XADDBuild.builder(XADD()))
+        val chosen = ArrayList<String>()
+        val step = SingleVariableIntegrator { current, variable ->
+            chosen.add(variable.name)
+            current
+        }
+        val variables = listOf(Variable.real("x"), Variable.real("y"), Variable.bool("a"))
+        GreedyEliminationIntegrator(step).integrate(diagram, variables)
+        // The cheap variables come first, ties keep the given order
+        Assert.assertEquals(listOf("y", "a", "x"), chosen)
+        Assert.assertEquals(variables[1], GreedyEliminationIntegrator.selectNext(diagram, variables))
+    }
+
+    @Test
+    fun testEliminateVarsGreedy_SameAsEliminateVars() {
+        val builder = XADDBuild.builder(XADD())
+        val diagram = getDiagram(builder).times(builder.test("y >= 0").and(builder.test("y <= 2")))
+        val variables = listOf("x", "y", "a")
+        val types = listOf("real", "real", "bool")
+        Assert.assertEquals(diagram.eliminateVars(variables, types).evaluate(Assignment()),
+                diagram.eliminateVarsGreedy(variables, types).evaluate(Assignment()), DELTA)
+    }
+}
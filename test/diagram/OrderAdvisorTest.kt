@@ -0,0 +1,82 @@
+package diagram
+
+import org.junit.Assert
+import org.junit.Test
+
+/**
+ * Tests the OrderAdvisor class
+ *
+ * @author Samuel Kolb
+ */
+class OrderAdvisorTest {
+
+    private fun pair(variable1: String, variable2: String): String {
+        return "(<= (+ (var real $variable1) (var real $variable2)) (const real 1.0))"
+    }
+
+    /**
+     * Star shaped interaction graph: the center c interacts with every leaf l1, l2, l3
+     */
+    private val star = "(& ${pair("c", "l1")} ${pair("c", "l2")} ${pair("c", "l3")})"
+
+    /**
+     * Chain shaped interaction graph x1 - x2 - x3 - x4 whose variables first occur out of chain order
+     */
+    private val chain = "(& ${pair("x3", "x1")} ${pair("x4", "x2")} ${pair("x3", "x4")} ${pair("x1", "x2")})"
+
+    private fun span(order: List<String>, edges: List<Pair<String, String>>): Int {
+        return edges.sumBy { Math.abs(order.indexOf(it.first) - order.indexOf(it.second)) }
+    }
+
+    @Test
+    fun testEliminationOrder_Permutation() {
+        val advisor = OrderAdvisor(star, chain)
+        val variables = listOf("c", "l1", "l2", "l3", "x1", "x2", "x3", "x4", "unused")
+        for(heuristic in OrderAdvisor.Heuristic.values()) {
+            val order = advisor.eliminationOrder(variables, heuristic)
+            Assert.assertEquals(variables.size, order.size)
+            Assert.assertEquals(variables.toSet(), order.toSet())
+            Assert.assertEquals(order.reversed(), advisor.variableOrder(variables, heuristic))
+        }
+    }
+
+    @Test
+    fun testEliminationOrder_StarCenterLast() {
+        val advisor = OrderAdvisor(star)
+        val variables = listOf("c", "l1", "l2", "l3")
+        for(heuristic in listOf(OrderAdvisor.Heuristic.MIN_DEGREE, OrderAdvisor.Heuristic.MIN_FILL)) {
+            // Eliminating the center first would connect all leaves
+            val order = advisor.eliminationOrder(variables, heuristic)
+            Assert.assertTrue(order.toString(), order.indexOf("c") >= 2)
+        }
+    }
+
+    @Test
+    fun testEliminationOrder_ChainFromEnds() {
+        val advisor = OrderAdvisor(chain)
+        val variables = listOf("x1", "x2", "x3", "x4")
+        for(heuristic in listOf(OrderAdvisor.Heuristic.MIN_DEGREE, OrderAdvisor.Heuristic.MIN_FILL)) {
+            // Only the ends of the chain can be eliminated without fill
+            val first = advisor.eliminationOrder(variables, heuristic)[0]
+            Assert.assertTrue(first, first == "x1" || first == "x4")
+        }
+    }
+
+    @Test
+    fun testEliminationOrder_Deterministic() {
+        val variables = listOf("x1", "x2", "x3", "x4")
+        for(heuristic in OrderAdvisor.Heuristic.values()) {
+            Assert.assertEquals(OrderAdvisor(chain).eliminationOrder(variables, heuristic),
+                    OrderAdvisor(chain).eliminationOrder(variables.reversed(), heuristic))
+        }
+    }
+
+    @Test
+    fun testForce_ReducesSpan() {
+        val advisor = OrderAdvisor(chain)
+        val edges = listOf(Pair("x1", "x2"), Pair("x2", "x3"), Pair("x3", "x4"))
+        val firstOccurrence = listOf("x3", "x1", "x4", "x2")
+        val order = advisor.variableOrder(firstOccurrence, OrderAdvisor.Heuristic.FORCE)
+        Assert.assertTrue(span(order, edges) < span(firstOccurrence, edges))
+    }
+}
@@ -0,0 +1,87 @@
+package diagram
+
+import org.junit.Assert
+import org.junit.Test
+import xadd.XADD
+
+/**
+ * Tests the OrderedXADD class
+ *
+ * @author Samuel Kolb
+ */
+class OrderedXADDTest {
+
+    /**
+     * Compares decisions from scratch (without precomputed order keys)
+     */
+    private fun compareGE(context: OrderedXADD, var1: Int, var2: Int): Boolean {
+        val dec1 = context._alOrder[var1]
+        val dec2 = context._alOrder[var2]
+        val vars1 = context.getVariables(dec1)
+        val order1 = context.getOrder(vars1)
+        val order2 = context.getOrder(context.getVariables(dec2))
+        if(!context.isOrderOnFirst) {
+            order1.reverse()
+            order2.reverse()
+        }
+        for(i in 0 until Math.max(order1.size, order2.size)) {
+            when {
+                i >= order1.size -> return false
+                i >= order2.size -> return true
+                order1[i] > order2[i] -> return true
+                order1[i] < order2[i] -> return false
+            }
+        }
+        if(dec1 is XADD.BoolDec) {
+            return true
+        }
+        if(dec1 is XADD.ExprDec && dec2 is XADD.ExprDec) {
+            val assignment = HashMap(vars1.associate { Pair(it, 0.0) })
+            val constant1 = dec1._expr._lhs.evaluate(assignment)
+            val constant2 = dec2._expr._lhs.evaluate(assignment)
+            for(variable in vars1) {
+                assignment[variable] = 1.0
+                val val1 = dec1._expr._lhs.evaluate(assignment) - constant1
+                val val2 = dec2._expr._lhs.evaluate(assignment) - constant2
+                assignment[variable] = 0.0
+                if(val1 < 0 && val2 > 0) {
+                    return false
+                } else if(val1 > 0 && val2 < 0) {
+                    return true
+                }
+                val factor1 = if(val1 < 0) constant1 / -val1 else -constant1 / val1
+                val factor2 = if(val1 < 0) constant2 / -val2 else -constant2 / val2
+                if(factor1 != factor2) {
+                    return if(val1 < 0) factor1 > factor2 else factor1 < factor2
+                }
+                if(val1 != val2) {
+                    return val1 > val2
+                }
+            }
+            if(constant1 != constant2) {
+                return constant1 > constant2
+            }
+        }
+        return true
+    }
+
+    @Test
+    fun testLocalOrderCompareGE_SameAsUncached() {
+        for(orderOnFirst in listOf(true, false)) {
+            val context = OrderedXADD(listOf("a", "b", "x", "y"), orderOnFirst)
+            val builder = XADDBuild.builder(context)
+            val tests = listOf(builder.bool("a"), builder.bool("b"), builder.test("x <= 1"), builder.test("x >= 2"),
+                    builder.test("x + y <= 3"), builder.test("2 * x - y >= 1"), builder.test("y <= 0"),
+                    builder.test("-1 * x <= 4"), builder.test("x + y >= -2"))
+            builder.and(tests)
+            val decisions = tests.map { (context.getNode(it.number) as XADD.XADDINode)._var }
+            for(var1 in decisions) {
+                for(var2 in decisions) {
+                    val expected = compareGE(context, var1, var2)
+                    val message = "${context._alOrder[var1]} >= ${context._alOrder[var2]}"
+                    Assert.assertEquals(message, expected, context.localOrderCompareGE(var1, var2))
+                }
+            }
+        }
+    }
+}
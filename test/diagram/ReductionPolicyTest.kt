@@ -0,0 +1,85 @@
+package diagram
+
+import org.junit.Assert
+import org.junit.Test
+import xadd.XADD
+
+/**
+ * Tests the ReductionPolicy class
+ *
+ * @author Samuel Kolb
+ */
+class ReductionPolicyTest {
+
+    private val DELTA = 0.000001
+
+    private class Counts(val value: Double, val reductions: Long, val lpSolves: Long)
+
+    /**
+     * Integrates x out of a diagram with several (partially redundant) bounds on x, counting the LP-based reductions
+     */
+    private fun integrate(policy: ReductionPolicy): Counts {
+        val context = XADD()
+        val builder = XADDBuild.builder(context)
+        val bounds = builder.and(listOf(builder.test("x >= 0"), builder.test("x <= 10"), builder.test("x <= y"),
+                builder.test("x >= y - 4"), builder.test("y >= 2"), builder.test("y <= 6")))
+        val diagram = bounds.times(builder.bool("a").assignWeights(builder.`val`("x + y"), builder.`val`(2)))
+        val integrator = ResolveIntegration(context)
+        integrator.reductionPolicy = policy
+        val result = XADDiagram(context, integrator.integrate(diagram.number, "x", "real"))
+        val value = result.evaluate(Assignment().setBool("a", true).setReal("y", 3.0))
+        return Counts(value, ApplyCache.of(context).reductions, FeasibilityOracle.of(context).lpSolves)
+    }
+
+    @Test
+    fun testReduce_CountsPerPolicy() {
+        val never = integrate(ReductionPolicy.NEVER)
+        val atEnd = integrate(ReductionPolicy.AT_END)
+        val always = integrate(ReductionPolicy.ALWAYS)
+        val everyOther = integrate(ReductionPolicy.everyLevels(2))
+        val growth = integrate(ReductionPolicy.onGrowth(0.5))
+
+        Assert.assertEquals(0, never.reductions)
+        Assert.assertEquals(0, never.lpSolves)
+        Assert.assertEquals(1, atEnd.reductions)
+        Assert.assertTrue(always.reductions > 1)
+        Assert.assertTrue(everyOther.reductions <= always.reductions)
+        Assert.assertTrue(growth.reductions >= 1)
+        Assert.assertTrue(growth.reductions <= always.reductions + 1)
+        for(counts in listOf(atEnd, always, everyOther, growth)) {
+            Assert.assertEquals(never.value, counts.value, DELTA)
+        }
+    }
+
+    @Test
+    fun testReduce_Levels() {
+        val context = XADD()
+        val builder = XADDBuild.builder(context)
+        val policy = ReductionPolicy.everyLevels(3)
+        val cache = ApplyCache.of(context)
+        for(level in 0 until 7) {
+            val diagram = builder.test("x <= $level").and(builder.test("x >= ${level + 1}"))
+            policy.reduce(context, level, diagram.number, diagram.number)
+        }
+        // Levels 0, 3 and 6 are reduced
+        Assert.assertEquals(3, cache.reductions)
+    }
+
+    @Test
+    fun testReduce_Growth() {
+        val context = XADD()
+        val builder = XADDBuild.builder(context)
+        val policy = ReductionPolicy.onGrowth(1.0)
+        val cache = ApplyCache.of(context)
+        val input = builder.test("x <= 1")
+        val small = builder.test("x <= 2")
+        val large = builder.and((3 until 8).map { builder.test("x <= $it") })
+        policy.reduce(context, 0, input.number, small.number)
+        Assert.assertEquals(0, cache.reductions)
+        policy.reduce(context, 0, input.number, large.number)
+        Assert.assertEquals(1, cache.reductions)
+        // The final result is always reduced
+        policy.finish(context, small.number)
+        Assert.assertEquals(2, cache.reductions)
+    }
+}
@@ -0,0 +1,162 @@
+package diagram
+
+import org.junit.Assert
+import org.junit.Test
+import xadd.ExprLib
+import xadd.XADD
+
+/**
+ * Tests the ResolveCache class
+ *
+ * @author Samuel Kolb
+ */
+class ResolveCacheTest {
+
+    @Test
+    fun testPutGet() {
+        val cache = ResolveCache.of(XADD())
+        val scope = cache.getScope(ResolveCache.RESOLVE, 0, 1, 2, 3)
+        Assert.assertEquals(scope, cache.getScope(ResolveCache.RESOLVE, 0, 1, 2, 3))
+        Assert.assertNotEquals(scope, cache.getScope(ResolveCache.MAXIMIZATION, 0, 1, 2, 3))
+        Assert.assertTrue(cache.get(scope, 5) < 0)
+        cache.put(scope, 5, 7)
+        Assert.assertEquals(7, cache.get(scope, 5))
+        Assert.assertTrue(cache.get(scope + 1, 5) < 0)
+        Assert.assertEquals(1, cache.hits)
+        Assert.assertEquals(2, cache.misses)
+        Assert.assertEquals(1, cache.size)
+    }
+
+    @Test
+    fun testCapacity_Evicts() {
+        val cache = ResolveCache.of(XADD())
+        cache.capacity = 8
+        Assert.assertEquals(8, cache.capacity)
+        for(rootId in 0 until 100) {
+            cache.put(0, rootId, rootId + 1)
+        }
+        Assert.assertTrue(cache.size <= 8)
+        Assert.assertTrue(cache.evictions > 0)
+        // The most recent result is cached
+        Assert.assertEquals(100, cache.get(0, 99))
+    }
+
+    @Test
+    fun testMemo_KeepsEvicted() {
+        val cache = ResolveCache.of(XADD())
+        cache.capacity = 8
+        val memo = cache.newMemo()
+        for(rootId in 0 until 100) {
+            memo.put(0, rootId, rootId + 1)
+        }
+        Assert.assertTrue(cache.evictions > 0)
+        // Results evicted from the cache of the context are still found within the call
+        for(rootId in 0 until 100) {
+            Assert.assertEquals(rootId + 1, memo.get(0, rootId))
+        }
+        // A new call only sees the results still cached for the context
+        Assert.assertTrue(cache.newMemo().get(0, 0) < 0)
+        Assert.assertEquals(100, cache.newMemo().get(0, 99))
+    }
+
+    @Test
+    fun testRetainNodes_DropsDeleted() {
+        val context = XADD()
+        val cache = ResolveCache.of(context)
+        val scope = cache.getScope(ResolveCache.RESOLVE, 0, 1, BoundIndex.NONE, BoundIndex.NONE)
+        cache.put(scope, 1, 2)
+        cache.put(scope, 3, 4)
+        cache.put(scope, 5, 1)
+        ContextData.of(context).retainNodes(setOf(1, 2, 3, 5))
+        Assert.assertEquals(2, cache.get(scope, 1))
+        Assert.assertTrue(cache.get(scope, 3) < 0)
+        Assert.assertEquals(1, cache.get(scope, 5))
+        cache.clear()
+        Assert.assertEquals(0, cache.size)
+        Assert.assertEquals(0, cache.scopeCount)
+    }
+
+    @Test
+    fun testRetainNodes_PrunesScopesAndBounds() {
+        val context = XADD()
+        val cache = ResolveCache.of(context)
+        val bounds = BoundIndex.of(context)
+        val bound1 = ExprLib.DoubleExpr(1.0)
+        val bound2 = ExprLib.DoubleExpr(2.0)
+        val id1 = bounds.getId(bound1)
+        val id2 = bounds.getId(bound2)
+        val scope1 = cache.getScope(ResolveCache.RESOLVE, 0, 1, id1, BoundIndex.NONE)
+        val scope2 = cache.getScope(ResolveCache.RESOLVE, 0, 1, BoundIndex.NONE, id2)
+        cache.put(scope1, 1, 2)
+        cache.put(scope2, 3, 4)
+        Assert.assertEquals(2, cache.scopeCount)
+        Assert.assertEquals(2, bounds.size())
+
+        ContextData.of(context).retainNodes(setOf(1, 2))
+        Assert.assertEquals(2, cache.get(scope1, 1))
+        Assert.assertEquals(1, cache.scopeCount)
+        Assert.assertEquals(1, bounds.size())
+        Assert.assertSame(bound1, bounds.getBound(id1))
+        Assert.assertEquals(scope1, cache.getScope(ResolveCache.RESOLVE, 0, 1, id1, BoundIndex.NONE))
+        // The id of the dropped bound is reused, the dropped scope id is not
+        Assert.assertEquals(id2, bounds.getId(ExprLib.DoubleExpr(3.0)))
+        Assert.assertNotEquals(scope2, cache.getScope(ResolveCache.RESOLVE, 0, 1, BoundIndex.NONE, id2))
+    }
+
+    @Test
+    fun testGetScope_Local() {
+        val cache = ResolveCache.of(XADD())
+        val scope = cache.getScope(ResolveCache.RESOLVE, 0, 1, 1 shl 20, BoundIndex.NONE)
+        Assert.assertTrue(scope < 0)
+        Assert.assertEquals(scope, cache.getScope(ResolveCache.RESOLVE, 0, 1, 1 shl 20, BoundIndex.NONE))
+        val other = cache.getScope(1 shl 12, 0, 1, BoundIndex.NONE, BoundIndex.NONE)
+        Assert.assertTrue(other < 0)
+        Assert.assertNotEquals(scope, other)
+        // Results of local scopes are memoized within a call, but not cached for the context
+        val memo = cache.newMemo()
+        memo.put(scope, 1, 2)
+        memo.put(other, 1, 3)
+        Assert.assertEquals(2, memo.get(scope, 1))
+        Assert.assertEquals(3, memo.get(other, 1))
+        Assert.assertEquals(0, cache.size)
+        Assert.assertTrue(cache.newMemo().get(scope, 1) < 0)
+    }
+
+    @Test
+    fun testGetScope_StableBeyondCapacity() {
+        val cache = ResolveCache.of(XADD())
+        val scopes = (0 until 10000).map { cache.getScope(ResolveCache.RESOLVE, it % 4096, 1, it, BoundIndex.NONE) }
+        Assert.assertEquals(10000, scopes.toSet().size)
+        for(i in 0 until 10000) {
+            Assert.assertEquals(scopes[i], cache.getScope(ResolveCache.RESOLVE, i % 4096, 1, i, BoundIndex.NONE))
+        }
+    }
+
+    @Test
+    fun testGetNamespace_Reclaimed() {
+        val context = XADD()
+        val cache = ResolveCache.of(context)
+        val namespace = cache.getNamespace(listOf("x", "y"))
+        Assert.assertEquals(namespace, cache.getNamespace(listOf("x", "y")))
+        val other = cache.getNamespace(listOf("x"))
+        Assert.assertNotEquals(namespace, other)
+        cache.put(cache.getScope(other, 0, 1, BoundIndex.NONE, BoundIndex.NONE), 1, 2)
+
+        ContextData.of(context).retainNodes(setOf(1, 2))
+        // The namespace without cached results is reused, the other one is kept
+        Assert.assertEquals(namespace, cache.getNamespace(listOf("z")))
+        Assert.assertEquals(other, cache.getNamespace(listOf("x")))
+    }
+
+    @Test
+    fun testIntegrate_SharedAcrossIntegrators() {
+        val context = XADD()
+        val builder = XADDBuild.builder(context)
+        val diagram = builder.test("x >= 0").and(builder.test("x <= y")).times(builder.`val`("x + 1"))
+        val result = ResolveIntegration(context).integrate(diagram.number, "x", "real")
+        val cache = ResolveCache.of(context)
+        val hits = cache.hits
+        Assert.assertEquals(result, ResolveIntegration(context).integrate(diagram.number, "x", "real"))
+        Assert.assertTrue(cache.hits > hits)
+    }
+}
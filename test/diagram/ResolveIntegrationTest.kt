@@ -0,0 +1,73 @@
+package diagram
+
+import org.junit.Assert
+import org.junit.Test
+import xadd.ExprLib
+import xadd.XADD
+
+/**
+ * Tests the ResolveIntegration and ResolveAllIntegration classes
+ *
+ * @author Samuel Kolb
+ */
+class ResolveIntegrationTest {
+
+    private val DELTA = 0.000001
+
+    /**
+     * Builds a chain of boolean decisions (that do not mention x) of the given depth above the given diagram
+     */
+    private fun getChain(context: XADD, depth: Int, bottom: Int): Int {
+        val decisions = (0 until depth).map { context.getVarIndex(context.BoolDec("v$it"), true) }
+        var nodeId = bottom
+        for(decision in decisions.asReversed()) {
+            nodeId = context.getINode(decision, context.ZERO, nodeId)
+        }
+        return nodeId
+    }
+
+    /**
+     * Follows the high branches of the given diagram (iteratively) and returns the constant at its end
+     */
+    private fun getBottom(context: XADD, rootId: Int): Double {
+        var node = context.getNode(rootId)
+        while(node is XADD.XADDINode) {
+            node = context.getNode(node._high)
+        }
+        return ((node as XADD.XADDTNode)._expr as ExprLib.DoubleExpr)._dConstVal
+    }
+
+    @Test
+    fun testIntegrate_SymbolicBounds() {
+        val context = XADD()
+        val builder = XADDBuild.builder(context)
+        val diagram = builder.and(listOf(builder.test("x >= 0"), builder.test("x <= y"), builder.test("x <= 4")))
+                .times(builder.`val`(1))
+        val result = XADDiagram(context, ResolveIntegration(context).integrate(diagram.number, "x", "real"))
+        Assert.assertEquals(3.0, result.evaluate(Assignment().setReal("y", 3.0)), DELTA)
+        Assert.assertEquals(4.0, result.evaluate(Assignment().setReal("y", 6.0)), DELTA)
+        Assert.assertEquals(0.0, result.evaluate(Assignment().setReal("y", -1.0)), DELTA)
+    }
+
+    @Test
+    fun testIntegrate_DeepDiagram() {
+        val context = XADD()
+        val builder = XADDBuild.builder(context)
+        val bounded = builder.test("x >= 0").and(builder.test("x <= 2")).times(builder.`val`("x"))
+        val chain = getChain(context, 20000, bounded.number)
+        val integrator = ResolveIntegration(context)
+        integrator.reductionPolicy = ReductionPolicy.NEVER
+        Assert.assertEquals(2.0, getBottom(context, integrator.integrate(chain, "x", "real")), DELTA)
+    }
+
+    @Test
+    fun testIntegrateAll_DeepDiagram() {
+        val context = OrderedXADD(listOf("x"), false)
+        val builder = XADDBuild.builder(context)
+        val bounded = builder.test("x >= 0").and(builder.test("x <= 2")).times(builder.`val`("x"))
+        val chain = getChain(context, 20000, bounded.number)
+        val integrator = ResolveAllIntegration(context, listOf("real"))
+        integrator.reductionPolicy = ReductionPolicy.NEVER
+        Assert.assertEquals(2.0, getBottom(context, integrator.integrate(chain)), DELTA)
+    }
+}
@@ -0,0 +1,86 @@
+package diagram
+
+import org.junit.Assert
+import org.junit.Test
+import xadd.XADD
+
+/**
+ * Tests the RootRegistry class
+ *
+ * @author Samuel Kolb
+ */
+class RootRegistryTest {
+
+    private val DELTA = 0.000001
+
+    private fun getDiagram(builder: XADDBuild.Builder, offset: Int): XADDiagram {
+        val bounds = builder.test("x >= $offset").and(builder.test("x <= ${offset + 10}"))
+        return bounds.times(builder.bool("a").assignWeights(builder.`val`("x + $offset"), builder.`val`("2 * x")))
+    }
+
+    private fun getAssignments(): List<Assignment> {
+        return listOf(true, false).flatMap { a -> (-2..25).map { Assignment().setBool("a", a).setReal("x", it.toDouble()) } }
+    }
+
+    @Test
+    fun testCompact_PreservesRetained() {
+        val context = XADD()
+        val builder = XADDBuild.builder(context)
+        val diagram = getDiagram(builder, 0)
+        val expected = getAssignments().map { diagram.evaluate(it) }
+        val handle = diagram.retain()
+        for(offset in 1..10) {
+            getDiagram(builder, offset).eliminateRealVars("x")
+        }
+        val before = context._hmInt2Node.size
+
+        RootRegistry.of(context).compact()
+
+        Assert.assertTrue(context._hmInt2Node.size < before)
+        val retained = handle.diagram
+        for((assignment, value) in getAssignments().zip(expected)) {
+            Assert.assertEquals(value, retained.evaluate(assignment), DELTA)
+        }
+        // The context remains usable after compaction
+        Assert.assertEquals(diagram.eliminateRealVars("x").evaluate(Assignment().setBool("a", true)),
+                getDiagram(builder, 0).eliminateRealVars("x").evaluate(Assignment().setBool("a", true)), DELTA)
+        handle.close()
+    }
+
+    @Test
+    fun testCompactIfAbove_Threshold() {
+        val context = XADD()
+        val builder = XADDBuild.builder(context)
+        val handle = getDiagram(builder, 0).retain()
+        getDiagram(builder, 1).eliminateRealVars("x")
+        val before = context._hmInt2Node.size
+        val registry = RootRegistry.of(context)
+
+        Assert.assertFalse(registry.compactIfAbove(before))
+        Assert.assertEquals(before, context._hmInt2Node.size)
+        Assert.assertTrue(registry.compactIfAbove(before - 1))
+        Assert.assertTrue(context._hmInt2Node.size < before)
+        handle.close()
+    }
+
+    @Test
+    fun testRetain_Counted() {
+        val context = XADD()
+        val registry = RootRegistry.of(context)
+        val diagram = getDiagram(XADDBuild.builder(context), 0)
+        val handle1 = diagram.retain()
+        val handle2 = diagram.retain()
+        handle1.close()
+        Assert.assertTrue(diagram.number in registry.roots)
+        handle1.close()
+        Assert.assertTrue(diagram.number in registry.roots)
+        handle2.close()
+        Assert.assertFalse(diagram.number in registry.roots)
+        try {
+            handle2.diagram
+            Assert.fail("Released root should not be accessible")
+        } catch(e: IllegalStateException) {
+            // Expected
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package diagram
+
+import org.junit.Assert
+import org.junit.Test
+import xadd.XADD
+
+/**
+ * Tests the SupportIndex class
+ *
+ * @author Samuel Kolb
+ */
+class SupportIndexTest {
+
+    private fun getDiagram(builder: XADDBuild.Builder): XADDiagram {
+        val bounds = builder.test("x >= 0").and(builder.test("x <= 10"))
+        return bounds.times(builder.bool("a").assignWeights(builder.`val`("y + 1"), builder.`val`("2 * x")))
+    }
+
+    @Test
+    fun testGetVariables_SameAsCollectVars() {
+        val context = XADD()
+        val diagram = getDiagram(XADDBuild.builder(context))
+        val supports = SupportIndex.of(context)
+        for(nodeId in DiagramWalker.postOrder(context, diagram.number)) {
+            Assert.assertEquals(HashSet(context.collectVars(nodeId)), supports.getVariables(nodeId))
+        }
+    }
+
+    @Test
+    fun testGetTypedVariables() {
+        val context = XADD()
+        val diagram = getDiagram(XADDBuild.builder(context))
+        val supports = SupportIndex.of(context)
+        Assert.assertEquals(setOf("a"), supports.getBooleanVariables(diagram.number))
+        // Only variables in decisions are considered
+        Assert.assertEquals(setOf("x"), supports.getContinuousVariables(diagram.number))
+        Assert.assertTrue(supports.mentions(diagram.number, "y"))
+        Assert.assertFalse(supports.mentions(diagram.number, "z"))
+    }
+
+    @Test
+    fun testGetId_SharedPerContext() {
+        val context = XADD()
+        val id = SupportIndex.of(context).getId("x")
+        Assert.assertEquals(id, SupportIndex.of(context).getId("x"))
+        Assert.assertEquals("x", SupportIndex.of(context).getName(id))
+        Assert.assertNotEquals(id, SupportIndex.of(context).getId("y"))
+    }
+}
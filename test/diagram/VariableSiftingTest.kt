@@ -0,0 +1,96 @@
+package diagram
+
+import org.junit.Assert
+import org.junit.Test
+
+/**
+ * Tests the VariableSifting class
+ *
+ * @author Samuel Kolb
+ */
+class VariableSiftingTest {
+
+    private val DELTA = 0.000001
+
+    private fun getAssignments(): List<Assignment> {
+        val assignments = ArrayList<Assignment>()
+        for(a in listOf(true, false)) {
+            for(b in listOf(true, false)) {
+                for(x in -1..6) {
+                    for(y in -1..6) {
+                        assignments.add(Assignment().setBool("a", a).setBool("b", b).setReal("x", x + 0.5)
+                                .setReal("y", y + 0.25))
+                    }
+                }
+            }
+        }
+        return assignments
+    }
+
+    /**
+     * Builds diagrams whose size depends on the variable order (the variable y is ordered badly)
+     */
+    private fun getDiagrams(context: OrderedXADD): List<XADDiagram> {
+        val builder = XADDBuild.builder(context)
+        val bounds = builder.test("y >= 0").and(builder.test("y <= 5"))
+        val diagram1 = bounds.times(builder.bool("a").assignWeights(builder.`val`("x + y"), builder.`val`(2)))
+        val diagram2 = builder.bool("b").or(builder.test("x <= 3")).times(bounds).times(builder.`val`("y"))
+        return listOf(diagram1, diagram2, diagram1.plus(diagram2))
+    }
+
+    private fun assertSameValues(original: List<XADDiagram>, reordering: Reordering) {
+        for(diagram in original) {
+            val reordered = reordering.getDiagram(diagram)
+            for(assignment in getAssignments()) {
+                Assert.assertEquals(diagram.evaluate(assignment), reordered.evaluate(assignment), DELTA)
+            }
+        }
+    }
+
+    @Test
+    fun testRebuild_SameValues() {
+        val context = OrderedXADD(listOf("y", "a", "b", "x"), false)
+        val diagrams = getDiagrams(context)
+        val order = listOf("a", "b", "x", "y")
+        val reordering = VariableSifting.rebuild(context, order, diagrams.map { it.number })
+        Assert.assertEquals(order, reordering.variableOrder)
+        assertSameValues(diagrams, reordering)
+    }
+
+    @Test
+    fun testReorder_SameValues() {
+        for(orderOnFirst in listOf(true, false)) {
+            val context = OrderedXADD(listOf("y", "a", "b", "x"), orderOnFirst)
+            val diagrams = getDiagrams(context)
+            val roots = diagrams.map { it.number }
+            val reordering = VariableSifting().reorder(context, roots)
+            assertSameValues(diagrams, reordering)
+            Assert.assertEquals(context.variableOrder.toSet(), reordering.variableOrder.toSet())
+            // Sifting never ends up with a larger diagram than a rebuild under the original order
+            Assert.assertTrue(reordering.size <= VariableSifting.rebuild(context, context.variableOrder, roots).size)
+        }
+    }
+
+    @Test
+    fun testReorderIfAbove_Threshold() {
+        val context = OrderedXADD(listOf("y", "a", "b", "x"), false)
+        val diagrams = getDiagrams(context)
+        val roots = diagrams.map { it.number }
+        Assert.assertFalse(VariableSifting().reorderIfAbove(context, roots, context._hmInt2Node.size).isPresent)
+        val reordering = VariableSifting().reorderIfAbove(context, roots, 0)
+        Assert.assertTrue(reordering.isPresent)
+        assertSameValues(diagrams, reordering.get())
+    }
+
+    @Test
+    fun testReorder_Registered() {
+        val context = OrderedXADD(listOf("y", "a", "b", "x"), false)
+        val diagrams = getDiagrams(context)
+        val handles = diagrams.map { it.retain() }
+        try {
+            assertSameValues(diagrams, VariableSifting().reorder(context))
+        } finally {
+            handles.forEach { it.close() }
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package diagram
+
+import org.junit.Assert
+import org.junit.Test
+import xadd.ExprLib
+import xadd.XADD
+
+/**
+ * Tests the XADDBuild class
+ *
+ * @author Samuel Kolb
+ */
+class XADDBuildTest {
+
+    private val DELTA = 0.000001
+
+    private fun getAssignments(): List<Assignment> {
+        val assignments = ArrayList<Assignment>()
+        for(a in listOf(true, false)) {
+            for(b in listOf(true, false)) {
+                for(x in -1..6) {
+                    assignments.add(Assignment().setBool("a", a).setBool("b", b).setReal("x", x + 0.5))
+                }
+            }
+        }
+        return assignments
+    }
+
+    private fun assertEquivalent(expected: XADDiagram, actual: XADDiagram) {
+        for(assignment in getAssignments()) {
+            Assert.assertEquals(expected.evaluate(assignment), actual.evaluate(assignment), DELTA)
+        }
+    }
+
+    /**
+     * Counts the number of strings that are parsed
+     */
+    private class ParseCountingXADD : XADD() {
+        var parses = 0
+
+        override fun buildCanonicalXADDFromString(s: String): Int {
+            parses++
+            return super.buildCanonicalXADDFromString(s)
+        }
+    }
+
+    private fun getTests(builder: XADDBuild.Builder): List<BoolXADD> {
+        return listOf(builder.bool("a"), builder.test("x <= 2"), builder.bool("b").not(), builder.test("x >= 4"),
+                builder.test("x <= 5"))
+    }
+
+    @Test
+    fun testAndOr_SameAsBinary() {
+        val builder = XADDBuild.builder(XADD())
+        val tests = getTests(builder)
+        assertEquivalent(tests.reduce { d1, d2 -> d1.and(d2) }, builder.and(tests))
+        assertEquivalent(tests.reduce { d1, d2 -> d1.or(d2) }, builder.or(tests))
+        assertEquivalent(builder.`val`(true), builder.and(listOf()))
+        assertEquivalent(builder.`val`(false), builder.or(listOf()))
+    }
+
+    @Test
+    fun testSumProduct_SameAsBinary() {
+        val builder = XADDBuild.builder(XADD())
+        val operands = getTests(builder).mapIndexed { i, test ->
+            test.assignWeights(builder.`val`("x + $i"), builder.`val`(i))
+        }
+        assertEquivalent(operands.reduce { d1, d2 -> d1.plus(d2) }, builder.sum(operands))
+        assertEquivalent(operands.reduce { d1, d2 -> d1.times(d2) }, builder.product(operands))
+        assertEquivalent(builder.`val`(0), builder.sum(listOf()))
+        assertEquivalent(builder.`val`(1), builder.product(listOf()))
+    }
+
+    @Test
+    fun testAtoms_SharedWithoutParsing() {
+        val context = ParseCountingXADD()
+        val builder = XADDBuild.builder(context)
+
+        Assert.assertEquals(builder.bool("a").number, XADDBuild.builder(context).bool("a").number)
+        Assert.assertEquals(builder.`val`(3).number, builder.`val`(3.0).number)
+        Assert.assertEquals(builder.`val`(3).number, builder.`val`("3").number)
+        Assert.assertEquals(context.ONE, builder.`val`(true).number)
+        Assert.assertEquals(0, context.parses)
+
+        val test = builder.test("x <= 2").number
+        Assert.assertEquals(1, context.parses)
+        Assert.assertEquals(test, XADDBuild.builder(context).test("x <= 2").number)
+        Assert.assertEquals(1, context.parses)
+
+        val diagram = builder.bool("a").assignWeights(builder.`val`(3), builder.`val`("x + 1"))
+        Assert.assertEquals(3.0, diagram.evaluate(Assignment().setBool("a", true).setReal("x", 5.0)), DELTA)
+        Assert.assertEquals(6.0, diagram.evaluate(Assignment().setBool("a", false).setReal("x", 5.0)), DELTA)
+    }
+
+    @Test
+    fun testTyped_SameAsParsed() {
+        val builder = XADDBuild.builder(XADD())
+        val coefficients = linkedMapOf(Pair("x", 2.0), Pair("y", -1.0))
+        val typedTest = builder.test(coefficients, ExprLib.CompOperation.LT_EQ, 3.0)
+        val typedValue = builder.`val`(coefficients, 1.5)
+        val arrayValue = builder.`val`(builder.linear(arrayOf("x", "y", "x"), doubleArrayOf(1.0, -1.0, 1.0), 1.5))
+        val parsedTest = builder.test("2 * x + -1 * y <= 3")
+        val parsedValue = builder.`val`("2 * x + -1 * y + 1.5")
+        for(x in -3..3) {
+            for(y in -3..3) {
+                val assignment = Assignment().setReal("x", x + 0.25).setReal("y", y.toDouble())
+                Assert.assertEquals(parsedTest.evaluate(assignment), typedTest.evaluate(assignment), DELTA)
+                Assert.assertEquals(parsedValue.evaluate(assignment), typedValue.evaluate(assignment), DELTA)
+                Assert.assertEquals(parsedValue.evaluate(assignment), arrayValue.evaluate(assignment), DELTA)
+            }
+        }
+    }
+
+    @Test
+    fun testTyped_Tautology() {
+        val builder = XADDBuild.builder(XADD())
+        val test = builder.test(ExprLib.DoubleExpr(1.0), ExprLib.CompOperation.LT_EQ, ExprLib.DoubleExpr(2.0))
+        Assert.assertEquals(builder.`val`(true).number, test.number)
+    }
+
+    @Test(expected = IllegalArgumentException::class)
+    fun testLinear_DivergingLengths() {
+        XADDBuild.builder(XADD()).linear(arrayOf("x", "y"), doubleArrayOf(1.0), 0.0)
+    }
+
+    @Test
+    fun testIte_SameAsArithmetic() {
+        val builder = XADDBuild.builder(XADD())
+        val guard = builder.bool("a").and(builder.test("x <= 3"))
+        val ifTrue = builder.test("x >= 1").assignWeights(builder.`val`("x + 2"), builder.`val`(7))
+        val ifFalse = builder.bool("b").assignWeights(builder.`val`(-1), builder.`val`("2 * x"))
+        val expected = guard.times(ifTrue).plus(guard.not().times(ifFalse))
+        assertEquivalent(expected, builder.ite(guard, ifTrue, ifFalse))
+    }
+
+    @Test
+    fun testCases_SameAsArithmetic() {
+        val builder = XADDBuild.builder(XADD())
+        val low = builder.test("x <= 2")
+        val high = builder.test("x > 4")
+        val middle = low.not().and(high.not())
+        val values = listOf(builder.`val`("x"), builder.`val`(3), builder.bool("a").assignWeights(builder.`val`(1),
+                builder.`val`("x + 1")))
+        val caseMap = linkedMapOf(Pair(low, values[0]), Pair(middle, values[1]), Pair(high, values[2]))
+        val expected = builder.sum(caseMap.map { it.key.times(it.value) })
+        assertEquivalent(expected, builder.cases(caseMap))
+    }
+}
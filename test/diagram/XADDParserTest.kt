@@ -106,6 +106,13 @@ class XADDParserTest() {
         testConstant("(const real %f)".format(number), number)
     }
 
+    @Test
+    fun testFractionLE() {
+        val values = listOf(0.25, 1.0)
+        val wmi = "(<= (var real %s) (const real 1/2))".format(testRealVar)
+        testRealValues(wmi, values, listOf(1.0, 0.0))
+    }
+
     @Test
     fun testSimpleConstBool() {
         testConstant("(const bool true)", 1.0)
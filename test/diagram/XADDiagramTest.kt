@@ -0,0 +1,38 @@
+package diagram
+
+import org.junit.Assert
+import org.junit.Test
+import xadd.XADD
+
+/**
+ * Tests the XADDiagram class
+ *
+ * @author Samuel Kolb
+ */
+class XADDiagramTest {
+
+    private val DELTA = 0.000001
+
+    private fun getDiagram(builder: XADDBuild.Builder): XADDiagram {
+        val bounds = builder.test("x >= 0").and(builder.test("x <= 10"))
+        val inner = builder.bool("b").assignWeights(builder.`val`(2), builder.`val`("x"))
+        return bounds.times(builder.bool("a").assignWeights(inner, builder.`val`(1)))
+    }
+
+    @Test
+    fun testIntegrate_SameAsIntegratedDiagram() {
+        val diagram = getDiagram(XADDBuild.builder(XADD()))
+        // c does not occur in the diagram and doubles the count
+        val booleans = listOf("a", "b", "c")
+        val expected = diagram.getIntegratedDiagram(booleans, listOf("x")).evaluate()
+        Assert.assertEquals(expected, diagram.integrate(booleans, listOf("x")), DELTA)
+        Assert.assertEquals(180.0, diagram.integrate(booleans, listOf("x")), DELTA)
+    }
+
+    @Test
+    fun testIntegrate_NoBooleans() {
+        val builder = XADDBuild.builder(XADD())
+        val diagram = builder.test("x >= 0").and(builder.test("x <= 4")).times(builder.`val`("x"))
+        Assert.assertEquals(8.0, diagram.integrate(listOf(), listOf("x")), DELTA)
+    }
+}